@@ -0,0 +1,116 @@
+package se.fastighet.core.benchmark;
+
+import se.fastighet.core.entity.*;
+
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Ärenden med realistisk form för benchmarks: en fastighet med styrelse och tekniker,
+ * boende med lägenheter, samt kommentarer och bilagor i den mängd som anges.
+ * Slumptalen är seedade så att varje körning bygger samma data.
+ */
+public final class TicketFixtures {
+
+    private static final String[] TITLES = {
+            "Droppande kran i köket", "Element blir inte varmt", "Trasig belysning i trapphuset",
+            "Tvättmaskin nr 2 fungerar inte", "Ventilationen låter", "Port går inte i lås"
+    };
+    private static final String DESCRIPTION = "Sedan i måndags droppar det konstant från blandaren. "
+            + "Har provat att dra åt men det hjälper inte. Går att nå lägenheten vardagar efter 16.";
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    public final Property property;
+    public final Category category;
+    public final User admin;
+    public final User boardMember;
+    public final User technician;
+    public final User resident;
+    public final Unit unit;
+
+    public TicketFixtures() {
+        property = Property.builder()
+                .id(UUID.randomUUID())
+                .name("BRF Solsidan")
+                .address("Solvägen 12")
+                .city("Stockholm")
+                .build();
+        category = Category.builder().id(3L).name("VVS").icon("wrench").build();
+        unit = Unit.builder().id(UUID.randomUUID()).unitNumber("LGH 1201").floor(2).property(property).build();
+        property.getUnits().add(unit);
+
+        admin = user("admin@brfsolsidan.se", "Anna Admin", User.Role.ADMIN);
+        admin.getAdminProperties().add(property);
+        property.getAdmins().add(admin);
+
+        boardMember = user("styrelse@brfsolsidan.se", "Bertil Styrelse", User.Role.BOARD_MEMBER);
+        boardMember.getUnits().add(unit);
+
+        technician = user("tekniker@fastighetsservice.se", "Tore Tekniker", User.Role.TECHNICIAN);
+
+        resident = user("boende@example.com", "Rut Boende", User.Role.RESIDENT);
+        resident.getUnits().add(unit);
+        unit.getResidents().add(resident);
+    }
+
+    public Ticket ticket(long id, int comments, int attachments) {
+        LocalDateTime created = LocalDateTime.of(2024, 3, 1, 8, 0).plusMinutes(random.nextInt(100_000));
+        Ticket ticket = Ticket.builder()
+                .id(id)
+                .title(TITLES[random.nextInt(TITLES.length)])
+                .description(DESCRIPTION)
+                .category(category)
+                .status(Ticket.Status.IN_PROGRESS)
+                .priority(Ticket.Priority.values()[random.nextInt(Ticket.Priority.values().length)])
+                .reporter(resident)
+                .assignee(technician)
+                .property(property)
+                .unit(unit)
+                .createdAt(created)
+                .updatedAt(created.plusHours(3))
+                .build();
+
+        for (int i = 0; i < comments; i++) {
+            ticket.addComment(TicketComment.builder()
+                    .id(id * 100 + i)
+                    .author(i % 2 == 0 ? technician : resident)
+                    .content("Kommentar " + i + ": tekniker bokad till torsdag förmiddag, nyckel finns i boxen.")
+                    .internal(i % 4 == 3)
+                    .createdAt(created.plusHours(i + 1))
+                    .build());
+        }
+
+        for (int i = 0; i < attachments; i++) {
+            ticket.addAttachment(TicketAttachment.builder()
+                    .id(id * 100 + i)
+                    .fileName("bild-" + i + ".jpg")
+                    .contentType("image/jpeg")
+                    .fileSize(1_800_000L + random.nextInt(500_000))
+                    .contentHash(hash())
+                    .filePath("blobs/xx/yy/" + i)
+                    .previewStatus(TicketAttachment.PreviewStatus.READY)
+                    .uploadedAt(created.plusMinutes(i))
+                    .build());
+        }
+        return ticket;
+    }
+
+    private User user(String email, String name, User.Role role) {
+        return User.builder()
+                .id(UUID.randomUUID())
+                .email(email)
+                .name(name)
+                .role(role)
+                .build();
+    }
+
+    private String hash() {
+        StringBuilder hash = new StringBuilder(64);
+        for (int i = 0; i < 4; i++) {
+            hash.append(String.format("%016x", random.nextLong()));
+        }
+        return hash.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package se.fastighet.core.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jms.core.JmsTemplate;
+import se.fastighet.core.benchmark.TicketFixtures;
+import se.fastighet.core.config.JmsConfig;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketComment;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialisering av ärendehändelser, dels isolerat och dels genom publiceraren med en
+ * JmsTemplate som inte skickar något. Skillnaden är publicerarens egen overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TicketEventPublisherBenchmark {
+
+    private ObjectMapper objectMapper;
+    private TicketEventPublisher publisher;
+    private BlackholeJmsTemplate jmsTemplate;
+    private Ticket ticket;
+    private TicketComment comment;
+    private TicketEvent event;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new JmsConfig().objectMapper();
+        jmsTemplate = new BlackholeJmsTemplate();
+        publisher = new TicketEventPublisher(jmsTemplate, objectMapper, new SimpleMeterRegistry(), 16,
+                Duration.ofSeconds(5));
+
+        TicketFixtures fixtures = new TicketFixtures();
+        ticket = fixtures.ticket(1, 1, 0);
+        comment = ticket.getComments().get(0);
+        comment.setInternal(false);
+
+        event = TicketEvent.builder()
+                .eventType(TicketEvent.EventType.TICKET_STATUS_CHANGED)
+                .ticketId(ticket.getId())
+                .ticketTitle(ticket.getTitle())
+                .propertyId(ticket.getProperty().getId())
+                .propertyName(ticket.getProperty().getName())
+                .reporterId(ticket.getReporter().getId())
+                .reporterName(ticket.getReporter().getName())
+                .reporterEmail(ticket.getReporter().getEmail())
+                .assigneeId(ticket.getAssignee().getId())
+                .assigneeName(ticket.getAssignee().getName())
+                .assigneeEmail(ticket.getAssignee().getEmail())
+                .oldStatus("NEW")
+                .newStatus("IN_PROGRESS")
+                .timestamp(LocalDateTime.of(2024, 3, 1, 8, 0))
+                .build();
+    }
+
+    @Benchmark
+    public String serializeEvent() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public void publishStatusChanged(Blackhole blackhole) {
+        jmsTemplate.blackhole = blackhole;
+        publisher.publishStatusChanged(ticket, "NEW", ticket.getAssignee());
+    }
+
+    @Benchmark
+    public void publishCommentAdded(Blackhole blackhole) {
+        jmsTemplate.blackhole = blackhole;
+        publisher.publishCommentAdded(ticket, comment);
+    }
+
+    static class BlackholeJmsTemplate extends JmsTemplate {
+
+        Blackhole blackhole;
+
+        @Override
+        public void convertAndSend(String destinationName, Object message) {
+            blackhole.consume(message);
+        }
+    }
+}
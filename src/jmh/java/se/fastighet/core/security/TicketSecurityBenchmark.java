@@ -0,0 +1,79 @@
+package se.fastighet.core.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import se.fastighet.core.benchmark.TicketFixtures;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.User;
+import se.fastighet.core.repository.TicketRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Behörighetskontrollerna exklusive databasen. Repositoryt ersätts av en proxy som
+ * returnerar ett färdigt ärende, så siffran är regelkostnaden ovanpå uppslagningen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TicketSecurityBenchmark {
+
+    @Param({"RESIDENT", "BOARD_MEMBER", "TECHNICIAN", "ADMIN"})
+    User.Role role;
+
+    private TicketSecurity ticketSecurity;
+
+    @Setup
+    public void setUp() {
+        TicketFixtures fixtures = new TicketFixtures();
+        Ticket ticket = fixtures.ticket(1, 0, 0);
+
+        TicketRepository repository = (TicketRepository) Proxy.newProxyInstance(
+                TicketRepository.class.getClassLoader(),
+                new Class<?>[]{TicketRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) {
+                        return Optional.of(ticket);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        ticketSecurity = new TicketSecurity(repository, null); // Arkivet läses bara när ärendet saknas
+
+        User user = switch (role) {
+            case RESIDENT -> fixtures.resident;
+            case BOARD_MEMBER -> fixtures.boardMember;
+            case TECHNICIAN -> fixtures.technician;
+            case ADMIN -> fixtures.admin;
+        };
+        // Scope.Thread: setup körs på samma tråd som mätningen, så kontexten är synlig
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(new UserPrincipal(user), null, List.of()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public boolean canView() {
+        return ticketSecurity.canView(1L);
+    }
+
+    @Benchmark
+    public boolean canUpdate() {
+        return ticketSecurity.canUpdate(1L);
+    }
+
+    @Benchmark
+    public boolean canAssign() {
+        return ticketSecurity.canAssign(1L);
+    }
+}
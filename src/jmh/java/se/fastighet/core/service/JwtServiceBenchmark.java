@@ -0,0 +1,59 @@
+package se.fastighet.core.service;
+
+import org.openjdk.jmh.annotations.*;
+import se.fastighet.core.benchmark.TicketFixtures;
+import se.fastighet.core.entity.User;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kostnaden för JWT per request. {@link #validateAndExtract()} motsvarar vad
+ * JwtAuthenticationFilter gör i dag: token tolkas och verifieras två gånger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private User user;
+    private String token;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService("benchmark-secret-with-at-least-256-bits-of-key-material", 86_400_000L);
+        user = new TicketFixtures().resident;
+        token = jwtService.generateToken(user);
+        tamperedToken = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtService.isTokenValid(token);
+    }
+
+    @Benchmark
+    public boolean isTokenValidWithBadSignature() {
+        return jwtService.isTokenValid(tamperedToken);
+    }
+
+    @Benchmark
+    public UUID extractUserId() {
+        return jwtService.extractUserId(token);
+    }
+
+    @Benchmark
+    public UUID validateAndExtract() {
+        return jwtService.isTokenValid(token) ? jwtService.extractUserId(token) : null;
+    }
+}
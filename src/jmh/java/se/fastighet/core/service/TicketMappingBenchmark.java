@@ -0,0 +1,59 @@
+package se.fastighet.core.service;
+
+import org.openjdk.jmh.annotations.*;
+import se.fastighet.core.benchmark.TicketFixtures;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.security.AttachmentUrlSigner;
+import se.fastighet.core.security.UserPrincipal;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mappning från entitet till svar utan databas. Ärendesidan mappar ett ärende med alla
+ * kommentarer och signerade bilagelänkar. Listorna läses som projektion och mappas inte.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TicketMappingBenchmark {
+
+    @Param({"3", "25"})
+    int comments;
+
+    @Param({"0", "15"})
+    int attachments;
+
+    private TicketService ticketService;
+    private Ticket ticket;
+    private UserPrincipal resident;
+    private UserPrincipal technician;
+
+    @Setup
+    public void setUp() {
+        TicketFixtures fixtures = new TicketFixtures();
+        AttachmentUrlSigner signer = new AttachmentUrlSigner(
+                "benchmark-secret-benchmark-secret", Duration.ofMinutes(15), Duration.ofMinutes(5));
+        AttachmentService attachmentService = new AttachmentService(null, null, null, null, null, signer, null);
+        ticketService = new TicketService(null, null, null, null, null, null, null, attachmentService,
+                null, null, null, null);
+
+        ticket = fixtures.ticket(1, comments, attachments);
+        resident = new UserPrincipal(fixtures.resident);
+        technician = new UserPrincipal(fixtures.technician);
+    }
+
+    @Benchmark
+    public TicketResponse mapToResponseAsResident() {
+        return ticketService.mapToResponse(ticket, resident);
+    }
+
+    @Benchmark
+    public TicketResponse mapToResponseAsTechnician() {
+        return ticketService.mapToResponse(ticket, technician);
+    }
+}
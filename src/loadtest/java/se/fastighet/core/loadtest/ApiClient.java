@@ -0,0 +1,86 @@
+package se.fastighet.core.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Tunn klient mot REST-API:t. Varje anrop mäts från {@code intendedStart}, så att en
+ * långsam server som fördröjer nästa anrop syns i svarstiden (coordinated omission).
+ */
+class ApiClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI baseUri;
+    private final Duration timeout;
+
+    ApiClient(HttpClient httpClient, ObjectMapper objectMapper, URI baseUri, Duration timeout) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.baseUri = baseUri;
+        this.timeout = timeout;
+    }
+
+    Session login(String email, String password) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(
+                json(HttpRequest.newBuilder(baseUri.resolve("/api/auth/login")), "POST",
+                        Map.of("email", email, "password", password)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + email + ": HTTP " + response.statusCode());
+        }
+        JsonNode body = objectMapper.readTree(response.body());
+        return new Session(body.path("token").asText(), body.path("user").path("id").asText());
+    }
+
+    JsonNode get(Session session, String path, EndpointStats stats, long intendedStart) {
+        return send(request(session, path).GET().build(), stats, intendedStart);
+    }
+
+    JsonNode post(Session session, String path, Object body, EndpointStats stats, long intendedStart) {
+        return send(json(request(session, path), "POST", body).build(), stats, intendedStart);
+    }
+
+    private JsonNode send(HttpRequest request, EndpointStats stats, long intendedStart) {
+        boolean success = false;
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            success = response.statusCode() < 400;
+            return success ? objectMapper.readTree(response.body()) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            stats.record(System.nanoTime() - intendedStart, success);
+        }
+    }
+
+    private HttpRequest.Builder request(Session session, String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(timeout)
+                .header("Authorization", "Bearer " + session.token())
+                .header("Accept", "application/json");
+    }
+
+    private HttpRequest.Builder json(HttpRequest.Builder builder, String method, Object body) {
+        try {
+            return builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize request body", e);
+        }
+    }
+
+    record Session(String token, String userId) {
+    }
+}
@@ -0,0 +1,59 @@
+package se.fastighet.core.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Svarstider och fel för en endpoint. {@link Recorder} tillåter samtidig inspelning från
+ * alla klienter utan lås; {@link #reset()} slänger uppvärmningen.
+ */
+class EndpointStats {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+    private Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void record(long latencyNanos, boolean success) {
+        recorder.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    void reset() {
+        recorder.reset();
+        errors.reset();
+        total = new Histogram(MAX_LATENCY_NANOS, 3);
+    }
+
+    /**
+     * Tar ut allt som spelats in sedan förra anropet och lägger det till totalen.
+     */
+    Histogram drain() {
+        Histogram interval = recorder.getIntervalHistogram();
+        total.add(interval);
+        return interval;
+    }
+
+    Histogram total() {
+        return total;
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+}
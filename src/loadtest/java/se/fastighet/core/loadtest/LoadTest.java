@@ -0,0 +1,308 @@
+package se.fastighet.core.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Makrobenchmark för REST-API:t med blandad last från virtuella trådar.
+ * <p>
+ * Loggar in som boende, styrelseledamot och tekniker via {@code /api/auth/login}. Varje
+ * klient väljer sedan operationer enligt {@code loadtest.mix}. Med {@code loadtest.rate}
+ * satt körs lasten med fast takt och svarstiden räknas från den planerade starttiden;
+ * utan körs den i sluten slinga. Resultatet skrivs som tabell och som JSON.
+ * <p>
+ * Kör: {@code mvn -Ploadtest test-compile exec:java -Dloadtest.propertyId=<uuid>}.
+ * Alla inställningar finns i docs/performance/load-testing.md.
+ */
+public class LoadTest {
+
+    private static final int TICKET_POOL_SIZE = 1024;
+
+    private final Config config;
+    private final ApiClient api;
+    private final Map<Operation, EndpointStats> stats = new LinkedHashMap<>();
+    private final AtomicLongArray ticketPool = new AtomicLongArray(TICKET_POOL_SIZE);
+    private final AtomicLong ticketsCreated = new AtomicLong();
+
+    private ApiClient.Session resident;
+    private ApiClient.Session boardMember;
+    private ApiClient.Session technician;
+
+    LoadTest(Config config, ApiClient api) {
+        this.config = config;
+        this.api = api;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats(operation.label));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = Config.fromSystemProperties();
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(clients)
+                    .build();
+            LoadTest loadTest = new LoadTest(config, new ApiClient(httpClient, objectMapper, config.baseUri(),
+                    config.requestTimeout()));
+            loadTest.run(clients);
+            loadTest.report(objectMapper);
+        }
+    }
+
+    void run(ExecutorService clients) throws Exception {
+        resident = api.login(config.residentEmail(), config.password());
+        boardMember = api.login(config.boardMemberEmail(), config.password());
+        technician = api.login(config.technicianEmail(), config.password());
+
+        // Några ärenden att läsa, kommentera och tilldela innan blandningen börjar
+        for (int i = 0; i < 20; i++) {
+            createTicket(System.nanoTime());
+        }
+
+        long start = System.nanoTime();
+        long warmupEnd = start + config.warmup().toNanos();
+        long end = warmupEnd + config.duration().toNanos();
+        System.out.printf("Running %d clients for %s (+%s warmup) against %s%s%n", config.clients(),
+                config.duration(), config.warmup(), config.baseUri(),
+                config.rate() > 0 ? " at " + config.rate() + " req/s" : " in closed loop");
+
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < config.clients(); i++) {
+            SplittableRandom random = new SplittableRandom(config.seed() + i);
+            running.add(clients.submit(() -> client(random, start, end)));
+        }
+
+        if (!config.warmup().isZero()) {
+            sleepUntil(warmupEnd);
+            stats.values().forEach(EndpointStats::reset);
+            System.out.println("Warmup done, measuring");
+        }
+        while (System.nanoTime() < end) {
+            sleepUntil(Math.min(end, System.nanoTime() + TimeUnit.SECONDS.toNanos(10)));
+            progress();
+        }
+        for (Future<?> future : running) {
+            future.get();
+        }
+    }
+
+    private void client(SplittableRandom random, long start, long end) {
+        long interval = config.rate() > 0 ? (long) (1e9 * config.clients() / config.rate()) : 0;
+        long next = start + (interval > 0 ? random.nextLong(interval) : 0);
+
+        while (true) {
+            long intendedStart;
+            if (interval > 0) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                intendedStart = next;
+                next += interval;
+            } else {
+                intendedStart = System.nanoTime();
+            }
+            if (intendedStart >= end) {
+                return;
+            }
+            execute(config.pick(random), random, intendedStart);
+        }
+    }
+
+    private void execute(Operation operation, SplittableRandom random, long intendedStart) {
+        EndpointStats endpoint = stats.get(operation);
+        switch (operation) {
+            case CREATE -> createTicket(intendedStart);
+            case MY_TICKETS -> api.get(resident, "/api/tickets/my", endpoint, intendedStart);
+            case PROPERTY_TICKETS -> api.get(boardMember, "/api/tickets/property/" + config.propertyId()
+                    + "?page=" + random.nextInt(5), endpoint, intendedStart);
+            case DETAIL -> api.get(resident, "/api/tickets/" + randomTicket(random), endpoint, intendedStart);
+            case COMMENT -> api.post(resident, "/api/tickets/" + randomTicket(random) + "/comments",
+                    Map.of("content", "Lasttest " + Instant.now()), endpoint, intendedStart);
+            case ASSIGN -> api.post(boardMember, "/api/tickets/" + randomTicket(random) + "/assign?assigneeId="
+                    + technician.userId(), Map.of(), endpoint, intendedStart);
+        }
+    }
+
+    private void createTicket(long intendedStart) {
+        JsonNode created = api.post(resident, "/api/tickets", Map.of(
+                "title", "Lasttest: droppande kran",
+                "description", "Skapat av lasttestet för att mäta API:t.",
+                "priority", "MEDIUM",
+                "propertyId", config.propertyId()), stats.get(Operation.CREATE), intendedStart);
+        if (created != null && created.hasNonNull("id")) {
+            long slot = ticketsCreated.getAndIncrement() % TICKET_POOL_SIZE;
+            ticketPool.set((int) slot, created.get("id").asLong());
+        }
+    }
+
+    private long randomTicket(SplittableRandom random) {
+        int filled = (int) Math.min(ticketsCreated.get(), TICKET_POOL_SIZE);
+        return ticketPool.get(random.nextInt(Math.max(1, filled)));
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private void progress() {
+        StringBuilder line = new StringBuilder();
+        for (EndpointStats endpoint : stats.values()) {
+            Histogram interval = endpoint.drain();
+            if (interval.getTotalCount() > 0) {
+                line.append(String.format("  %s %d (p99 %.1f ms)", endpoint.name(), interval.getTotalCount(),
+                        millis(interval.getValueAtPercentile(99))));
+            }
+        }
+        System.out.println(line);
+    }
+
+    void report(ObjectMapper objectMapper) throws IOException {
+        double seconds = config.duration().toNanos() / 1e9;
+        ObjectNode result = objectMapper.createObjectNode()
+                .put("label", config.label())
+                .put("timestamp", Instant.now().toString())
+                .put("baseUrl", config.baseUri().toString())
+                .put("clients", config.clients())
+                .put("rate", config.rate())
+                .put("durationSeconds", seconds);
+        ArrayNode endpoints = result.putArray("endpoints");
+
+        System.out.printf("%n%-18s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (EndpointStats endpoint : stats.values()) {
+            endpoint.drain();
+            Histogram total = endpoint.total();
+            if (total.getTotalCount() == 0) {
+                continue;
+            }
+            double throughput = total.getTotalCount() / seconds;
+            System.out.printf("%-18s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint.name(),
+                    total.getTotalCount(), endpoint.errors(), throughput,
+                    millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(99)),
+                    millis(total.getValueAtPercentile(99.9)), millis(total.getMaxValue()));
+            endpoints.addObject()
+                    .put("name", endpoint.name())
+                    .put("count", total.getTotalCount())
+                    .put("errors", endpoint.errors())
+                    .put("throughputPerSecond", throughput)
+                    .put("p50Ms", millis(total.getValueAtPercentile(50)))
+                    .put("p99Ms", millis(total.getValueAtPercentile(99)))
+                    .put("p999Ms", millis(total.getValueAtPercentile(99.9)))
+                    .put("maxMs", millis(total.getMaxValue()));
+        }
+
+        Files.createDirectories(config.output().toAbsolutePath().getParent());
+        objectMapper.writeValue(config.output().toFile(), result);
+        System.out.println("\nWrote " + config.output());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    enum Operation {
+        CREATE("create"),
+        MY_TICKETS("my"),
+        PROPERTY_TICKETS("property"),
+        DETAIL("detail"),
+        COMMENT("comment"),
+        ASSIGN("assign");
+
+        final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        static Operation fromLabel(String label) {
+            for (Operation operation : values()) {
+                if (operation.label.equals(label)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation in loadtest.mix: " + label);
+        }
+    }
+
+    record Config(URI baseUri, int clients, Duration duration, Duration warmup, double rate, String propertyId,
+                  String residentEmail, String boardMemberEmail, String technicianEmail, String password,
+                  Operation[] weightedOperations, long seed, Duration requestTimeout, Path output, String label) {
+
+        static Config fromSystemProperties() {
+            String propertyId = System.getProperty("loadtest.propertyId");
+            if (propertyId == null || propertyId.isBlank()) {
+                throw new IllegalArgumentException("Set -Dloadtest.propertyId to the id of the test property "
+                        + "(BRF Solsidan in the default data)");
+            }
+            return new Config(
+                    URI.create(System.getProperty("loadtest.baseUrl", "http://localhost:8080")),
+                    Integer.getInteger("loadtest.clients", 50),
+                    Duration.parse(System.getProperty("loadtest.duration", "PT1M")),
+                    Duration.parse(System.getProperty("loadtest.warmup", "PT15S")),
+                    Double.parseDouble(System.getProperty("loadtest.rate", "0")),
+                    propertyId,
+                    System.getProperty("loadtest.resident", "user@test.se"),
+                    System.getProperty("loadtest.boardMember", "boardmember@test.com"),
+                    System.getProperty("loadtest.technician", "technician@test.com"),
+                    System.getProperty("loadtest.password", "password123"),
+                    weights(System.getProperty("loadtest.mix",
+                            "create=10,my=25,property=20,detail=30,comment=10,assign=5")),
+                    Long.getLong("loadtest.seed", 42L),
+                    Duration.parse(System.getProperty("loadtest.requestTimeout", "PT30S")),
+                    Path.of(System.getProperty("loadtest.output", "target/loadtest-result.json")),
+                    System.getProperty("loadtest.label", "unlabeled"));
+        }
+
+        /**
+         * Expanderar "create=10,my=25" till en tabell där varje operation förekommer lika
+         * många gånger som sin vikt, så att ett val är ett enda slumptal.
+         */
+        private static Operation[] weights(String mix) {
+            List<Operation> table = new ArrayList<>();
+            for (String entry : mix.split(",")) {
+                String[] parts = entry.trim().split("=");
+                Operation operation = Operation.fromLabel(parts[0].trim());
+                for (int i = 0; i < Integer.parseInt(parts[1].trim()); i++) {
+                    table.add(operation);
+                }
+            }
+            if (table.isEmpty()) {
+                throw new IllegalArgumentException("loadtest.mix has no operations");
+            }
+            return table.toArray(Operation[]::new);
+        }
+
+        Operation pick(SplittableRandom random) {
+            return weightedOperations[random.nextInt(weightedOperations.length)];
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package se.fastighet.core.admission;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Prioritetsfil och kostnad för en controllermetod, eller för alla metoder i klassen.
+ * <p>
+ * Kostnaden dras från användarens hink för filen. En dyr läsning kan kosta flera polletter
+ * så att en användare inte kan göra lika många av dem som av enkla läsningar. Metoder utan
+ * annotation går i {@link Lane#NORMAL} och kostar 1.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Admission {
+
+    Lane value();
+
+    int cost() default 1;
+}
@@ -0,0 +1,204 @@
+package se.fastighet.core.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import se.fastighet.core.exception.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Släpper in eller avvisar requests innan de når controllern.
+ * <p>
+ * Två kontroller görs, båda utan lås:
+ * <ol>
+ *     <li>Samtidighet. Varje fil släpps bara in så länge det totala antalet pågående requests
+ *     är under filens andel av {@code admission.max-concurrent} ({@code shed-at}). Låga filer
+ *     har lägre andel och stryps därför först när servern blir full, medan {@link Lane#CRITICAL}
+ *     får använda hela kapaciteten. En fil kan dessutom ha ett eget tak ({@code max-concurrent}).</li>
+ *     <li>Takt. Varje användare har en pollettpåse per fil ({@code admission.user.rate} per
+ *     sekund, högst {@code admission.user.burst}). En användare som laddar om en lista i en
+ *     loop tömmer sin egen påse för läsningar men kan fortfarande skapa ärenden.</li>
+ * </ol>
+ * Se docs/performance/admission-control.md.
+ */
+@Component
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class AdmissionControl {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Gränserna för en fil. {@code maxTotal} jämförs med alla pågående requests,
+     * {@code maxInLane} bara med filens egna.
+     */
+    private record LaneLimits(int maxTotal, int maxInLane) {
+    }
+
+    /**
+     * En godkänd request. Måste lämnas tillbaka med {@link #release(Permit)} när requesten är klar.
+     */
+    public record Permit(Lane lane) {
+    }
+
+    private final Map<Lane, LaneLimits> limits = new EnumMap<>(Lane.class);
+    private final Map<Lane, AtomicInteger> inFlightByLane = new EnumMap<>(Lane.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, RateBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<Lane, Counter> overloadRejections = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> rateRejections = new EnumMap<>(Lane.class);
+
+    private final long emissionIntervalNanos;
+    private final int burst;
+    private final Duration overloadRetryAfter;
+
+    public AdmissionControl(
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${admission.max-concurrent:100}") int maxConcurrent,
+            @Value("${admission.user.rate:10}") double userRate,
+            @Value("${admission.user.burst:40}") int burst,
+            @Value("${admission.retry-after:PT2S}") Duration overloadRetryAfter) {
+        this.emissionIntervalNanos = (long) (NANOS_PER_SECOND / userRate);
+        this.burst = burst;
+        this.overloadRetryAfter = overloadRetryAfter;
+
+        for (Lane lane : Lane.values()) {
+            String prefix = "admission.lanes." + lane.name().toLowerCase(Locale.ROOT) + ".";
+            double shedAt = environment.getProperty(prefix + "shed-at", Double.class, defaultShedAt(lane));
+            int maxInLane = environment.getProperty(prefix + "max-concurrent", Integer.class, Integer.MAX_VALUE);
+            limits.put(lane, new LaneLimits((int) Math.ceil(maxConcurrent * shedAt), maxInLane));
+
+            AtomicInteger counter = new AtomicInteger();
+            inFlightByLane.put(lane, counter);
+            String tag = lane.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("admission.in_flight", counter, AtomicInteger::get)
+                    .description("Pågående requests per prioritetsfil")
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            overloadRejections.put(lane, Counter.builder("admission.rejected")
+                    .description("Avvisade requests (429)")
+                    .tag("lane", tag)
+                    .tag("reason", "overload")
+                    .register(meterRegistry));
+            rateRejections.put(lane, Counter.builder("admission.rejected")
+                    .description("Avvisade requests (429)")
+                    .tag("lane", tag)
+                    .tag("reason", "rate")
+                    .register(meterRegistry));
+        }
+        Gauge.builder("admission.buckets", buckets, Map::size)
+                .description("Användare med en pollettpåse som inte är full")
+                .register(meterRegistry);
+        log.info("Admission control enabled: max {} concurrent requests, {}/s per user and lane (burst {})",
+                maxConcurrent, userRate, burst);
+    }
+
+    private static double defaultShedAt(Lane lane) {
+        return switch (lane) {
+            case CRITICAL -> 1.0;
+            case HIGH -> 0.9;
+            case NORMAL -> 0.75;
+            case LOW -> 0.5;
+        };
+    }
+
+    /**
+     * Släpper in requesten eller kastar {@link TooManyRequestsException}.
+     *
+     * @param clientKey användarens id, eller klientens adress för anonyma requests
+     */
+    public Permit admit(Lane lane, int cost, String clientKey) {
+        LaneLimits laneLimits = limits.get(lane);
+        AtomicInteger inLane = inFlightByLane.get(lane);
+        int total = inFlight.incrementAndGet();
+        int inLaneCount = inLane.incrementAndGet();
+        if (total > laneLimits.maxTotal() || inLaneCount > laneLimits.maxInLane()) {
+            inFlight.decrementAndGet();
+            inLane.decrementAndGet();
+            overloadRejections.get(lane).increment();
+            log.debug("Shedding {} request from {}: {} in flight, {} in lane", lane, clientKey, total, inLaneCount);
+            throw new TooManyRequestsException("Tjänsten är hårt belastad, försök igen om en stund",
+                    overloadRetryAfter);
+        }
+
+        if (cost > 0) {
+            long now = System.nanoTime();
+            long waitNanos = buckets.computeIfAbsent(clientKey + "|" + lane, key -> new RateBucket(now))
+                    .tryConsume(Math.min(cost, burst), now, emissionIntervalNanos, burst * emissionIntervalNanos);
+            if (waitNanos > 0) {
+                inFlight.decrementAndGet();
+                inLane.decrementAndGet();
+                rateRejections.get(lane).increment();
+                log.debug("Rate limiting {} request from {} for {} ms", lane, clientKey,
+                        TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                throw new TooManyRequestsException("För många anrop, försök igen om en stund",
+                        Duration.ofNanos(waitNanos));
+            }
+        }
+        return new Permit(lane);
+    }
+
+    public void release(Permit permit) {
+        inFlightByLane.get(permit.lane()).decrementAndGet();
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Tar bort påsar som har fyllts på helt. De skapas på nytt, fulla, vid nästa anrop.
+     */
+    @Scheduled(fixedDelayString = "${admission.user.cleanup-interval:PT1M}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    /**
+     * Pollettpåse som ett enda tal (GCRA): tidpunkten då påsen är full igen. Ett anrop som
+     * kostar {@code n} flyttar tidpunkten {@code n} intervall framåt, och avvisas om den då
+     * hamnar mer än en hel påse framför nu. Tiden som ligger över är exakt Retry-After.
+     */
+    static final class RateBucket {
+
+        private final AtomicLong fullAt;
+
+        RateBucket(long now) {
+            this.fullAt = new AtomicLong(now);
+        }
+
+        /**
+         * @return 0 om anropet släpps in, annars hur många nanosekunder klienten ska vänta
+         */
+        long tryConsume(int cost, long now, long intervalNanos, long capacityNanos) {
+            while (true) {
+                long current = fullAt.get();
+                long next = (current - now > 0 ? current : now) + cost * intervalNanos;
+                long wait = next - now - capacityNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return fullAt.get() - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package se.fastighet.core.admission;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import se.fastighet.core.security.UserPrincipal;
+
+/**
+ * Kör {@link AdmissionControl} före controllermetoden, efter autentiseringen så att
+ * användaren är känd. Platsen hålls tills requesten är helt klar, för en export alltså
+ * tills hela filen har skickats på den asynkrona tråden.
+ */
+@RequiredArgsConstructor
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".permit";
+    private static final Admission DEFAULT = Default.class.getAnnotation(Admission.class);
+
+    private final AdmissionControl admissionControl;
+
+    @Admission(Lane.NORMAL)
+    private static final class Default {
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Asynkrona och fel-dispatcher hör till en request som redan har släppts in
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod method)
+                || request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            return true;
+        }
+        Admission admission = admissionFor(method);
+        request.setAttribute(PERMIT_ATTRIBUTE,
+                admissionControl.admit(admission.value(), admission.cost(), clientKey(request)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        // Anropas inte för den första dispatchen när requesten fortsätter asynkront, utan
+        // för den asynkrona dispatchen när svaret är klart
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof AdmissionControl.Permit permit) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            admissionControl.release(permit);
+        }
+    }
+
+    private static Admission admissionFor(HandlerMethod method) {
+        Admission admission = method.getMethodAnnotation(Admission.class);
+        if (admission == null) {
+            admission = AnnotatedElementUtils.findMergedAnnotation(method.getBeanType(), Admission.class);
+        }
+        return admission != null ? admission : DEFAULT;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId().toString();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
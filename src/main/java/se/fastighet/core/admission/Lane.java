@@ -0,0 +1,20 @@
+package se.fastighet.core.admission;
+
+/**
+ * Prioritetsfil för en request. Vid överlast stryps filerna nerifrån: först {@link #LOW},
+ * sist {@link #CRITICAL}. Se docs/performance/admission-control.md.
+ */
+public enum Lane {
+
+    /** Nya ärenden och drift. Släpps in så länge det finns plats alls. */
+    CRITICAL,
+
+    /** Ändringar av ärenden, kommentarer, bilagor och inloggning. */
+    HIGH,
+
+    /** Vanliga läsningar. Standard för metoder utan {@link Admission}. */
+    NORMAL,
+
+    /** Listor över hela fastigheter, exporter och rapporter. Stryps först. */
+    LOW
+}
@@ -0,0 +1,73 @@
+package se.fastighet.core.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import se.fastighet.core.admission.AdmissionControl;
+import se.fastighet.core.datasource.ReplicaDataSourceConfig;
+import se.fastighet.core.diagnostics.StatementCountingConfig;
+import se.fastighet.core.diagnostics.slowquery.SlowQueryConfig;
+import se.fastighet.core.sharding.ShardingConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Avbryter uppstarten när en brytare med {@code @ConditionalOnProperty} har ett annat värde än
+ * när AOT-koden genererades. Med {@code -Dspring.aot.enabled=true} är villkoren redan avgjorda
+ * vid bygget, så t.ex. {@code SHARDING_ENABLED=true} skulle annars tyst ignoreras.
+ * <p>
+ * Jämförelsen görs mot om bönan som brytaren styr finns i den genererade kontexten. Se
+ * docs/performance/startup.md.
+ */
+@Component
+@Slf4j
+public class AotBuildGuard implements BeanFactoryPostProcessor, EnvironmentAware {
+
+    private record BuildTimeSwitch(String property, boolean matchIfMissing, Class<?> bean) {
+    }
+
+    private static final List<BuildTimeSwitch> SWITCHES = List.of(
+            new BuildTimeSwitch("sharding.enabled", false, ShardingConfig.class),
+            new BuildTimeSwitch("datasource.replicas.enabled", false, ReplicaDataSourceConfig.class),
+            new BuildTimeSwitch("spring.threads.virtual.enabled", false, VirtualThreadPinningMonitor.class),
+            new BuildTimeSwitch("admission.enabled", true, AdmissionControl.class),
+            new BuildTimeSwitch("diagnostics.statements.enabled", true, StatementCountingConfig.class),
+            new BuildTimeSwitch("diagnostics.slow-queries.enabled", true, SlowQueryConfig.class),
+            new BuildTimeSwitch("app.seed.enabled", true, DataInitializer.class));
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        if (!AotDetector.useGeneratedArtifacts()) {
+            return;
+        }
+
+        List<String> mismatches = new ArrayList<>();
+        for (BuildTimeSwitch buildTimeSwitch : SWITCHES) {
+            boolean enabled = environment.getProperty(buildTimeSwitch.property(), Boolean.class,
+                    buildTimeSwitch.matchIfMissing());
+            boolean built = beanFactory.getBeanNamesForType(buildTimeSwitch.bean(), true, false).length > 0;
+            if (enabled != built) {
+                mismatches.add(buildTimeSwitch.property() + "=" + enabled + " (AOT build: " + built + ")");
+            }
+        }
+
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("Properties differ from the AOT build and would be ignored: "
+                    + String.join(", ", mismatches) + ". Rebuild with -Paot -Daot.profiles=... "
+                    + "or start without -Dspring.aot.enabled=true");
+        }
+        log.debug("Build-time switches match the AOT build");
+    }
+}
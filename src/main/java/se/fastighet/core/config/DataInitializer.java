@@ -3,6 +3,7 @@ package se.fastighet.core.config;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import se.fastighet.core.entity.Agreement;
@@ -19,12 +20,23 @@ import se.fastighet.core.repository.AgreementRepository;
 import se.fastighet.core.repository.InvoiceRepository;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
 
+/**
+ * Testdata för utveckling. Befintliga rader som redan stämmer lämnas orörda, så en omstart
+ * mot en fylld databas gör bara uppslagningar. Stängs av med {@code app.seed.enabled=false},
+ * vilket profilen {@code prod} gör.
+ */
 @Component
+@ConditionalOnProperty(name = "app.seed.enabled", havingValue = "true", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class DataInitializer implements CommandLineRunner {
 
+    private static final String SEED_PASSWORD = "password123";
+
     private final UserRepository userRepository;
     private final PropertyRepository propertyRepository;
     private final UnitRepository unitRepository;
@@ -32,6 +44,7 @@ public class DataInitializer implements CommandLineRunner {
     private final AgreementRepository agreementRepository;
     private final InvoiceRepository invoiceRepository;
     private final PasswordEncoder passwordEncoder;
+    private String seedPasswordHash;
 
     @Override
     public void run(String... args) {
@@ -86,18 +99,37 @@ public class DataInitializer implements CommandLineRunner {
     }
 
     private User ensureUser(String email, String name, User.Role role) {
-        User user = userRepository.findByEmail(email)
-                .orElseGet(() -> User.builder().email(email).build());
-
-        user.setName(name);
-        user.setRole(role);
-        user.setPassword(passwordEncoder.encode("password123"));
+        Optional<User> existing = userRepository.findByEmail(email);
+        if (existing.isPresent()) {
+            User user = existing.get();
+            if (name.equals(user.getName()) && role == user.getRole()) {
+                return user;
+            }
+            user.setName(name);
+            user.setRole(role);
+            return userRepository.save(user);
+        }
 
-        User saved = userRepository.save(user);
-        log.info("Ensured test user: {} ({})", email, role);
+        User saved = userRepository.save(User.builder()
+                .email(email)
+                .name(name)
+                .role(role)
+                .password(seedPasswordHash())
+                .build());
+        log.info("Created test user: {} ({})", email, role);
         return saved;
     }
 
+    /**
+     * BCrypt är avsiktligt långsamt, så hashen beräknas en gång och delas av alla testanvändare.
+     */
+    private String seedPasswordHash() {
+        if (seedPasswordHash == null) {
+            seedPasswordHash = passwordEncoder.encode(SEED_PASSWORD);
+        }
+        return seedPasswordHash;
+    }
+
     private Property ensureProperty(
             String name,
             String address,
@@ -111,16 +143,26 @@ public class DataInitializer implements CommandLineRunner {
         Property property = propertyRepository.findByName(name)
                 .orElseGet(() -> Property.builder().name(name).build());
 
-        property.setAddress(address);
-        property.setCity(city);
-        property.setPostalCode(postalCode);
-        property.setPropertyDesignation(propertyDesignation);
-        property.setOrganizationNumber(organizationNumber);
-        property.setEconomicPlanRegistered(economicPlanRegistered);
-        property.setContactEmail(contactEmail);
-        property.setContactPhone(contactPhone);
+        boolean changed = property.getId() == null;
+        changed |= update(property.getAddress(), address, property::setAddress);
+        changed |= update(property.getCity(), city, property::setCity);
+        changed |= update(property.getPostalCode(), postalCode, property::setPostalCode);
+        changed |= update(property.getPropertyDesignation(), propertyDesignation, property::setPropertyDesignation);
+        changed |= update(property.getOrganizationNumber(), organizationNumber, property::setOrganizationNumber);
+        changed |= update(property.getEconomicPlanRegistered(), economicPlanRegistered,
+                property::setEconomicPlanRegistered);
+        changed |= update(property.getContactEmail(), contactEmail, property::setContactEmail);
+        changed |= update(property.getContactPhone(), contactPhone, property::setContactPhone);
 
-        return propertyRepository.save(property);
+        return changed ? propertyRepository.save(property) : property;
+    }
+
+    private static <T> boolean update(T current, T desired, Consumer<T> setter) {
+        if (Objects.equals(current, desired)) {
+            return false;
+        }
+        setter.accept(desired);
+        return true;
     }
 
     private Unit ensureUnit(
@@ -152,13 +194,11 @@ public class DataInitializer implements CommandLineRunner {
     }
 
     private void linkUserToUnit(User user, Unit unit) {
-        if (!user.getUnits().contains(unit)) {
-            user.getUnits().add(unit);
-        }
-        if (!unit.getResidents().contains(user)) {
-            unit.getResidents().add(user);
+        boolean changed = user.getUnits().add(unit);
+        changed |= unit.getResidents().add(user);
+        if (changed) {
+            userRepository.save(user);
         }
-        userRepository.save(user);
     }
 
     private void linkAdminToProperty(User admin, Property property) {
@@ -172,9 +212,8 @@ public class DataInitializer implements CommandLineRunner {
     }
 
     private void ensureNews(User author, String title, String body) {
-        boolean exists = newsRepository.findAll().stream()
-                .anyMatch(post -> post.getTitle().equalsIgnoreCase(title));
-        if (!exists) {
+        // Nyheter seedas bara i en tom tabell, så att befintliga inlägg inte behöver läsas in
+        if (newsRepository.count() == 0) {
             newsRepository.save(NewsPost.builder()
                     .title(title)
                     .body(body)
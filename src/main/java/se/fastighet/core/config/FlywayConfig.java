@@ -0,0 +1,52 @@
+package se.fastighet.core.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import se.fastighet.core.sharding.ShardSet;
+
+/**
+ * Hur Flyway-migreringarna körs vid start när {@code spring.flyway.enabled=true}.
+ * <p>
+ * Med sharding migreras hemsharden först och sedan varje övrig shard med samma inställningar,
+ * så att alla shards har samma schemaversion. {@code app.migrations.on-startup=false} hoppar
+ * över migreringen, t.ex. i CDS-träningskörningen där det inte finns någon databas.
+ * Se docs/performance/schema-migrations.md.
+ */
+@Configuration
+@Slf4j
+public class FlywayConfig {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(
+            ObjectProvider<ShardSet> shardSet,
+            @Value("${app.migrations.on-startup:true}") boolean onStartup) {
+        return flyway -> {
+            if (!onStartup) {
+                log.info("Skipping schema migrations (app.migrations.on-startup=false)");
+                return;
+            }
+            flyway.migrate();
+
+            ShardSet shards = shardSet.getIfAvailable();
+            if (shards == null) {
+                return;
+            }
+            for (String shardId : shards.ids()) {
+                if (shardId.equals(shards.home())) {
+                    continue;
+                }
+                log.info("Migrating shard {}", shardId);
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shards.dataSource(shardId))
+                        .load()
+                        .migrate();
+            }
+        };
+    }
+}
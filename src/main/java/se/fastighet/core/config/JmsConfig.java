@@ -26,6 +26,7 @@ public class JmsConfig {
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
+        mapper.setFilterProvider(JsonFilters.filterProvider()); // Krävs för TicketResponse
         return mapper;
     }
 }
@@ -0,0 +1,46 @@
+package se.fastighet.core.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import se.fastighet.core.dto.response.TicketResponse;
+
+/**
+ * Filter för svar med {@code @JsonFilter}. Registreras på ObjectMapper-bönan i {@link JmsConfig},
+ * som är den som både MVC och JMS använder. Bootens egen mapper, och därmed
+ * Jackson2ObjectMapperBuilderCustomizer, används inte när den bönan finns.
+ */
+public final class JsonFilters {
+
+    private JsonFilters() {
+    }
+
+    public static FilterProvider filterProvider() {
+        return new SimpleFilterProvider()
+                .addFilter(TicketResponse.FIELDS_FILTER, new TicketFieldsFilter());
+    }
+
+    /**
+     * Skriver bara de delar av ett ärende som efterfrågades med {@code fields=}/{@code include=}.
+     * Urvalet följer med svaret, så att ett delat svar från TicketReadCoalescer skrivs likadant
+     * för alla som väntade på det.
+     */
+    static class TicketFieldsFilter extends SimpleBeanPropertyFilter {
+
+        @Override
+        public void serializeAsField(Object pojo, JsonGenerator generator, SerializerProvider provider,
+                                     PropertyWriter writer) throws Exception {
+            if (pojo instanceof TicketResponse response && response.getFields() != null
+                    && !response.getFields().includes(writer.getName())) {
+                if (!generator.canOmitFields()) {
+                    writer.serializeAsOmittedField(pojo, generator, provider);
+                }
+                return;
+            }
+            writer.serializeAsField(pojo, generator, provider);
+        }
+    }
+}
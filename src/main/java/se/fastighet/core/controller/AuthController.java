@@ -1,5 +1,6 @@
 package se.fastighet.core.controller;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -7,6 +8,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
 import se.fastighet.core.dto.request.LoginRequest;
 import se.fastighet.core.dto.request.TokenExchangeRequest;
 import se.fastighet.core.dto.response.AuthResponse;
@@ -20,6 +23,7 @@ import java.util.Map;
 @RestController
 @RequestMapping({"/api/auth", "/auth"})
 @RequiredArgsConstructor
+@Timed(value = "api.controller", histogram = true)
 @Slf4j
 public class AuthController {
 
@@ -29,6 +33,7 @@ public class AuthController {
      * Login with email and password
      */
     @PostMapping("/login")
+    @Admission(Lane.HIGH)
     public ResponseEntity<?> login(@Valid @RequestBody LoginRequest request) {
         try {
             AuthResponse response = authService.login(request);
@@ -47,6 +52,7 @@ public class AuthController {
      * Exchange Firebase token for internal JWT token
      */
     @PostMapping("/token/exchange")
+    @Admission(Lane.HIGH)
     public ResponseEntity<?> exchangeToken(@Valid @RequestBody TokenExchangeRequest request) {
         try {
             AuthResponse response = authService.exchangeToken(request);
@@ -0,0 +1,76 @@
+package se.fastighet.core.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
+import se.fastighet.core.diagnostics.jfr.FlightRecorderService;
+import se.fastighet.core.dto.request.StartRecordingRequest;
+import se.fastighet.core.dto.response.RecordingResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/diagnostics/recordings")
+@Admission(Lane.CRITICAL) // En JFR-inspelning behövs just när servern är överlastad
+@RequiredArgsConstructor
+@Tag(name = "Diagnostics", description = "API för JFR-inspelningar och långsamma frågor (endast admin)")
+public class DiagnosticsController {
+
+    private final FlightRecorderService flightRecorderService;
+
+    @GetMapping
+    @Operation(summary = "Lista inspelningar")
+    public ResponseEntity<List<RecordingResponse>> listRecordings() {
+        return ResponseEntity.ok(flightRecorderService.list());
+    }
+
+    @PostMapping
+    @Operation(summary = "Starta JFR-inspelning")
+    public ResponseEntity<RecordingResponse> startRecording(
+            @Valid @RequestBody(required = false) StartRecordingRequest request) {
+
+        RecordingResponse response = flightRecorderService.start(
+                request != null ? request : new StartRecordingRequest());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @PostMapping("/{recordingId}/stop")
+    @Operation(summary = "Stoppa inspelning")
+    public ResponseEntity<RecordingResponse> stopRecording(@PathVariable long recordingId) {
+        return ResponseEntity.ok(flightRecorderService.stop(recordingId));
+    }
+
+    @GetMapping("/{recordingId}/dump")
+    @Operation(summary = "Hämta inspelningen som .jfr-fil")
+    public void dumpRecording(@PathVariable long recordingId, HttpServletResponse response) throws IOException {
+        Path file = flightRecorderService.dump(recordingId);
+        try {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(Files.size(file));
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"recording-" + recordingId + ".jfr\"");
+            Files.copy(file, response.getOutputStream());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @DeleteMapping("/{recordingId}")
+    @Operation(summary = "Ta bort inspelning")
+    public ResponseEntity<Void> closeRecording(@PathVariable long recordingId) {
+        flightRecorderService.close(recordingId);
+        return ResponseEntity.noContent().build();
+    }
+}
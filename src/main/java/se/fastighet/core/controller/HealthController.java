@@ -4,12 +4,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
 
 import java.time.LocalDateTime;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/health")
+@Admission(value = Lane.CRITICAL, cost = 0)
 public class HealthController {
 
     @GetMapping
@@ -0,0 +1,69 @@
+package se.fastighet.core.controller;
+
+import io.micrometer.core.annotation.Timed;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
+import se.fastighet.core.diagnostics.StatementBudget;
+import se.fastighet.core.dto.response.ResolutionReportRow;
+import se.fastighet.core.dto.response.RollupRebuildResponse;
+import se.fastighet.core.security.UserPrincipal;
+import se.fastighet.core.service.ReportService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/reports")
+@Admission(value = Lane.LOW, cost = 5)
+@RequiredArgsConstructor
+@Timed(value = "api.controller", histogram = true)
+@Tag(name = "Reports", description = "API för rapporter över ärenden (styrelse och admin)")
+public class ReportController {
+
+    private final ReportService reportService;
+
+    @GetMapping("/resolution-times")
+    @PreAuthorize("hasAnyRole('BOARD_MEMBER', 'ADMIN')")
+    @StatementBudget(6) // Användare, fastigheter, rollupraderna, kategorier och fastighetsnamn
+    @Operation(summary = "Antal ärenden och lösningstider per period, fastighet, kategori och prioritet",
+            description = "Skapade ärenden räknas på skapandedagen och lösta på lösningsdagen. "
+                    + "Utan propertyId ingår alla fastigheter användaren har tillgång till.")
+    public ResponseEntity<List<ResolutionReportRow>> getResolutionTimes(
+            @RequestParam(required = false) List<UUID> propertyId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "MONTH") Set<ReportService.Dimension> groupBy,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusYears(1).plusDays(1);
+        List<ResolutionReportRow> rows = reportService.getResolutionReport(propertyId, start, end, groupBy, principal);
+        return ResponseEntity.ok(rows);
+    }
+
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Räkna om rollupparna från ärendena",
+            description = "För att fylla i historik efter driftsättning eller laga dagar efter ett avbrott. "
+                    + "Utan propertyId räknas alla fastigheter admin förvaltar om.")
+    public ResponseEntity<List<RollupRebuildResponse>> rebuildRollups(
+            @RequestParam(required = false) UUID propertyId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        List<RollupRebuildResponse> results = reportService.rebuildRollups(propertyId, from,
+                to != null ? to : LocalDate.now(), principal);
+        return ResponseEntity.ok(results);
+    }
+}
@@ -0,0 +1,80 @@
+package se.fastighet.core.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
+import se.fastighet.core.dto.request.MoveShardRequest;
+import se.fastighet.core.dto.response.ShardAssignmentResponse;
+import se.fastighet.core.dto.response.ShardMoveResponse;
+import se.fastighet.core.sharding.ShardDirectory;
+import se.fastighet.core.sharding.ShardRebalancer;
+import se.fastighet.core.sharding.ShardSet;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/admin/shards")
+@Admission(Lane.CRITICAL) // Drift ska kunna felsöka och flytta shards under överlast
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+@Tag(name = "Sharding", description = "API för shardkatalogen och flytt av fastigheter (endast admin)")
+public class ShardAdminController {
+
+    private final ShardSet shardSet;
+    private final ShardDirectory shardDirectory;
+    private final ShardRebalancer shardRebalancer;
+
+    @GetMapping
+    @Operation(summary = "Lista shards, hemsharden först")
+    public ResponseEntity<List<String>> listShards() {
+        return ResponseEntity.ok(shardSet.ids());
+    }
+
+    @GetMapping("/moving")
+    @Operation(summary = "Lista fastigheter som flyttas just nu")
+    public ResponseEntity<List<ShardAssignmentResponse>> listMoving() {
+        return ResponseEntity.ok(shardDirectory.moving().stream()
+                .map(this::mapToResponse)
+                .toList());
+    }
+
+    @GetMapping("/properties/{propertyId}")
+    @Operation(summary = "Visa vilken shard en fastighet ligger på")
+    public ResponseEntity<ShardAssignmentResponse> getAssignment(@PathVariable UUID propertyId) {
+        shardDirectory.invalidate(propertyId);
+        return ResponseEntity.ok(mapToResponse(shardDirectory.assignmentFor(propertyId)));
+    }
+
+    @PostMapping("/properties/{propertyId}/move")
+    @Operation(summary = "Flytta en fastighets ärenden till en annan shard i bakgrunden")
+    public ResponseEntity<ShardMoveResponse> moveProperty(
+            @PathVariable UUID propertyId,
+            @Valid @RequestBody MoveShardRequest request) {
+
+        ShardMoveResponse response = shardRebalancer.startMove(propertyId, request.getTargetShard());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/properties/{propertyId}/move")
+    @Operation(summary = "Status för den senaste flytten av fastigheten")
+    public ResponseEntity<ShardMoveResponse> getMoveStatus(@PathVariable UUID propertyId) {
+        return ResponseEntity.ok(shardRebalancer.getStatus(propertyId));
+    }
+
+    private ShardAssignmentResponse mapToResponse(ShardDirectory.Assignment assignment) {
+        return ShardAssignmentResponse.builder()
+                .propertyId(assignment.propertyId())
+                .shardId(assignment.shardId())
+                .targetShard(assignment.targetShard())
+                .state(assignment.state().name())
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package se.fastighet.core.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import se.fastighet.core.exception.ResourceNotFoundException;
+import se.fastighet.core.exception.UnauthorizedException;
+import se.fastighet.core.security.AttachmentUrlSigner;
+import se.fastighet.core.storage.AttachmentStorage;
+import se.fastighet.core.storage.PreviewVariant;
+import se.fastighet.core.storage.RangeFileSender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Serverar bilagor via signerade länkar. Ingen JWT eller databasuppslagning görs;
+ * behörigheten kontrollerades när länken skapades i ärendesvaret.
+ * <p>
+ * Typen i länken är den som sparades vid uppladdningen. Den visas bara direkt om den finns i
+ * {@link se.fastighet.core.storage.InlineContentTypes}; allt annat laddas ned (RangeFileSender).
+ */
+@RestController
+@RequestMapping("/api/files")
+@RequiredArgsConstructor
+@Tag(name = "Files", description = "Signerade länkar till bilagor")
+public class SignedFileController {
+
+    private final AttachmentUrlSigner urlSigner;
+    private final AttachmentStorage attachmentStorage;
+    private final RangeFileSender rangeFileSender;
+
+    @GetMapping("/{hash:[0-9a-f]{64}}/{variant:original|thumbnail|preview}")
+    @Operation(summary = "Hämta bilaga via signerad länk")
+    public void download(
+            @PathVariable String hash,
+            @PathVariable String variant,
+            @RequestParam("exp") long expires,
+            @RequestParam(value = "type", defaultValue = "") String contentType,
+            @RequestParam("name") String fileName,
+            @RequestParam("sig") String signature,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        if (!urlSigner.verify(hash, variant, expires, contentType, fileName, signature)) {
+            throw new UnauthorizedException("Länken är ogiltig eller har gått ut");
+        }
+
+        Path file;
+        String servedType;
+        String servedName = fileName;
+        if (AttachmentUrlSigner.ORIGINAL.equals(variant)) {
+            file = attachmentStorage.resolve(attachmentStorage.blobPath(hash));
+            servedType = contentType.isEmpty() ? null : contentType;
+        } else {
+            PreviewVariant previewVariant = PreviewVariant.fromPathName(variant)
+                    .orElseThrow(() -> new ResourceNotFoundException("Förhandsvisning saknas"));
+            file = attachmentStorage.resolve(attachmentStorage.previewPath(hash, previewVariant));
+            servedType = MediaType.IMAGE_JPEG_VALUE;
+            servedName = previewVariant.getPathName() + "-" + fileName + ".jpg";
+        }
+
+        if (!Files.exists(file)) {
+            throw new ResourceNotFoundException("Bilaga hittades inte");
+        }
+
+        // Innehållsadresserat, så svaret ändras aldrig under länkens livstid
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl
+                .maxAge(Duration.ofSeconds(urlSigner.secondsUntil(expires)))
+                .cachePublic()
+                .immutable()
+                .getHeaderValue());
+        response.setHeader(HttpHeaders.ETAG, "\"" + hash + "-" + variant + "\"");
+
+        rangeFileSender.send(file, servedType, servedName, request, response);
+    }
+}
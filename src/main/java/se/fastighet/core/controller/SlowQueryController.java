@@ -0,0 +1,61 @@
+package se.fastighet.core.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
+import se.fastighet.core.diagnostics.slowquery.SlowQueryLog;
+import se.fastighet.core.diagnostics.slowquery.SlowQuerySample;
+import se.fastighet.core.dto.response.SlowQueryResponse;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/diagnostics/slow-queries")
+@Admission(Lane.CRITICAL) // Långsamma frågor felsöks oftast under överlast
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "diagnostics.slow-queries.enabled", havingValue = "true", matchIfMissing = true)
+@Tag(name = "Diagnostics", description = "API för JFR-inspelningar och långsamma frågor (endast admin)")
+public class SlowQueryController {
+
+    private final SlowQueryLog slowQueryLog;
+
+    @GetMapping
+    @Operation(summary = "Lista de senaste långsamma SQL-satserna, nyaste först")
+    public ResponseEntity<List<SlowQueryResponse>> listSlowQueries(
+            @RequestParam(required = false) Long minMillis) {
+
+        List<SlowQueryResponse> response = slowQueryLog.recent().stream()
+                .filter(sample -> minMillis == null || sample.getElapsedMillis() >= minMillis)
+                .map(this::mapToResponse)
+                .toList();
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping
+    @Operation(summary = "Töm listan med långsamma SQL-satser")
+    public ResponseEntity<Void> clearSlowQueries() {
+        slowQueryLog.clear();
+        return ResponseEntity.noContent().build();
+    }
+
+    private SlowQueryResponse mapToResponse(SlowQuerySample sample) {
+        return SlowQueryResponse.builder()
+                .id(sample.getId())
+                .timestamp(sample.getTimestamp())
+                .elapsedMillis(sample.getElapsedMillis())
+                .sql(sample.getSql())
+                .parameterCount(sample.getParameterCount())
+                .batchSize(sample.getBatchSize())
+                .success(sample.isSuccess())
+                .caller(sample.getCaller())
+                .traceId(sample.getTraceId())
+                .plan(sample.getPlan())
+                .planError(sample.getPlanError())
+                .build();
+    }
+}
@@ -0,0 +1,93 @@
+package se.fastighet.core.controller;
+
+import io.micrometer.core.annotation.Timed;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.entity.TicketAttachment;
+import se.fastighet.core.exception.ResourceNotFoundException;
+import se.fastighet.core.security.UserPrincipal;
+import se.fastighet.core.service.AttachmentService;
+import se.fastighet.core.storage.PreviewVariant;
+import se.fastighet.core.storage.RangeFileSender;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/tickets/{id}/attachments")
+@RequiredArgsConstructor
+@Timed(value = "api.controller", histogram = true)
+@Tag(name = "Attachments", description = "API för bilagor till ärenden")
+public class TicketAttachmentController {
+
+    private final AttachmentService attachmentService;
+    private final RangeFileSender rangeFileSender;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("@ticketSecurity.canComment(#id)")
+    @Admission(Lane.HIGH)
+    @Operation(summary = "Ladda upp bilaga")
+    public ResponseEntity<TicketResponse.AttachmentResponse> uploadAttachment(
+            @PathVariable Long id,
+            @RequestParam("file") MultipartFile file,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        TicketResponse.AttachmentResponse response = attachmentService.addAttachment(id, file, principal);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @GetMapping("/{attachmentId}")
+    @PreAuthorize("@ticketSecurity.canView(#id)")
+    @Operation(summary = "Hämta bilaga (stödjer Range)")
+    public void downloadAttachment(
+            @PathVariable Long id,
+            @PathVariable Long attachmentId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        TicketAttachment attachment = attachmentService.getAttachment(id, attachmentId);
+        rangeFileSender.send(attachmentService.resolveFile(attachment), attachment.getContentType(),
+                attachment.getFileName(), request, response);
+    }
+
+    @GetMapping("/{attachmentId}/{variant:thumbnail|preview}")
+    @PreAuthorize("@ticketSecurity.canView(#id)")
+    @Operation(summary = "Hämta miniatyr eller förhandsvisning av bild")
+    public void downloadPreview(
+            @PathVariable Long id,
+            @PathVariable Long attachmentId,
+            @PathVariable String variant,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        PreviewVariant previewVariant = PreviewVariant.fromPathName(variant)
+                .orElseThrow(() -> new ResourceNotFoundException("Förhandsvisning saknas"));
+        TicketAttachment attachment = attachmentService.getAttachment(id, attachmentId);
+        rangeFileSender.send(attachmentService.resolvePreview(attachment, previewVariant), MediaType.IMAGE_JPEG_VALUE,
+                previewVariant.getPathName() + "-" + attachment.getFileName() + ".jpg", request, response);
+    }
+
+    @DeleteMapping("/{attachmentId}")
+    @PreAuthorize("@ticketSecurity.canUpdate(#id)")
+    @Operation(summary = "Ta bort bilaga")
+    public ResponseEntity<Void> deleteAttachment(
+            @PathVariable Long id,
+            @PathVariable Long attachmentId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        attachmentService.removeAttachment(id, attachmentId, principal);
+        return ResponseEntity.noContent().build();
+    }
+}
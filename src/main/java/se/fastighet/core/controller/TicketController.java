@@ -1,6 +1,8 @@
 package se.fastighet.core.controller;
 
+import io.micrometer.core.annotation.Timed;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -8,51 +10,77 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
+import se.fastighet.core.diagnostics.StatementBudget;
 import se.fastighet.core.dto.request.AddCommentRequest;
 import se.fastighet.core.dto.request.CreateTicketRequest;
+import se.fastighet.core.dto.request.TicketFields;
 import se.fastighet.core.dto.request.UpdateTicketRequest;
 import se.fastighet.core.dto.response.TicketListResponse;
 import se.fastighet.core.dto.response.TicketResponse;
 import se.fastighet.core.security.UserPrincipal;
+import se.fastighet.core.service.TicketExportService;
+import se.fastighet.core.service.TicketReadCoalescer;
 import se.fastighet.core.service.TicketService;
 
+import java.time.LocalDate;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/tickets")
 @RequiredArgsConstructor
+@Timed(value = "api.controller", histogram = true)
 @Tag(name = "Tickets", description = "API för ärendehantering")
 public class TicketController {
 
+    private static final String FIELDS_DOC = "Bara dessa delar av ärendet, t.ex. status,assignee,latestComment. "
+            + "Delar som inte anges läses inte från databasen";
+    private static final String INCLUDE_DOC = "Delar utöver standardurvalet eller fields, t.ex. latestComment";
+
     private final TicketService ticketService;
+    private final TicketExportService ticketExportService;
+    private final TicketReadCoalescer ticketReadCoalescer;
 
     @PostMapping
+    @Admission(Lane.CRITICAL)
     @Operation(summary = "Skapa nytt ärende")
     public ResponseEntity<TicketResponse> createTicket(
             @Valid @RequestBody CreateTicketRequest request,
+            @Parameter(description = FIELDS_DOC) @RequestParam(required = false) Set<String> fields,
+            @Parameter(description = INCLUDE_DOC) @RequestParam(required = false) Set<String> include,
             @AuthenticationPrincipal UserPrincipal principal) {
 
-        TicketResponse response = ticketService.createTicket(request, principal);
+        TicketResponse response = ticketService.createTicket(request, principal, TicketFields.parse(fields, include));
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
     @GetMapping("/{id}")
     @PreAuthorize("@ticketSecurity.canView(#id)")
+    @StatementBudget(7) // Användare, behörighet (ärende + roll), ärendet med relationer
     @Operation(summary = "Hämta ärende")
     public ResponseEntity<TicketResponse> getTicket(
             @PathVariable Long id,
+            @Parameter(description = FIELDS_DOC) @RequestParam(required = false) Set<String> fields,
+            @Parameter(description = INCLUDE_DOC) @RequestParam(required = false) Set<String> include,
             @AuthenticationPrincipal UserPrincipal principal) {
 
-        TicketResponse response = ticketService.getTicket(id, principal);
+        TicketResponse response = ticketReadCoalescer.getTicket(id, principal, TicketFields.parse(fields, include));
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/my")
+    @StatementBudget(3) // Användare + sida med antal kommentarer, antal ärenden
     @Operation(summary = "Hämta mina ärenden")
     public ResponseEntity<Page<TicketListResponse>> getMyTickets(
             @AuthenticationPrincipal UserPrincipal principal,
@@ -64,6 +92,7 @@ public class TicketController {
 
     @GetMapping("/assigned")
     @PreAuthorize("hasAnyRole('TECHNICIAN', 'BOARD_MEMBER', 'ADMIN')")
+    @StatementBudget(3)
     @Operation(summary = "Hämta tilldelade ärenden")
     public ResponseEntity<Page<TicketListResponse>> getAssignedTickets(
             @AuthenticationPrincipal UserPrincipal principal,
@@ -75,48 +104,87 @@ public class TicketController {
 
     @GetMapping("/property/{propertyId}")
     @PreAuthorize("hasAnyRole('BOARD_MEMBER', 'ADMIN')")
+    @StatementBudget(3)
+    @Admission(value = Lane.LOW, cost = 3)
     @Operation(summary = "Hämta ärenden för fastighet")
     public ResponseEntity<Page<TicketListResponse>> getTicketsForProperty(
             @PathVariable UUID propertyId,
             @PageableDefault(size = 20, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
 
-        Page<TicketListResponse> tickets = ticketService.getTicketsForProperty(propertyId, pageable);
+        Page<TicketListResponse> tickets = ticketReadCoalescer.getTicketsForProperty(propertyId, pageable);
         return ResponseEntity.ok(tickets);
     }
 
+    @GetMapping("/property/{propertyId}/export")
+    @PreAuthorize("@ticketSecurity.canViewProperty(#propertyId)")
+    @Admission(value = Lane.LOW, cost = 10)
+    @Operation(summary = "Exportera fastighetens ärenden som NDJSON eller CSV",
+            description = "from och to är datum (inklusive) för när ärendet skapades. Arkiverade ärenden ingår.")
+    public ResponseEntity<StreamingResponseBody> exportTicketsForProperty(
+            @PathVariable UUID propertyId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        // Valideras innan svaret börjar skrivas, så att fel fortfarande kan ge 400
+        TicketExportService.Format exportFormat = TicketExportService.Format.parse(format);
+        TicketExportService.Period period = TicketExportService.Period.of(from, to);
+
+        StreamingResponseBody body = out -> ticketExportService.export(propertyId, period, exportFormat, out);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename("arenden-" + propertyId + "." + exportFormat.getExtension())
+                .build();
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(body);
+    }
+
     @PatchMapping("/{id}")
     @PreAuthorize("@ticketSecurity.canUpdate(#id)")
+    @Admission(Lane.HIGH)
     @Operation(summary = "Uppdatera ärende")
     public ResponseEntity<TicketResponse> updateTicket(
             @PathVariable Long id,
             @Valid @RequestBody UpdateTicketRequest request,
+            @Parameter(description = FIELDS_DOC) @RequestParam(required = false) Set<String> fields,
+            @Parameter(description = INCLUDE_DOC) @RequestParam(required = false) Set<String> include,
             @AuthenticationPrincipal UserPrincipal principal) {
 
-        TicketResponse response = ticketService.updateTicket(id, request, principal);
+        TicketResponse response = ticketService.updateTicket(id, request, principal,
+                TicketFields.parse(fields, include));
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/{id}/assign")
     @PreAuthorize("@ticketSecurity.canAssign(#id)")
+    @Admission(Lane.HIGH)
     @Operation(summary = "Tilldela ärende till tekniker/styrelsemedlem")
     public ResponseEntity<TicketResponse> assignTicket(
             @PathVariable Long id,
             @RequestParam UUID assigneeId,
+            @Parameter(description = FIELDS_DOC) @RequestParam(required = false) Set<String> fields,
+            @Parameter(description = INCLUDE_DOC) @RequestParam(required = false) Set<String> include,
             @AuthenticationPrincipal UserPrincipal principal) {
 
-        TicketResponse response = ticketService.assignTicket(id, assigneeId, principal);
+        TicketResponse response = ticketService.assignTicket(id, assigneeId, principal,
+                TicketFields.parse(fields, include));
         return ResponseEntity.ok(response);
     }
 
     @PostMapping("/{id}/comments")
     @PreAuthorize("@ticketSecurity.canComment(#id)")
+    @Admission(Lane.HIGH)
     @Operation(summary = "Lägg till kommentar")
     public ResponseEntity<TicketResponse> addComment(
             @PathVariable Long id,
             @Valid @RequestBody AddCommentRequest request,
+            @Parameter(description = FIELDS_DOC) @RequestParam(required = false) Set<String> fields,
+            @Parameter(description = INCLUDE_DOC) @RequestParam(required = false) Set<String> include,
             @AuthenticationPrincipal UserPrincipal principal) {
 
-        TicketResponse response = ticketService.addComment(id, request, principal);
+        TicketResponse response = ticketService.addComment(id, request, principal,
+                TicketFields.parse(fields, include));
         return ResponseEntity.ok(response);
     }
 }
@@ -0,0 +1,114 @@
+package se.fastighet.core.controller;
+
+import io.micrometer.core.annotation.Timed;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import se.fastighet.core.admission.Admission;
+import se.fastighet.core.admission.Lane;
+import se.fastighet.core.dto.request.CreateUploadRequest;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.dto.response.UploadStatusResponse;
+import se.fastighet.core.security.UserPrincipal;
+import se.fastighet.core.service.ChunkedUploadService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Återupptagbar uppladdning i delar:
+ * POST skapar uppladdningen, PATCH skickar en del på Upload-Offset med Upload-Checksum,
+ * GET/HEAD visar bekräftad offset och POST .../complete skapar bilagan.
+ */
+@RestController
+@RequestMapping("/api/tickets/{id}/uploads")
+@Admission(Lane.HIGH)
+@RequiredArgsConstructor
+@Timed(value = "api.controller", histogram = true)
+@Tag(name = "Uploads", description = "API för uppladdning av stora bilagor i delar")
+public class TicketUploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ChunkedUploadService uploadService;
+
+    @PostMapping
+    @PreAuthorize("@ticketSecurity.canComment(#id)")
+    @Operation(summary = "Påbörja uppladdning i delar")
+    public ResponseEntity<UploadStatusResponse> createUpload(
+            @PathVariable Long id,
+            @Valid @RequestBody CreateUploadRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        UploadStatusResponse response = uploadService.createUpload(id, request, principal);
+        return ResponseEntity.created(URI.create("/api/tickets/" + id + "/uploads/" + response.getId()))
+                .body(response);
+    }
+
+    @GetMapping("/{uploadId}")
+    @PreAuthorize("@ticketSecurity.canComment(#id)")
+    @Operation(summary = "Hämta bekräftad offset för uppladdning")
+    public ResponseEntity<UploadStatusResponse> getUpload(
+            @PathVariable Long id,
+            @PathVariable UUID uploadId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        UploadStatusResponse response = uploadService.getStatus(id, uploadId, principal);
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(response.getCommittedOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(response.getTotalSize()))
+                .cacheControl(CacheControl.noStore())
+                .body(response);
+    }
+
+    @PatchMapping("/{uploadId}")
+    @PreAuthorize("@ticketSecurity.canComment(#id)")
+    @Operation(summary = "Skicka en del av filen")
+    public ResponseEntity<Void> appendChunk(
+            @PathVariable Long id,
+            @PathVariable UUID uploadId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            @RequestHeader(value = "Upload-Checksum", required = false) String checksum,
+            HttpServletRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) throws IOException {
+
+        long newOffset = uploadService.appendChunk(id, uploadId, offset, checksum, request.getInputStream(), principal);
+        return ResponseEntity.noContent()
+                .header(UPLOAD_OFFSET, String.valueOf(newOffset))
+                .build();
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    @PreAuthorize("@ticketSecurity.canComment(#id)")
+    @Operation(summary = "Slutför uppladdning och skapa bilaga")
+    public ResponseEntity<TicketResponse.AttachmentResponse> completeUpload(
+            @PathVariable Long id,
+            @PathVariable UUID uploadId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        TicketResponse.AttachmentResponse response = uploadService.complete(id, uploadId, principal);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping("/{uploadId}")
+    @PreAuthorize("@ticketSecurity.canComment(#id)")
+    @Operation(summary = "Avbryt uppladdning")
+    public ResponseEntity<Void> cancelUpload(
+            @PathVariable Long id,
+            @PathVariable UUID uploadId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+
+        uploadService.cancel(id, uploadId, principal);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,490 @@
+package se.fastighet.core.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketHistory;
+import se.fastighet.core.entity.User;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Genererar ett syntetiskt fastighetsbestånd i produktionsstorlek för prestandamätning.
+ * <p>
+ * Allt skrivs med JDBC-batchar och explicita id:n, utan att gå via JPA. Samma seed ger
+ * samma data. Varje fastighet får en egen slumpström, så ändrad batchstorlek påverkar
+ * inte resultatet. Fördelningarna:
+ * <ul>
+ *     <li>ärenden per fastighet följer en Zipf-fördelning, så ett fåtal BRF:er står för en
+ *     stor andel av ärendena</li>
+ *     <li>kommentarer per ärende är geometriskt fördelade, med en liten andel extremfall
+ *     med hundratals kommentarer</li>
+ *     <li>ärenden sprids över {@code dataset.years} år med tyngdpunkt på senare tid; äldre
+ *     ärenden är i regel stängda och har en fullständig historik</li>
+ * </ul>
+ * Aktiveras med profilen {@code dataset}, t.ex. {@code SPRING_PROFILES_ACTIVE=docker,dataset}.
+ */
+@Component
+@Profile("dataset")
+@Order(100) // Efter DataInitializer, så att testanvändarna finns kvar
+@Slf4j
+public class DatasetGenerator implements CommandLineRunner {
+
+    private static final String ORG_NUMBER_PREFIX = "7999";
+    private static final String[] CATEGORIES = {"VVS", "El", "Ventilation", "Hiss", "Tvättstuga", "Lås och passage",
+            "Utemiljö", "Städning", "Skadedjur", "Övrigt"};
+    private static final String[] STREETS = {"Storgatan", "Kungsvägen", "Björkvägen", "Skolgatan", "Parkvägen",
+            "Ringvägen", "Tallstigen", "Södra vägen", "Ekbacken", "Sjövägen"};
+    private static final String[] CITIES = {"Stockholm", "Göteborg", "Malmö", "Uppsala", "Västerås", "Örebro"};
+    private static final String[] FIRST_NAMES = {"Anna", "Erik", "Maria", "Lars", "Karin", "Johan", "Sara", "Mohammed",
+            "Elin", "Ali", "Lena", "Per", "Fatima", "Olle", "Ida", "Nils"};
+    private static final String[] LAST_NAMES = {"Andersson", "Johansson", "Karlsson", "Nilsson", "Eriksson",
+            "Larsson", "Olsson", "Persson", "Svensson", "Gustafsson", "Hassan", "Lindberg"};
+    private static final String[] TITLES = {"Droppande kran", "Element blir inte varmt", "Trasig belysning i trapphuset",
+            "Tvättmaskin fungerar inte", "Ventilationen låter", "Porten går inte i lås", "Hissen står still",
+            "Stopp i avloppet", "Fukt i källarförråd", "Klotter på fasaden", "Trasig cykelställning",
+            "Kylskåp läcker", "Brandvarnare piper", "Råttor i soprummet"};
+    private static final String[] COMMENTS = {
+            "Tekniker bokad till torsdag förmiddag.",
+            "Nyckel finns i nyckelboxen.",
+            "Reservdel beställd, leverans nästa vecka.",
+            "Problemet kvarstår tyvärr.",
+            "Åtgärdat, hör av er om det återkommer.",
+            "Kan ni komma efter klockan 16?",
+            "Vi har kontaktat leverantören."};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${dataset.seed:42}")
+    private long seed;
+    @Value("${dataset.properties:400}")
+    private int propertyCount;
+    @Value("${dataset.units-per-property.min:20}")
+    private int minUnitsPerProperty;
+    @Value("${dataset.units-per-property.max:150}")
+    private int maxUnitsPerProperty;
+    @Value("${dataset.tickets:1000000}")
+    private int ticketCount;
+    @Value("${dataset.zipf-exponent:1.1}")
+    private double zipfExponent;
+    @Value("${dataset.comments.mean:2.0}")
+    private double meanComments;
+    @Value("${dataset.comments.outlier-rate:0.005}")
+    private double outlierRate;
+    @Value("${dataset.comments.outlier-max:300}")
+    private int outlierMaxComments;
+    @Value("${dataset.technicians:60}")
+    private int technicianCount;
+    @Value("${dataset.years:5}")
+    private int years;
+    @Value("${dataset.batch-size:2000}")
+    private int batchSize;
+
+    private long nextTicketId;
+    private long nextCommentId;
+    private long nextHistoryId;
+    private LocalDateTime now;
+    private String passwordHash;
+    private List<Long> categoryIds;
+
+    private BatchInsert users;
+    private BatchInsert userUnits;
+    private BatchInsert propertyAdmins;
+    private BatchInsert properties;
+    private BatchInsert units;
+    private BatchInsert tickets;
+    private BatchInsert comments;
+    private BatchInsert history;
+
+    public DatasetGenerator(JdbcTemplate jdbcTemplate, DataSource dataSource, PasswordEncoder passwordEncoder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @Override
+    public void run(String... args) {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM properties WHERE organization_number LIKE ?", Integer.class, ORG_NUMBER_PREFIX + "%");
+        if (existing != null && existing > 0) {
+            log.info("Dataset already present ({} generated properties), skipping", existing);
+            return;
+        }
+
+        long start = System.nanoTime();
+        now = LocalDateTime.now().withNano(0);
+        passwordHash = passwordEncoder.encode("password123"); // En gång; bcrypt per användare skulle ta timmar
+        categoryIds = ensureCategories();
+        nextTicketId = maxId("tickets") + 1;
+        nextCommentId = maxId("ticket_comments") + 1;
+        nextHistoryId = maxId("ticket_history") + 1;
+        openBatches();
+
+        SplittableRandom root = new SplittableRandom(seed);
+        UUID[] technicians = new UUID[technicianCount];
+        for (int i = 0; i < technicianCount; i++) {
+            technicians[i] = insertUser(root, "tekniker" + i + "@dataset.test", User.Role.TECHNICIAN);
+        }
+
+        int[] ticketsPerProperty = zipfAllocation(root.split());
+        long ticketsBefore = nextTicketId;
+        for (int p = 0; p < propertyCount; p++) {
+            generateProperty(p, root.split(), ticketsPerProperty[p], technicians);
+            if ((p + 1) % 50 == 0) {
+                log.info("Dataset: {}/{} properties, {} tickets", p + 1, propertyCount, nextTicketId - ticketsBefore);
+            }
+        }
+
+        flushAll();
+        resetIdentity("tickets", nextTicketId);
+        resetIdentity("ticket_comments", nextCommentId);
+        resetIdentity("ticket_history", nextHistoryId);
+
+        log.info("Dataset generated in {}s: {} properties, {} units, {} users, {} tickets, {} comments, {} history rows",
+                Duration.ofNanos(System.nanoTime() - start).toSeconds(), properties.total, units.total, users.total,
+                tickets.total, comments.total, history.total);
+    }
+
+    private void generateProperty(int index, SplittableRandom random, int ticketTotal, UUID[] technicians) {
+        UUID propertyId = uuid(random);
+        String street = pick(random, STREETS);
+        properties.add(propertyId, "BRF " + street.replace("vägen", "").replace("gatan", "") + " " + (index + 1),
+                street + " " + (1 + random.nextInt(80)), pick(random, CITIES),
+                String.format("%03d %02d", 100 + random.nextInt(900), random.nextInt(100)),
+                street + " " + (1 + random.nextInt(20)) + ":" + (1 + random.nextInt(50)),
+                String.format("%s%02d-%04d", ORG_NUMBER_PREFIX, index / 10000, index % 10000),
+                true, "styrelsen" + index + "@dataset.test", null, timestamp(now.minusYears(years + 1)),
+                timestamp(now));
+
+        int unitCount = minUnitsPerProperty + random.nextInt(maxUnitsPerProperty - minUnitsPerProperty + 1);
+        UUID[] unitIds = new UUID[unitCount];
+        UUID[][] residents = new UUID[unitCount][];
+        for (int u = 0; u < unitCount; u++) {
+            unitIds[u] = uuid(random);
+            int floor = u / 6;
+            int rooms = 1 + random.nextInt(5);
+            units.add(unitIds[u], propertyId, String.valueOf(1001 + floor * 100 + u % 6), null, rooms, floor,
+                    25.0 + rooms * 18 + random.nextInt(15), street, timestamp(now.minusYears(years + 1)));
+
+            residents[u] = new UUID[random.nextInt(10) < 3 ? 2 : 1];
+            for (int r = 0; r < residents[u].length; r++) {
+                // Styrelsen bor i huset; administratören gör det inte
+                User.Role role = u == 0 && r == 0 ? User.Role.BOARD_MEMBER : User.Role.RESIDENT;
+                residents[u][r] = insertUser(random, "boende" + index + "-" + u + "-" + r + "@dataset.test", role);
+                userUnits.add(residents[u][r], unitIds[u]);
+            }
+        }
+
+        UUID boardMember = residents[0][0];
+        UUID admin = insertUser(random, "admin" + index + "@dataset.test", User.Role.ADMIN);
+        propertyAdmins.add(propertyId, admin);
+
+        UUID[] propertyTechnicians = {
+                technicians[random.nextInt(technicians.length)],
+                technicians[random.nextInt(technicians.length)]
+        };
+
+        for (int t = 0; t < ticketTotal; t++) {
+            int unitIndex = random.nextInt(unitCount);
+            UUID reporter = residents[unitIndex][random.nextInt(residents[unitIndex].length)];
+            generateTicket(random, propertyId, unitIds[unitIndex], reporter, boardMember,
+                    propertyTechnicians[random.nextInt(propertyTechnicians.length)]);
+        }
+    }
+
+    private void generateTicket(SplittableRandom random, UUID propertyId, UUID unitId, UUID reporter,
+                                UUID boardMember, UUID technician) {
+        long ticketId = nextTicketId++;
+
+        // sqrt förskjuter fördelningen mot nutid; beståndet och ärendeflödet har vuxit
+        long ageMinutes = (long) (years * 525_600L * (1 - Math.sqrt(random.nextDouble())));
+        LocalDateTime created = now.minusMinutes(ageMinutes);
+        Ticket.Status status = statusForAge(random, Duration.ofMinutes(ageMinutes));
+        Ticket.Priority priority = priority(random);
+        boolean assigned = status != Ticket.Status.NEW || random.nextInt(10) < 2;
+
+        List<Event> events = new ArrayList<>();
+        LocalDateTime cursor = created;
+        events.add(new Event(cursor, TicketHistory.ChangeType.CREATED, null, null, reporter, "Ärende skapat"));
+        if (assigned) {
+            cursor = cursor.plusMinutes(10 + random.nextInt(2 * 24 * 60));
+            events.add(new Event(cursor, TicketHistory.ChangeType.ASSIGNED, null, "tekniker", boardMember,
+                    "Ärende tilldelat"));
+        }
+        Ticket.Status previous = Ticket.Status.NEW;
+        for (Ticket.Status step : statusPath(status, random)) {
+            cursor = cursor.plusMinutes(30 + random.nextInt(5 * 24 * 60));
+            events.add(new Event(cursor, TicketHistory.ChangeType.STATUS_CHANGED, previous.name(), step.name(),
+                    technician, "Status ändrad"));
+            previous = step;
+        }
+        LocalDateTime resolvedAt = status == Ticket.Status.RESOLVED || status == Ticket.Status.CLOSED ? cursor : null;
+        if (cursor.isAfter(now)) {
+            cursor = now;
+        }
+
+        tickets.add(ticketId, pick(random, TITLES), "Genererat ärende för prestandatester.",
+                categoryIds.get(random.nextInt(categoryIds.size())), status.name(), priority.name(), reporter,
+                assigned ? technician : null, propertyId, unitId, timestamp(created), timestamp(cursor),
+                resolvedAt != null ? timestamp(min(resolvedAt, now)) : null);
+
+        int commentTotal = random.nextDouble() < outlierRate
+                ? 50 + random.nextInt(Math.max(1, outlierMaxComments - 50))
+                : geometric(random, meanComments);
+        long span = Math.max(1, Duration.between(created, cursor).toMinutes());
+        for (int c = 0; c < commentTotal; c++) {
+            LocalDateTime at = created.plusMinutes(span * (c + 1) / (commentTotal + 1));
+            UUID author = switch (random.nextInt(4)) {
+                case 0, 1 -> reporter;
+                case 2 -> technician;
+                default -> boardMember;
+            };
+            boolean internal = !author.equals(reporter) && random.nextInt(5) == 0;
+            comments.add(nextCommentId++, ticketId, author, pick(random, COMMENTS), internal, timestamp(at));
+        }
+        if (commentTotal > 0) {
+            events.add(new Event(cursor, TicketHistory.ChangeType.COMMENT_ADDED, null, null, reporter,
+                    commentTotal + " kommentarer"));
+        }
+
+        for (Event event : events) {
+            history.add(nextHistoryId++, ticketId, event.changedBy(), event.type().name(), event.oldValue(),
+                    event.newValue(), event.description(), timestamp(min(event.at(), now)));
+        }
+    }
+
+    private Ticket.Status statusForAge(SplittableRandom random, Duration age) {
+        int roll = random.nextInt(100);
+        if (age.toDays() > 60) {
+            return roll < 85 ? Ticket.Status.CLOSED : roll < 97 ? Ticket.Status.RESOLVED : Ticket.Status.WAITING;
+        }
+        if (age.toDays() > 7) {
+            return roll < 40 ? Ticket.Status.RESOLVED : roll < 60 ? Ticket.Status.CLOSED
+                    : roll < 80 ? Ticket.Status.IN_PROGRESS : roll < 90 ? Ticket.Status.WAITING : Ticket.Status.NEW;
+        }
+        return roll < 45 ? Ticket.Status.NEW : roll < 80 ? Ticket.Status.IN_PROGRESS
+                : roll < 90 ? Ticket.Status.WAITING : Ticket.Status.RESOLVED;
+    }
+
+    private List<Ticket.Status> statusPath(Ticket.Status target, SplittableRandom random) {
+        List<Ticket.Status> path = new ArrayList<>();
+        if (target == Ticket.Status.NEW) {
+            return path;
+        }
+        path.add(Ticket.Status.IN_PROGRESS);
+        if (target == Ticket.Status.WAITING || (target.ordinal() > Ticket.Status.WAITING.ordinal() && random.nextInt(4) == 0)) {
+            path.add(Ticket.Status.WAITING);
+            if (target != Ticket.Status.WAITING) {
+                path.add(Ticket.Status.IN_PROGRESS);
+            }
+        }
+        if (target == Ticket.Status.RESOLVED || target == Ticket.Status.CLOSED) {
+            path.add(Ticket.Status.RESOLVED);
+        }
+        if (target == Ticket.Status.CLOSED) {
+            path.add(Ticket.Status.CLOSED);
+        }
+        return path;
+    }
+
+    private Ticket.Priority priority(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        return roll < 25 ? Ticket.Priority.LOW : roll < 75 ? Ticket.Priority.MEDIUM
+                : roll < 95 ? Ticket.Priority.HIGH : Ticket.Priority.URGENT;
+    }
+
+    /**
+     * Fördelar {@code dataset.tickets} över fastigheterna enligt Zipf. Rangordningen blandas
+     * så att de största fastigheterna inte alltid är de första som skapas.
+     */
+    private int[] zipfAllocation(SplittableRandom random) {
+        int[] ranks = new int[propertyCount];
+        for (int i = 0; i < propertyCount; i++) {
+            ranks[i] = i + 1;
+        }
+        for (int i = propertyCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = tmp;
+        }
+
+        double norm = 0;
+        for (int rank = 1; rank <= propertyCount; rank++) {
+            norm += 1 / Math.pow(rank, zipfExponent);
+        }
+        int[] allocation = new int[propertyCount];
+        int assigned = 0;
+        for (int i = 0; i < propertyCount; i++) {
+            allocation[i] = (int) (ticketCount / Math.pow(ranks[i], zipfExponent) / norm);
+            assigned += allocation[i];
+        }
+        // Avrundningsresten läggs på slumpvisa fastigheter
+        for (int i = assigned; i < ticketCount; i++) {
+            allocation[random.nextInt(propertyCount)]++;
+        }
+        return allocation;
+    }
+
+    private int geometric(SplittableRandom random, double mean) {
+        if (mean <= 0) {
+            return 0;
+        }
+        double p = 1 / (mean + 1);
+        return (int) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+    }
+
+    private UUID insertUser(SplittableRandom random, String email, User.Role role) {
+        UUID id = uuid(random);
+        String name = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+        users.add(id, email, name, null, role.name(), passwordHash, timestamp(now.minusYears(years)), timestamp(now));
+        return id;
+    }
+
+    private List<Long> ensureCategories() {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM categories ORDER BY id", Long.class);
+        if (!ids.isEmpty()) {
+            return ids;
+        }
+        for (String name : CATEGORIES) {
+            jdbcTemplate.update("INSERT INTO categories (name) VALUES (?)", name);
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM categories ORDER BY id", Long.class);
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max != null ? max : 0;
+    }
+
+    /**
+     * Explicita id:n flyttar inte identitetskolumnens räknare, så den ställs om efteråt.
+     */
+    private void resetIdentity(String table, long next) {
+        if (isPostgres()) {
+            jdbcTemplate.execute("SELECT setval(pg_get_serial_sequence('" + table + "', 'id'), " + next + ", false)");
+        } else {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+        }
+    }
+
+    private boolean isPostgres() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot determine database type", e);
+        }
+    }
+
+    private void openBatches() {
+        users = new BatchInsert("INSERT INTO users (id, email, name, phone, role, password, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        properties = new BatchInsert("INSERT INTO properties (id, name, address, city, postal_code, "
+                + "property_designation, organization_number, economic_plan_registered, contact_email, contact_phone, "
+                + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        units = new BatchInsert("INSERT INTO units (id, property_id, unit_number, tax_unit_number, rooms, floor, "
+                + "square_meters, address, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        userUnits = new BatchInsert("INSERT INTO user_units (user_id, unit_id) VALUES (?, ?)");
+        propertyAdmins = new BatchInsert("INSERT INTO property_admins (property_id, user_id) VALUES (?, ?)");
+        tickets = new BatchInsert("INSERT INTO tickets (id, title, description, category_id, status, priority, "
+                + "reporter_id, assignee_id, property_id, unit_id, created_at, updated_at, resolved_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        comments = new BatchInsert("INSERT INTO ticket_comments (id, ticket_id, author_id, content, is_internal, "
+                + "created_at) VALUES (?, ?, ?, ?, ?, ?)");
+        history = new BatchInsert("INSERT INTO ticket_history (id, ticket_id, changed_by, change_type, old_value, "
+                + "new_value, description, changed_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    /**
+     * Främmande nycklar kräver att föräldern skrivs först, därav ordningen.
+     */
+    private void flushAll() {
+        users.flush();
+        properties.flush();
+        units.flush();
+        userUnits.flush();
+        propertyAdmins.flush();
+        tickets.flush();
+        comments.flush();
+        history.flush();
+    }
+
+    private static UUID uuid(SplittableRandom random) {
+        // Version 4 och IETF-variant, som UUID.randomUUID() men reproducerbart
+        long most = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long least = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(most, least);
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static Timestamp timestamp(LocalDateTime value) {
+        return Timestamp.valueOf(value);
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private record Event(LocalDateTime at, TicketHistory.ChangeType type, String oldValue, String newValue,
+                         UUID changedBy, String description) {
+    }
+
+    private final class BatchInsert {
+
+        private final String sql;
+        private final List<Object[]> rows;
+        private long total;
+
+        private BatchInsert(String sql) {
+            this.sql = sql;
+            this.rows = new ArrayList<>(batchSize);
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+            if (rows.size() >= batchSize) {
+                // Tidigare tabeller i kedjan måste vara skrivna innan barnraderna
+                flushParentsOf(this);
+                flush();
+            }
+        }
+
+        void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(sql, rows);
+            total += rows.size();
+            rows.clear();
+        }
+    }
+
+    private void flushParentsOf(BatchInsert batch) {
+        for (BatchInsert parent : List.of(users, properties, units, tickets)) {
+            if (parent == batch) {
+                return;
+            }
+            parent.flush();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package se.fastighet.core.dataset;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samlar in satser med parametervärden på den aktuella tråden medan ett {@link Scope} är
+ * öppet, så att {@link QueryPlanVerifier} kan köra {@code EXPLAIN} på exakt det som
+ * repositoryt skickade. Utanför ett scope gör lyssnaren ingenting.
+ */
+class QueryPlanCapture implements QueryExecutionListener {
+
+    private static final ThreadLocal<List<CapturedQuery>> CAPTURED = new ThreadLocal<>();
+
+    record CapturedQuery(String sql, List<ParameterSetOperation> parameters) {
+    }
+
+    static Scope open() {
+        List<CapturedQuery> queries = new ArrayList<>();
+        CAPTURED.set(queries);
+        return new Scope(queries);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        List<CapturedQuery> queries = CAPTURED.get();
+        if (queries == null || execInfo.isBatch()) {
+            return;
+        }
+        for (QueryInfo queryInfo : queryInfoList) {
+            List<List<ParameterSetOperation>> parameters = queryInfo.getParametersList();
+            queries.add(new CapturedQuery(queryInfo.getQuery(),
+                    parameters.isEmpty() ? List.of() : List.copyOf(parameters.get(0))));
+        }
+    }
+
+    static final class Scope implements AutoCloseable {
+
+        private final List<CapturedQuery> queries;
+
+        private Scope(List<CapturedQuery> queries) {
+            this.queries = queries;
+        }
+
+        List<CapturedQuery> queries() {
+            return List.copyOf(queries);
+        }
+
+        @Override
+        public void close() {
+            CAPTURED.remove();
+        }
+    }
+}
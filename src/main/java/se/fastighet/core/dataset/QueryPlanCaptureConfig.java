@@ -0,0 +1,36 @@
+package se.fastighet.core.dataset;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+
+/**
+ * Lindar in {@code dataSource} i en proxy med {@link QueryPlanCapture} när planerna ska
+ * verifieras. Gäller bara profilen {@code dataset}; i övrigt finns ingen extra proxy.
+ */
+@Configuration
+@Profile("dataset")
+@ConditionalOnProperty(name = "dataset.verify-plans.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryPlanCaptureConfig {
+
+    @Bean
+    public static BeanPostProcessor queryPlanCaptureDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource dataSource)) {
+                    return bean;
+                }
+                return ProxyDataSourceBuilder.create(dataSource)
+                        .name(beanName + "-plans")
+                        .listener(new QueryPlanCapture())
+                        .build();
+            }
+        };
+    }
+}
@@ -0,0 +1,337 @@
+package se.fastighet.core.dataset;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketAttachment;
+import se.fastighet.core.entity.User;
+import se.fastighet.core.repository.AttachmentBlobRepository;
+import se.fastighet.core.repository.AttachmentUploadRepository;
+import se.fastighet.core.repository.PropertyRepository;
+import se.fastighet.core.repository.TicketAttachmentRepository;
+import se.fastighet.core.repository.TicketCommentRepository;
+import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.repository.UnitRepository;
+import se.fastighet.core.repository.UserRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Kör repository-frågorna mot det genererade beståndet och kontrollerar att ingen av dem
+ * läser en stor tabell sekventiellt.
+ * <p>
+ * Varje fråga körs på riktigt i en skrivskyddad transaktion, med parametrar från en
+ * medelstor fastighet. Satserna som skickades, inklusive sidfrågornas {@code count} och
+ * lat laddade kommentarer, fångas av {@link QueryPlanCapture} och förklaras med
+ * {@code EXPLAIN (FORMAT JSON)} och samma parametervärden. En {@code Seq Scan} på en tabell
+ * med minst {@code dataset.verify-plans.min-rows} rader räknas som fel, och med
+ * {@code dataset.verify-plans.fail-on-seq-scan=true} avbryts uppstarten. Planerna kräver
+ * Postgres och ett bestånd i rätt storlek, så testprofilen med H2 kan inte göra kontrollen.
+ * {@code QueryPlanVerifierTest} kör den mot en Postgres-databas när en sådan anges.
+ */
+@Component
+@Profile("dataset")
+@Order(200) // Efter DatasetGenerator
+@ConditionalOnProperty(name = "dataset.verify-plans.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class QueryPlanVerifier implements CommandLineRunner {
+
+    private static final Pageable NEWEST_FIRST = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final TransactionTemplate readOnly;
+    private final ObjectMapper objectMapper;
+    private final TicketRepository ticketRepository;
+    private final TicketCommentRepository commentRepository;
+    private final UserRepository userRepository;
+    private final UnitRepository unitRepository;
+    private final PropertyRepository propertyRepository;
+    private final TicketAttachmentRepository attachmentRepository;
+    private final AttachmentBlobRepository blobRepository;
+    private final AttachmentUploadRepository uploadRepository;
+
+    @Value("${dataset.verify-plans.min-rows:10000}")
+    private long minRows;
+    @Value("${dataset.verify-plans.fail-on-seq-scan:true}")
+    private boolean failOnSeqScan;
+
+    public QueryPlanVerifier(JdbcTemplate jdbcTemplate, DataSource dataSource,
+                             PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                             TicketRepository ticketRepository, TicketCommentRepository commentRepository,
+                             UserRepository userRepository,
+                             UnitRepository unitRepository, PropertyRepository propertyRepository,
+                             TicketAttachmentRepository attachmentRepository,
+                             AttachmentBlobRepository blobRepository,
+                             AttachmentUploadRepository uploadRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.ticketRepository = ticketRepository;
+        this.commentRepository = commentRepository;
+        this.userRepository = userRepository;
+        this.unitRepository = unitRepository;
+        this.propertyRepository = propertyRepository;
+        this.attachmentRepository = attachmentRepository;
+        this.blobRepository = blobRepository;
+        this.uploadRepository = uploadRepository;
+    }
+
+    /**
+     * En repository-fråga. {@code allowSeqScan} är för aggregat över hela tabellen, där en
+     * sekventiell läsning är den rätta planen.
+     */
+    private record Check(String name, boolean allowSeqScan, Runnable call) {
+    }
+
+    private record Sample(UUID propertyId, Long ticketId, UUID reporterId, String reporterEmail,
+                          UUID technicianId, UUID adminId, String unitNumber) {
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!isPostgres()) {
+            log.info("Query plan verification requires PostgreSQL, skipping");
+            return;
+        }
+        // Statistiken är inaktuell direkt efter massinläsningen
+        jdbcTemplate.execute("ANALYZE");
+
+        Optional<Sample> sample = sample();
+        if (sample.isEmpty()) {
+            log.info("No tickets in the database, skipping query plan verification");
+            return;
+        }
+
+        Map<String, Long> tableRows = tableRows();
+        List<String> violations = new ArrayList<>();
+        int statements = 0;
+        List<Check> checks = checks(sample.get());
+        for (Check check : checks) {
+            List<QueryPlanCapture.CapturedQuery> queries;
+            try (QueryPlanCapture.Scope scope = QueryPlanCapture.open()) {
+                readOnly.executeWithoutResult(status -> check.call().run());
+                queries = scope.queries();
+            }
+
+            for (QueryPlanCapture.CapturedQuery query : queries) {
+                if (!query.sql().stripLeading().toLowerCase(Locale.ROOT).startsWith("select")) {
+                    continue;
+                }
+                statements++;
+                List<String> scanned = new ArrayList<>();
+                try {
+                    collectSeqScans(explain(query), scanned);
+                } catch (Exception e) {
+                    log.warn("{}: could not explain {}: {}", check.name(), query.sql(), e.getMessage());
+                    continue;
+                }
+                for (String table : scanned) {
+                    long rows = tableRows.getOrDefault(table, 0L);
+                    if (rows >= minRows && !check.allowSeqScan()) {
+                        violations.add(check.name() + ": Seq Scan on " + table + " (~" + rows + " rows): "
+                                + query.sql());
+                    }
+                }
+            }
+        }
+
+        if (violations.isEmpty()) {
+            log.info("Query plans verified: {} repository methods, {} statements, no sequential scans on tables "
+                    + "with {} rows or more", checks.size(), statements, minRows);
+            return;
+        }
+        violations.forEach(violation -> log.error("Query plan regression - {}", violation));
+        if (failOnSeqScan) {
+            throw new IllegalStateException(violations.size() + " repository queries scan large tables sequentially, "
+                    + "see the log above");
+        }
+    }
+
+    private List<Check> checks(Sample s) {
+        LocalDateTime now = LocalDateTime.now();
+        return List.of(
+                new Check("TicketRepository.findWithDetailsById", false,
+                        () -> ticketRepository.findWithDetailsById(s.ticketId())),
+                new Check("TicketCommentRepository.findFirstByTicketIdOrderByCreatedAtDescIdDesc", false,
+                        () -> commentRepository.findFirstByTicketIdOrderByCreatedAtDescIdDesc(s.ticketId())),
+                new Check("TicketCommentRepository.findFirstByTicketIdAndInternalFalseOrderByCreatedAtDescIdDesc",
+                        false,
+                        () -> commentRepository.findFirstByTicketIdAndInternalFalseOrderByCreatedAtDescIdDesc(
+                                s.ticketId())),
+                new Check("TicketRepository.findListByReporterId", false,
+                        () -> ticketRepository.findListByReporterId(s.reporterId(), NEWEST_FIRST)),
+                new Check("TicketRepository.findListByAssigneeId", false,
+                        () -> ticketRepository.findListByAssigneeId(s.technicianId(), NEWEST_FIRST)),
+                new Check("TicketRepository.findListByPropertyId", false,
+                        () -> ticketRepository.findListByPropertyId(s.propertyId(), NEWEST_FIRST)),
+                new Check("TicketRepository.findByStatus", false,
+                        () -> ticketRepository.findByStatus(Ticket.Status.NEW, NEWEST_FIRST)),
+                new Check("TicketRepository.findByPropertyIdAndStatus", false,
+                        () -> ticketRepository.findByPropertyIdAndStatus(s.propertyId(), Ticket.Status.IN_PROGRESS,
+                                NEWEST_FIRST)),
+                new Check("TicketRepository.findUnassignedOpenTickets", false,
+                        ticketRepository::findUnassignedOpenTickets),
+                new Check("TicketRepository.findOldUnresolvedTickets", false,
+                        () -> ticketRepository.findOldUnresolvedTickets(now.minusDays(30))),
+                new Check("TicketRepository.countOpenByPriority", false,
+                        ticketRepository::countOpenByPriority),
+                new Check("TicketRepository.countByStatus", true,
+                        ticketRepository::countByStatus),
+                new Check("TicketRepository.countByStatusForProperty", false,
+                        () -> ticketRepository.countByStatusForProperty(s.propertyId())),
+                new Check("TicketRepository.countByCategoryForProperty", false,
+                        () -> ticketRepository.countByCategoryForProperty(s.propertyId())),
+                new Check("TicketRepository.searchInProperty", false,
+                        () -> ticketRepository.searchInProperty(s.propertyId(), "kran", NEWEST_FIRST)),
+                new Check("TicketRepository.streamForExport", false,
+                        () -> drain(ticketRepository.streamForExport(s.propertyId(), now.minusYears(1), now))),
+                new Check("TicketRepository.findDistinctPropertiesByAssigneeId", false,
+                        () -> ticketRepository.findDistinctPropertiesByAssigneeId(s.technicianId())),
+                new Check("UserRepository.findByEmail", false,
+                        () -> userRepository.findByEmail(s.reporterEmail())),
+                new Check("UserRepository.findByRole", false,
+                        () -> userRepository.findByRole(User.Role.TECHNICIAN)),
+                new Check("UserRepository.findByPropertyId", false,
+                        () -> userRepository.findByPropertyId(s.propertyId())),
+                new Check("UserRepository.findByPropertyIdAndRole", false,
+                        () -> userRepository.findByPropertyIdAndRole(s.propertyId(), User.Role.BOARD_MEMBER)),
+                new Check("UserRepository.findByAdminPropertyIdAndRole", false,
+                        () -> userRepository.findByAdminPropertyIdAndRole(s.propertyId(), User.Role.ADMIN)),
+                new Check("UserRepository.findByIdWithUnits", false,
+                        () -> userRepository.findByIdWithUnits(s.reporterId())),
+                new Check("UnitRepository.findByPropertyId", false,
+                        () -> unitRepository.findByPropertyId(s.propertyId())),
+                new Check("UnitRepository.findByPropertyIdAndUnitNumber", false,
+                        () -> unitRepository.findByPropertyIdAndUnitNumber(s.propertyId(), s.unitNumber())),
+                new Check("PropertyRepository.findByAdminsId", false,
+                        () -> propertyRepository.findByAdminsId(s.adminId())),
+                new Check("TicketAttachmentRepository.findContentHashesByPreviewStatus", false,
+                        () -> attachmentRepository.findContentHashesByPreviewStatus(
+                                TicketAttachment.PreviewStatus.PENDING, PageRequest.of(0, 100))),
+                new Check("AttachmentBlobRepository.findUnreferencedBefore", false,
+                        () -> blobRepository.findUnreferencedBefore(now, PageRequest.of(0, 100))),
+                new Check("AttachmentUploadRepository.findByExpiresAtBefore", false,
+                        () -> uploadRepository.findByExpiresAtBefore(now))
+        );
+    }
+
+    /**
+     * Läser hela exportströmmen, så att markören och underfrågan per rad faktiskt körs.
+     */
+    private static void drain(Stream<?> rows) {
+        try (rows) {
+            rows.forEach(row -> { });
+        }
+    }
+
+    /**
+     * Parametrar från en fastighet mitt i storleksfördelningen. Den största fastigheten har
+     * så många ärenden att en sekventiell läsning kan vara rimlig för den.
+     */
+    private Optional<Sample> sample() {
+        Optional<UUID> propertyId = jdbcTemplate.query(
+                "SELECT property_id FROM tickets GROUP BY property_id ORDER BY COUNT(*), property_id "
+                        + "LIMIT 1 OFFSET (SELECT COUNT(DISTINCT property_id) FROM tickets) / 2",
+                (rs, rowNum) -> rs.getObject(1, UUID.class)).stream().findFirst();
+        if (propertyId.isEmpty()) {
+            return Optional.empty();
+        }
+        UUID property = propertyId.get();
+
+        return jdbcTemplate.query("""
+                        SELECT t.id, t.reporter_id, u.email,
+                               (SELECT assignee_id FROM tickets WHERE property_id = ? AND assignee_id IS NOT NULL LIMIT 1),
+                               (SELECT user_id FROM property_admins WHERE property_id = ? LIMIT 1),
+                               (SELECT unit_number FROM units WHERE property_id = ? LIMIT 1)
+                        FROM tickets t JOIN users u ON u.id = t.reporter_id
+                        WHERE t.property_id = ?
+                        LIMIT 1
+                        """,
+                (rs, rowNum) -> new Sample(property, rs.getLong(1), rs.getObject(2, UUID.class), rs.getString(3),
+                        rs.getObject(4, UUID.class), rs.getObject(5, UUID.class), rs.getString(6)),
+                property, property, property, property).stream().findFirst();
+    }
+
+    private Map<String, Long> tableRows() {
+        Map<String, Long> rows = new HashMap<>();
+        jdbcTemplate.query("SELECT relname, reltuples::bigint FROM pg_class "
+                        + "WHERE relkind = 'r' AND relnamespace = current_schema()::regnamespace",
+                (RowCallbackHandler) rs -> rows.put(rs.getString(1), rs.getLong(2)));
+        return rows;
+    }
+
+    private JsonNode explain(QueryPlanCapture.CapturedQuery query) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + query.sql())) {
+                for (ParameterSetOperation parameter : query.parameters()) {
+                    if (parameter.getMethod().getDeclaringClass().isAssignableFrom(PreparedStatement.class)) {
+                        parameter.getMethod().invoke(statement, parameter.getArgs());
+                    }
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return objectMapper.readTree(resultSet.getString(1));
+                }
+            } finally {
+                connection.rollback();
+            }
+        }
+    }
+
+    private static void collectSeqScans(JsonNode node, List<String> tables) {
+        if (node.isArray()) {
+            node.forEach(child -> collectSeqScans(child, tables));
+            return;
+        }
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            tables.add(node.path("Relation Name").asText());
+        }
+        if (node.has("Plan")) {
+            collectSeqScans(node.get("Plan"), tables);
+        }
+        if (node.has("Plans")) {
+            collectSeqScans(node.get("Plans"), tables);
+        }
+    }
+
+    private boolean isPostgres() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot determine database type", e);
+        }
+    }
+}
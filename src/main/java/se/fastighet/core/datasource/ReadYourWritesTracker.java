@@ -0,0 +1,92 @@
+package se.fastighet.core.datasource;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import se.fastighet.core.security.UserPrincipal;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Håller en användare på primären en kort stund efter att användarens egen skrivning
+ * har committats, så att en replik som ligger efter inte visar ett ärende utan den nya
+ * kommentaren eller statusen.
+ * <p>
+ * Spärren gäller per instans. Utan sticky sessions i lastbalanseraren kan nästa request
+ * hamna på en annan instans, och då skyddar bara {@code max-lag}.
+ */
+public class ReadYourWritesTracker {
+
+    private static final Object TRACKED_KEY = new Object();
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final long windowNanos;
+    private final Map<UUID, Long> pinnedUntil = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * Anropas när en skrivande transaktion hämtar sin anslutning. Spärren sätts först när
+     * transaktionen har committats; en återrullad transaktion spärrar inget.
+     */
+    void trackCurrentTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(TRACKED_KEY)) {
+            return;
+        }
+        UUID userId = currentUserId();
+        if (userId == null) {
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(TRACKED_KEY, userId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pin(userId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TRACKED_KEY);
+            }
+        });
+    }
+
+    public boolean isCurrentUserPinned() {
+        UUID userId = currentUserId();
+        if (userId == null) {
+            return false;
+        }
+        Long until = pinnedUntil.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until >= 0) {
+            pinnedUntil.remove(userId, until);
+            return false;
+        }
+        return true;
+    }
+
+    private void pin(UUID userId) {
+        long now = System.nanoTime();
+        if (pinnedUntil.size() > CLEANUP_THRESHOLD) {
+            pinnedUntil.values().removeIf(until -> now - until >= 0);
+        }
+        pinnedUntil.put(userId, now + windowNanos);
+    }
+
+    private UUID currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal
+                ? principal.getId()
+                : null;
+    }
+}
@@ -0,0 +1,27 @@
+package se.fastighet.core.datasource;
+
+import lombok.Getter;
+
+import javax.sql.DataSource;
+
+/**
+ * En läsreplik och dess senast uppmätta tillstånd. Uppdateras av {@link ReplicaSet}.
+ */
+@Getter
+public class Replica {
+
+    private final String name;
+    private final DataSource dataSource;
+    private volatile boolean healthy;
+    private volatile double lagSeconds;
+
+    Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    void update(boolean healthy, double lagSeconds) {
+        this.healthy = healthy;
+        this.lagSeconds = lagSeconds;
+    }
+}
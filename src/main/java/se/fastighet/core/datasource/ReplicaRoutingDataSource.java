@@ -0,0 +1,81 @@
+package se.fastighet.core.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Skickar {@code @Transactional(readOnly = true)} till en replik och allt annat till primären.
+ * <p>
+ * Måste ligga bakom en {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ * JpaTransactionManager hämtar anslutningen innan transaktionen markerats som skrivskyddad,
+ * och först proxyn skjuter upp valet till den första satsen.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicaSet replicaSet;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final Counter readWrite;
+    private final Counter readYourWrites;
+    private final Counter noReplica;
+    private final Counter replicaRead;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaSet replicaSet,
+                                    ReadYourWritesTracker readYourWritesTracker, MeterRegistry meterRegistry) {
+        this.replicaSet = replicaSet;
+        this.readYourWritesTracker = readYourWritesTracker;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicaSet.getReplicas()) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+
+        this.readWrite = routingCounter(meterRegistry, PRIMARY, "read_write");
+        this.readYourWrites = routingCounter(meterRegistry, PRIMARY, "read_your_writes");
+        this.noReplica = routingCounter(meterRegistry, PRIMARY, "no_replica");
+        this.replicaRead = routingCounter(meterRegistry, "replica", "read_only");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readYourWritesTracker.trackCurrentTransaction();
+            readWrite.increment();
+            return PRIMARY;
+        }
+        if (readYourWritesTracker.isCurrentUserPinned()) {
+            readYourWrites.increment();
+            return PRIMARY;
+        }
+
+        Replica replica = replicaSet.nextEligible();
+        if (replica == null) {
+            noReplica.increment();
+            return PRIMARY;
+        }
+        replicaRead.increment();
+        return replica.getName();
+    }
+
+    private static Counter routingCounter(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("db.routing")
+                .description("Val av databas per transaktion")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,114 @@
+package se.fastighet.core.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replikerna och deras hälsa. En replik tas bara i bruk om den svarar och ligger
+ * högst {@code max-lag} efter primären.
+ * <p>
+ * Fördröjningen mäts på Postgres som tiden sedan den senast återspelade transaktionen,
+ * men räknas som noll när repliken har återspelat allt den tagit emot. Annars skulle en
+ * primär utan skrivningar få alla repliker att se efter ut. På andra databaser (t.ex. två
+ * lokala H2-databaser vid test av routningen) kontrolleras bara att repliken svarar.
+ */
+@Slf4j
+public class ReplicaSet implements DisposableBean {
+
+    private static final String POSTGRES_LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+            END
+            """;
+
+    private final List<Replica> replicas;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaSet(List<Replica> replicas, Duration maxLag, MeterRegistry meterRegistry) {
+        this.replicas = List.copyOf(replicas);
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        for (Replica replica : this.replicas) {
+            Gauge.builder("db.replica.lag", replica, Replica::getLagSeconds)
+                    .description("Senast uppmätt fördröjning mot primären")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.getName())
+                    .register(meterRegistry);
+            Gauge.builder("db.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .tag("replica", replica.getName())
+                    .register(meterRegistry);
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Nästa användbara replik i tur och ordning, eller {@code null} om ingen går att använda.
+     */
+    Replica nextEligible() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isHealthy() && replica.getLagSeconds() <= maxLagSeconds) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.health-check-interval:PT5S}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean wasUsable = replica.isHealthy() && replica.getLagSeconds() <= maxLagSeconds;
+            try (Connection connection = replica.getDataSource().getConnection()) {
+                replica.update(connection.isValid(2), measureLag(connection));
+            } catch (SQLException e) {
+                log.debug("Health check failed for replica {}: {}", replica.getName(), e.getMessage());
+                replica.update(false, replica.getLagSeconds());
+            }
+
+            boolean usable = replica.isHealthy() && replica.getLagSeconds() <= maxLagSeconds;
+            if (wasUsable != usable) {
+                log.warn("Replica {} is now {} (healthy={}, lag={}s)", replica.getName(),
+                        usable ? "in use" : "out of rotation", replica.isHealthy(), replica.getLagSeconds());
+            }
+        }
+    }
+
+    private double measureLag(Connection connection) throws SQLException {
+        if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+            return 0;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(POSTGRES_LAG_QUERY)) {
+            resultSet.next();
+            return resultSet.getDouble(1);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (Replica replica : replicas) {
+            if (replica.getDataSource() instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+}
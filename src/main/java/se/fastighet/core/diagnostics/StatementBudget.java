@@ -0,0 +1,23 @@
+package se.fastighet.core.diagnostics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Högsta antal SQL-satser en controller- eller servicemetod får orsaka.
+ * <p>
+ * På en controllermetod gäller budgeten hela requesten, inklusive användaruppslagningen i
+ * JwtAuthenticationFilter. På en servicemetod gäller den bara metodanropet. Överskridanden
+ * loggas som varning, eller kastar {@link StatementBudgetExceededException} om
+ * {@code diagnostics.statements.fail-on-exceed} är satt (testprofilen).
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface StatementBudget {
+
+    int value();
+}
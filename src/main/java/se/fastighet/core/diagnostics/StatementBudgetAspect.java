@@ -0,0 +1,46 @@
+package se.fastighet.core.diagnostics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Räknar satser per publikt serviceanrop och kontrollerar {@link StatementBudget}.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "diagnostics.statements.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class StatementBudgetAspect {
+
+    @Value("${diagnostics.statements.fail-on-exceed:false}")
+    private boolean failOnExceed;
+
+    @Around("execution(public * se.fastighet.core.service..*(..))")
+    public Object countStatements(ProceedingJoinPoint joinPoint) throws Throwable {
+        StatementBudget budget = ((MethodSignature) joinPoint.getSignature()).getMethod()
+                .getAnnotation(StatementBudget.class);
+        if (budget == null && !log.isTraceEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            Object result = joinPoint.proceed();
+            String method = joinPoint.getSignature().toShortString();
+            log.trace("{} issued {} SQL statements", method, scope.count());
+            if (budget != null && scope.count() > budget.value()) {
+                String message = method + ": " + scope.describe(budget.value());
+                if (failOnExceed) {
+                    throw new StatementBudgetExceededException(message);
+                }
+                log.warn(message);
+            }
+            return result;
+        }
+    }
+}
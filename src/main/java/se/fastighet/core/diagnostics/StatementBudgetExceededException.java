@@ -0,0 +1,8 @@
+package se.fastighet.core.diagnostics;
+
+public class StatementBudgetExceededException extends IllegalStateException {
+
+    public StatementBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,98 @@
+package se.fastighet.core.diagnostics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Räknar SQL-satser som Hibernate förbereder på den aktuella tråden.
+ * <p>
+ * Registreras som Hibernates {@link StatementInspector} av {@link StatementCountingConfig}.
+ * Räkningen sker per tråd, så ett {@link Scope} omfattar exakt de satser som koden mellan
+ * {@link #open()} och {@link Scope#close()} orsakade. Scopes kan nästlas. Satser via
+ * JdbcTemplate går förbi Hibernate och räknas inte.
+ * <p>
+ * Användning i tester:
+ * <pre>{@code
+ * try (StatementCounter.Scope scope = StatementCounter.open()) {
+ *     ticketService.getMyTickets(principal, PageRequest.of(0, 20));
+ *     scope.assertAtMost(3);
+ * }
+ * }</pre>
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final int MAX_RECORDED_STATEMENTS = 100;
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    @Override
+    public String inspect(String sql) {
+        State state = STATE.get();
+        state.count++;
+        if (state.openScopes > 0 && state.statements.size() < MAX_RECORDED_STATEMENTS) {
+            state.statements.add(sql);
+        }
+        return sql;
+    }
+
+    public static Scope open() {
+        State state = STATE.get();
+        state.openScopes++;
+        return new Scope(state, state.count, state.statements.size());
+    }
+
+    private static final class State {
+        private long count;
+        private int openScopes;
+        private final List<String> statements = new ArrayList<>();
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final State state;
+        private final long startCount;
+        private final int startIndex;
+        private boolean closed;
+
+        private Scope(State state, long startCount, int startIndex) {
+            this.state = state;
+            this.startCount = startCount;
+            this.startIndex = startIndex;
+        }
+
+        public int count() {
+            return (int) (state.count - startCount);
+        }
+
+        /**
+         * Satserna i detta scope, som mest de första {@value #MAX_RECORDED_STATEMENTS} på tråden.
+         */
+        public List<String> statements() {
+            List<String> all = state.statements;
+            return List.copyOf(all.subList(Math.min(startIndex, all.size()), all.size()));
+        }
+
+        public void assertAtMost(int budget) {
+            if (count() > budget) {
+                throw new AssertionError(describe(budget));
+            }
+        }
+
+        String describe(int budget) {
+            return "Expected at most " + budget + " SQL statements but " + count() + " were issued:\n\t"
+                    + String.join("\n\t", statements());
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (--state.openScopes == 0) {
+                state.statements.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package se.fastighet.core.diagnostics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Räknar SQL-satser per HTTP-request, inklusive autentiseringen, och varnar när
+ * requesten överskrider sin budget. Budgeten tas från {@link StatementBudget} på
+ * controllermetoden och annars från {@code diagnostics.statements.request-budget}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10) // Före säkerhetskedjan, så att JWT-filtrets uppslagning räknas
+@ConditionalOnProperty(name = "diagnostics.statements.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class StatementCountingFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final int defaultBudget;
+    private final boolean failOnExceed;
+
+    public StatementCountingFilter(
+            MeterRegistry meterRegistry,
+            @Value("${diagnostics.statements.request-budget:20}") int defaultBudget,
+            @Value("${diagnostics.statements.fail-on-exceed:false}") boolean failOnExceed) {
+        this.meterRegistry = meterRegistry;
+        this.defaultBudget = defaultBudget;
+        this.failOnExceed = failOnExceed;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            filterChain.doFilter(request, response);
+            report(request, scope);
+        }
+    }
+
+    private void report(HttpServletRequest request, StatementCounter.Scope scope) {
+        int count = scope.count();
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern : "UNKNOWN";
+
+        DistributionSummary.builder("http.server.requests.sql.statements")
+                .description("SQL-satser per request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(count);
+
+        int budget = budgetFor(request);
+        if (count > budget) {
+            String message = request.getMethod() + " " + uri + ": " + scope.describe(budget);
+            if (failOnExceed) {
+                throw new StatementBudgetExceededException(message);
+            }
+            log.warn(message);
+        } else {
+            log.debug("{} {} issued {} SQL statements", request.getMethod(), uri, count);
+        }
+    }
+
+    private int budgetFor(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod handlerMethod) {
+            StatementBudget budget = handlerMethod.getMethodAnnotation(StatementBudget.class);
+            if (budget != null) {
+                return budget.value();
+            }
+        }
+        return defaultBudget;
+    }
+}
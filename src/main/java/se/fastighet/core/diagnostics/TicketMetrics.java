@@ -0,0 +1,58 @@
+package se.fastighet.core.diagnostics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.service.TicketService;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Affärsmätvärden för ärenden. Räknas om på schema i stället för vid varje skrapning,
+ * så att Prometheus aldrig orsakar en fråga mot databasen. Med sharding summeras alla shards.
+ */
+@Component
+@Slf4j
+public class TicketMetrics {
+
+    private final TicketService ticketService;
+    private final Map<Ticket.Priority, AtomicLong> openByPriority = new EnumMap<>(Ticket.Priority.class);
+    private final Map<Ticket.Status, AtomicLong> byStatus = new EnumMap<>(Ticket.Status.class);
+
+    public TicketMetrics(TicketService ticketService, MeterRegistry meterRegistry) {
+        this.ticketService = ticketService;
+
+        for (Ticket.Priority priority : Ticket.Priority.values()) {
+            AtomicLong value = new AtomicLong();
+            openByPriority.put(priority, value);
+            Gauge.builder("tickets.open", value, AtomicLong::get)
+                    .description("Öppna ärenden (ej RESOLVED/CLOSED) per prioritet")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+        }
+        for (Ticket.Status status : Ticket.Status.values()) {
+            AtomicLong value = new AtomicLong();
+            byStatus.put(status, value);
+            Gauge.builder("tickets.total", value, AtomicLong::get)
+                    .description("Ärenden per status")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.tickets.refresh-interval:PT1M}", initialDelayString = "PT10S")
+    public void refresh() {
+        update(openByPriority, ticketService.countOpenByPriority());
+        update(byStatus, ticketService.countByStatus());
+    }
+
+    private static <E extends Enum<E>> void update(Map<E, AtomicLong> gauges, Map<E, Long> counts) {
+        // Värden som saknas i resultatet har inga ärenden
+        gauges.forEach((key, value) -> value.set(counts.getOrDefault(key, 0L)));
+    }
+}
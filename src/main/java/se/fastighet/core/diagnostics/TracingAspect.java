@@ -0,0 +1,73 @@
+package se.fastighet.core.diagnostics;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Skapar spann för controller-, service- och repository-anrop.
+ * <p>
+ * HTTP-spannet kommer från Spring MVC och JMS-spannet från {@code JmsTemplate}, som också
+ * skriver {@code traceparent} i meddelandets egenskaper. Service-spann får antalet SQL-satser
+ * som {@code db.statements}; skillnaden mot summan av repository-spannen är lazy-laddning,
+ * t.ex. i {@code mapToResponse}.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class TracingAspect {
+
+    private final ObservationRegistry observationRegistry;
+
+    @Around("within(@org.springframework.web.bind.annotation.RestController se.fastighet.core.controller..*)")
+    public Object traceController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("app.controller", joinPoint, false);
+    }
+
+    @Around("execution(public * se.fastighet.core.service..*(..))")
+    public Object traceService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("app.service", joinPoint, true);
+    }
+
+    @Around("bean(*Repository)")
+    public Object traceRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return observe("app.repository", joinPoint, false);
+    }
+
+    private Object observe(String name, ProceedingJoinPoint joinPoint, boolean countStatements) throws Throwable {
+        if (observationRegistry.isNoop()) {
+            return joinPoint.proceed();
+        }
+
+        String className = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String methodName = joinPoint.getSignature().getName();
+        Observation observation = Observation.createNotStarted(name, observationRegistry)
+                .contextualName(className + "." + methodName)
+                .lowCardinalityKeyValue("class", className)
+                .lowCardinalityKeyValue("method", methodName)
+                .start();
+
+        try (Observation.Scope ignored = observation.openScope();
+             StatementCounter.Scope statements = countStatements ? StatementCounter.open() : null) {
+            try {
+                return joinPoint.proceed();
+            } finally {
+                if (statements != null) {
+                    observation.highCardinalityKeyValue("db.statements", String.valueOf(statements.count()));
+                }
+            }
+        } catch (Throwable e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+}
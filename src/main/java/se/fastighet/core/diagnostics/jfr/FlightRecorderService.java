@@ -0,0 +1,140 @@
+package se.fastighet.core.diagnostics.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se.fastighet.core.dto.request.StartRecordingRequest;
+import se.fastighet.core.dto.response.RecordingResponse;
+import se.fastighet.core.exception.InvalidRequestException;
+import se.fastighet.core.exception.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Styr JFR-inspelningar i den egna processen så att de kan startas i produktion utan
+ * åtkomst till jcmd. Endast inspelningar som startats härifrån kan stoppas eller hämtas.
+ */
+@Service
+@Slf4j
+public class FlightRecorderService {
+
+    private static final String NAME_PREFIX = "brf-";
+
+    private final int maxRecordings;
+    private final Duration maxDuration;
+
+    public FlightRecorderService(
+            @Value("${diagnostics.jfr.max-recordings:2}") int maxRecordings,
+            @Value("${diagnostics.jfr.max-duration:PT30M}") Duration maxDuration) {
+        this.maxRecordings = maxRecordings;
+        this.maxDuration = maxDuration;
+    }
+
+    public synchronized RecordingResponse start(StartRecordingRequest request) {
+        if (!FlightRecorder.isAvailable()) {
+            throw new InvalidRequestException("JFR är inte tillgängligt i denna JVM");
+        }
+        long running = ownRecordings().stream()
+                .filter(recording -> recording.getState() == RecordingState.RUNNING)
+                .count();
+        if (running >= maxRecordings) {
+            throw new InvalidRequestException("Max antal pågående inspelningar är " + maxRecordings);
+        }
+
+        String settings = request.getSettings() != null ? request.getSettings() : "default";
+        Duration duration = request.getDuration() != null && request.getDuration().compareTo(maxDuration) < 0
+                ? request.getDuration()
+                : maxDuration;
+
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration(settings));
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Could not load JFR configuration " + settings, e);
+        }
+        recording.setName(NAME_PREFIX + settings + "-" + System.currentTimeMillis());
+        recording.setDuration(duration);
+        recording.setToDisk(true);
+        if (request.getThreshold() != null) {
+            recording.enable(TicketOperationEvent.class).withThreshold(request.getThreshold());
+        }
+        recording.start();
+
+        log.info("Started JFR recording {} ({}, max {})", recording.getId(), settings, duration);
+        return toResponse(recording);
+    }
+
+    public synchronized RecordingResponse stop(long id) {
+        Recording recording = find(id);
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("Stopped JFR recording {}", id);
+        }
+        return toResponse(recording);
+    }
+
+    /**
+     * Skriver inspelningen till en temporär fil. Anroparen ansvarar för att ta bort filen.
+     */
+    public Path dump(long id) {
+        Recording recording = find(id);
+        try {
+            Path file = Files.createTempFile("recording-" + id + "-", ".jfr");
+            recording.dump(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not dump JFR recording " + id, e);
+        }
+    }
+
+    public synchronized void close(long id) {
+        find(id).close();
+        log.info("Closed JFR recording {}", id);
+    }
+
+    public List<RecordingResponse> list() {
+        return ownRecordings().stream()
+                .sorted(Comparator.comparingLong(Recording::getId))
+                .map(this::toResponse)
+                .toList();
+    }
+
+    private Recording find(long id) {
+        return ownRecordings().stream()
+                .filter(recording -> recording.getId() == id)
+                .findFirst()
+                .orElseThrow(() -> new ResourceNotFoundException("Inspelningen hittades inte"));
+    }
+
+    private List<Recording> ownRecordings() {
+        if (!FlightRecorder.isAvailable()) {
+            return List.of();
+        }
+        return FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .filter(recording -> recording.getName().startsWith(NAME_PREFIX))
+                .toList();
+    }
+
+    private RecordingResponse toResponse(Recording recording) {
+        return RecordingResponse.builder()
+                .id(recording.getId())
+                .name(recording.getName())
+                .state(recording.getState().name())
+                .startTime(recording.getStartTime())
+                .stopTime(recording.getStopTime())
+                .duration(recording.getDuration())
+                .size(recording.getSize())
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package se.fastighet.core.diagnostics.jfr;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.security.UserPrincipal;
+
+import java.util.UUID;
+
+/**
+ * Skickar JFR-händelser för ärendeoperationer och behörighetsbeslut.
+ * <p>
+ * När ingen inspelning är igång är {@code isEnabled()} falskt och anropet går direkt
+ * vidare, så kostnaden utan inspelning är ett fältläs.
+ */
+@Aspect
+@Component
+public class JfrEventAspect {
+
+    @Around("execution(public * se.fastighet.core.service.TicketService.*(..))")
+    public Object ticketOperation(ProceedingJoinPoint joinPoint) throws Throwable {
+        TicketOperationEvent event = new TicketOperationEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        event.begin();
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            event.success = true;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = joinPoint.getSignature().getName();
+                event.ticketId = ticketId(joinPoint);
+                event.propertyId = propertyId(joinPoint, result);
+                event.userId = currentUserId();
+                event.commit();
+            }
+        }
+    }
+
+    @Around("execution(public boolean se.fastighet.core.security.TicketSecurity.*(..))")
+    public Object securityDecision(ProceedingJoinPoint joinPoint) throws Throwable {
+        SecurityDecisionEvent event = new SecurityDecisionEvent();
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+
+        event.begin();
+        Object result = joinPoint.proceed();
+        event.end();
+        if (event.shouldCommit()) {
+            event.check = joinPoint.getSignature().getName();
+            event.ticketId = ticketId(joinPoint);
+            event.allowed = Boolean.TRUE.equals(result);
+            UserPrincipal principal = currentPrincipal();
+            if (principal != null) {
+                event.userId = principal.getId().toString();
+                event.role = principal.getRole().name();
+            }
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Ärende-id är första parametern av typen Long i TicketService och TicketSecurity.
+     */
+    private long ticketId(ProceedingJoinPoint joinPoint) {
+        Class<?>[] types = ((MethodSignature) joinPoint.getSignature()).getParameterTypes();
+        Object[] args = joinPoint.getArgs();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == Long.class && args[i] != null) {
+                return (Long) args[i];
+            }
+        }
+        return 0;
+    }
+
+    private String propertyId(ProceedingJoinPoint joinPoint, Object result) {
+        if (result instanceof TicketResponse response && response.getProperty() != null) {
+            return String.valueOf(response.getProperty().getId());
+        }
+        for (Object arg : joinPoint.getArgs()) {
+            if (arg instanceof UUID uuid && joinPoint.getSignature().getName().contains("Property")) {
+                return uuid.toString();
+            }
+        }
+        return null;
+    }
+
+    private String currentUserId() {
+        UserPrincipal principal = currentPrincipal();
+        return principal != null ? principal.getId().toString() : null;
+    }
+
+    private UserPrincipal currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal
+                ? principal
+                : null;
+    }
+}
@@ -0,0 +1,23 @@
+package se.fastighet.core.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("se.fastighet.JwtVerification")
+@Label("JWT Verification")
+@Category({"BRF", "Security"})
+@Description("Signaturkontroll och tolkning av en JWT")
+@StackTrace(false)
+public class JwtVerificationEvent extends Event {
+
+    @Label("Valid")
+    public boolean valid;
+
+    @Label("Failure")
+    @Description("Undantagstyp när token avvisades")
+    public String failure;
+}
@@ -0,0 +1,31 @@
+package se.fastighet.core.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("se.fastighet.SecurityDecision")
+@Label("Security Decision")
+@Category({"BRF", "Security"})
+@Description("Behörighetsbeslut från TicketSecurity")
+@StackTrace(false)
+public class SecurityDecisionEvent extends Event {
+
+    @Label("Check")
+    public String check;
+
+    @Label("Ticket Id")
+    public long ticketId;
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Role")
+    public String role;
+
+    @Label("Allowed")
+    public boolean allowed;
+}
@@ -0,0 +1,30 @@
+package se.fastighet.core.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("se.fastighet.TicketEventPublish")
+@Label("Ticket Event Publish")
+@Category({"BRF", "Messaging"})
+@Description("Publicering av en ärendehändelse till JMS, inklusive väntan på sändplats")
+@StackTrace(false)
+public class TicketEventPublishEvent extends Event {
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Ticket Id")
+    public long ticketId;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadBytes;
+
+    @Label("Success")
+    public boolean success;
+}
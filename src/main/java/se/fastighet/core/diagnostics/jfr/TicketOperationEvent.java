@@ -0,0 +1,31 @@
+package se.fastighet.core.diagnostics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("se.fastighet.TicketOperation")
+@Label("Ticket Operation")
+@Category({"BRF", "Tickets"})
+@Description("Anrop till TicketService med ärende, fastighet och utfall")
+@StackTrace(false)
+public class TicketOperationEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Ticket Id")
+    public long ticketId;
+
+    @Label("Property Id")
+    public String propertyId;
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,126 @@
+package se.fastighet.core.diagnostics.slowquery;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hämtar exekveringsplanen för långsamma SELECT-satser på Postgres.
+ * <p>
+ * Körs på en egen tråd mot den oproxade datakällan, så att varken den ursprungliga
+ * requesten eller samplern själv påverkas. Parametervärdena används bara för att köra
+ * {@code EXPLAIN} och sparas inte. Samma sats förklaras högst en gång per intervall, och
+ * köar det upp sig kastas nya förfrågningar. {@code ANALYZE} kör satsen på riktigt, men i
+ * en skrivskyddad transaktion med tidsgräns som alltid rullas tillbaka.
+ */
+@Slf4j
+class QueryPlanExplainer {
+
+    private static final int MAX_TRACKED_STATEMENTS = 1000;
+
+    private final DataSource dataSource;
+    private final boolean analyze;
+    private final Duration timeout;
+    private final long intervalNanos;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private volatile Boolean postgres;
+
+    QueryPlanExplainer(DataSource dataSource, boolean analyze, Duration timeout, Duration interval) {
+        this.dataSource = dataSource;
+        this.analyze = analyze;
+        this.timeout = timeout;
+        this.intervalNanos = interval.toNanos();
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    void submit(SlowQuerySample sample, String sql, List<ParameterSetOperation> parameters) {
+        if (Boolean.FALSE.equals(postgres) || !isSelect(sql) || !claim(sql)) {
+            return;
+        }
+        List<ParameterSetOperation> parametersCopy = List.copyOf(parameters);
+        executor.execute(() -> explain(sample, sql, parametersCopy));
+    }
+
+    private boolean claim(String sql) {
+        long now = System.nanoTime();
+        if (lastExplained.size() > MAX_TRACKED_STATEMENTS) {
+            lastExplained.clear();
+        }
+        Long previous = lastExplained.get(sql);
+        if (previous != null && now - previous < intervalNanos) {
+            return false;
+        }
+        return previous == null
+                ? lastExplained.putIfAbsent(sql, now) == null
+                : lastExplained.replace(sql, previous, now);
+    }
+
+    private void explain(SlowQuerySample sample, String sql, List<ParameterSetOperation> parameters) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!isPostgres(connection)) {
+                return;
+            }
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET LOCAL statement_timeout = " + timeout.toMillis());
+                }
+                String explain = analyze ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ";
+                try (PreparedStatement statement = connection.prepareStatement(explain + sql)) {
+                    for (ParameterSetOperation parameter : parameters) {
+                        if (parameter.getMethod().getDeclaringClass().isAssignableFrom(PreparedStatement.class)) {
+                            parameter.getMethod().invoke(statement, parameter.getArgs());
+                        }
+                    }
+                    StringJoiner plan = new StringJoiner("\n");
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            plan.add(resultSet.getString(1));
+                        }
+                    }
+                    sample.setPlan(plan.toString());
+                }
+            } finally {
+                connection.rollback();
+            }
+        } catch (Exception e) {
+            log.debug("Could not explain slow query {}: {}", sample.getId(), e.getMessage());
+            sample.setPlanError(e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private boolean isPostgres(Connection connection) throws SQLException {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        }
+        return postgres;
+    }
+
+    private static boolean isSelect(String sql) {
+        String trimmed = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return trimmed.startsWith("select");
+    }
+}
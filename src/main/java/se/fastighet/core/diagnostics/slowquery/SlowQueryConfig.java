@@ -0,0 +1,55 @@
+package se.fastighet.core.diagnostics.slowquery;
+
+import io.micrometer.tracing.Tracer;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Lindar in datakällan {@code dataSource} i en proxy som mäter varje sats.
+ * Proxyn delegerar {@code unwrap} till Hikari, så poolens mätvärden påverkas inte.
+ */
+@Configuration
+@ConditionalOnProperty(name = "diagnostics.slow-queries.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryConfig {
+
+    private static final String PREFIX = "diagnostics.slow-queries.";
+
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(
+            ObjectProvider<SlowQueryLog> slowQueryLog,
+            ObjectProvider<Tracer> tracer,
+            Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource dataSource)) {
+                    return bean;
+                }
+
+                QueryPlanExplainer explainer = null;
+                if (environment.getProperty(PREFIX + "explain", Boolean.class, true)) {
+                    explainer = new QueryPlanExplainer(
+                            dataSource,
+                            environment.getProperty(PREFIX + "explain-analyze", Boolean.class, false),
+                            environment.getProperty(PREFIX + "explain-timeout", Duration.class, Duration.ofSeconds(5)),
+                            environment.getProperty(PREFIX + "explain-interval", Duration.class, Duration.ofMinutes(5)));
+                }
+                Duration threshold = environment.getProperty(PREFIX + "threshold", Duration.class,
+                        Duration.ofMillis(200));
+
+                return ProxyDataSourceBuilder.create(dataSource)
+                        .name(beanName)
+                        .listener(new SlowQueryListener(slowQueryLog, tracer, explainer, threshold.toMillis()))
+                        .build();
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package se.fastighet.core.diagnostics.slowquery;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Sparar satser som tog längre tid än tröskeln i {@link SlowQueryLog}.
+ * <p>
+ * Litteraler i SQL-texten ersätts med {@code ?} och parametervärden sparas aldrig, så att
+ * personuppgifter som namn och e-postadresser inte hamnar i diagnostiken.
+ */
+@Slf4j
+class SlowQueryListener implements QueryExecutionListener {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final String APPLICATION_PACKAGE = "se.fastighet.core.";
+    private static final String DIAGNOSTICS_PACKAGE = "se.fastighet.core.diagnostics.";
+
+    private final ObjectProvider<SlowQueryLog> slowQueryLog;
+    private final ObjectProvider<Tracer> tracer;
+    private final QueryPlanExplainer explainer; // null när EXPLAIN är avstängt
+    private final long thresholdMillis;
+
+    SlowQueryListener(ObjectProvider<SlowQueryLog> slowQueryLog, ObjectProvider<Tracer> tracer,
+                      QueryPlanExplainer explainer, long thresholdMillis) {
+        this.slowQueryLog = slowQueryLog;
+        this.tracer = tracer;
+        this.explainer = explainer;
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (execInfo.getElapsedTime() < thresholdMillis || queryInfoList.isEmpty()) {
+            return;
+        }
+
+        SlowQueryLog target = slowQueryLog.getIfAvailable();
+        if (target == null) {
+            return;
+        }
+
+        String caller = caller();
+        String traceId = traceId();
+        for (QueryInfo queryInfo : queryInfoList) {
+            List<List<ParameterSetOperation>> parameters = queryInfo.getParametersList();
+            List<ParameterSetOperation> firstParameters = parameters.isEmpty() ? List.of() : parameters.get(0);
+
+            SlowQuerySample sample = SlowQuerySample.builder()
+                    .id(target.nextId())
+                    .timestamp(Instant.now())
+                    .elapsedMillis(execInfo.getElapsedTime())
+                    .sql(redact(queryInfo.getQuery()))
+                    .parameterCount(firstParameters.size())
+                    .batchSize(execInfo.isBatch() ? execInfo.getBatchSize() : 1)
+                    .success(execInfo.isSuccess())
+                    .caller(caller)
+                    .traceId(traceId)
+                    .build();
+            target.add(sample);
+
+            // Batchar (t.ex. datasetgeneratorn) är väntat långsamma och förklaras inte
+            if (execInfo.isBatch()) {
+                log.debug("Slow batch ({} ms, {} rows): {}", sample.getElapsedMillis(), sample.getBatchSize(),
+                        sample.getSql());
+                continue;
+            }
+            log.warn("Slow query ({} ms) from {}: {}", sample.getElapsedMillis(), caller, sample.getSql());
+            if (explainer != null) {
+                explainer.submit(sample, queryInfo.getQuery(), firstParameters);
+            }
+        }
+    }
+
+    static String redact(String sql) {
+        String withoutStrings = STRING_LITERAL.matcher(sql).replaceAll("?");
+        return NUMERIC_LITERAL.matcher(withoutStrings).replaceAll("?");
+    }
+
+    /**
+     * Första anropet i applikationens egen kod, t.ex. {@code TicketService.getTicketsByProperty:142}.
+     * Repositories är JDK-proxies och syns därför genom sin anropare.
+     */
+    private static String caller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE)
+                        && !frame.getClassName().startsWith(DIAGNOSTICS_PACKAGE)
+                        && !frame.getClassName().contains("$$"))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse(null));
+    }
+
+    private String traceId() {
+        Tracer current = tracer.getIfAvailable();
+        Span span = current != null ? current.currentSpan() : null;
+        return span != null ? span.context().traceId() : null;
+    }
+}
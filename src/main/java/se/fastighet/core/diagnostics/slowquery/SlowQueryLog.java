@@ -0,0 +1,59 @@
+package se.fastighet.core.diagnostics.slowquery;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ringbuffert med de senaste långsamma satserna. Äldsta provet skrivs över när bufferten är full.
+ */
+@Component
+public class SlowQueryLog {
+
+    private final SlowQuerySample[] samples;
+    private final Counter slowQueries;
+    private final AtomicLong ids = new AtomicLong();
+    private long written;
+
+    public SlowQueryLog(
+            MeterRegistry meterRegistry,
+            @Value("${diagnostics.slow-queries.capacity:100}") int capacity) {
+        this.samples = new SlowQuerySample[capacity];
+        this.slowQueries = Counter.builder("db.queries.slow")
+                .description("Satser som tog längre tid än diagnostics.slow-queries.threshold")
+                .register(meterRegistry);
+    }
+
+    public long nextId() {
+        return ids.incrementAndGet();
+    }
+
+    public synchronized void add(SlowQuerySample sample) {
+        samples[(int) (written % samples.length)] = sample;
+        written++;
+        slowQueries.increment();
+    }
+
+    /**
+     * Proven i buffert, nyaste först.
+     */
+    public synchronized List<SlowQuerySample> recent() {
+        int size = (int) Math.min(written, samples.length);
+        List<SlowQuerySample> result = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            result.add(samples[(int) ((written - i) % samples.length)]);
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(samples, null);
+        written = 0;
+    }
+}
@@ -0,0 +1,32 @@
+package se.fastighet.core.diagnostics.slowquery;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * En långsam sats. SQL-texten innehåller aldrig parametervärden; planen fylls i
+ * asynkront av {@link QueryPlanExplainer} när den är klar.
+ */
+@Getter
+@Builder
+public class SlowQuerySample {
+
+    private final long id;
+    private final Instant timestamp;
+    private final long elapsedMillis;
+    private final String sql;
+    private final int parameterCount;
+    private final int batchSize;
+    private final boolean success;
+    private final String caller;
+    private final String traceId;
+
+    @Setter
+    private volatile String plan;
+
+    @Setter
+    private volatile String planError;
+}
@@ -0,0 +1,25 @@
+package se.fastighet.core.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateUploadRequest {
+
+    @NotBlank(message = "Filnamn krävs")
+    @Size(max = 255, message = "Filnamnet får vara högst 255 tecken")
+    private String fileName;
+
+    private String contentType;
+
+    @Positive(message = "Filstorleken måste vara större än 0")
+    private long totalSize;
+}
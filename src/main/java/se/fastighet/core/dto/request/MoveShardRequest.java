@@ -0,0 +1,17 @@
+package se.fastighet.core.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MoveShardRequest {
+
+    @NotBlank(message = "Målshard krävs")
+    private String targetShard;
+}
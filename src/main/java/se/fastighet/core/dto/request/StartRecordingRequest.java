@@ -0,0 +1,29 @@
+package se.fastighet.core.dto.request;
+
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StartRecordingRequest {
+
+    @Pattern(regexp = "default|profile", message = "Inställningen måste vara default eller profile")
+    private String settings;
+
+    /**
+     * Maxlängd för inspelningen. Utan värde pågår den tills den stoppas.
+     */
+    private Duration duration;
+
+    /**
+     * Tröskel för ärendeoperationer; kortare anrop spelas inte in.
+     */
+    private Duration threshold;
+}
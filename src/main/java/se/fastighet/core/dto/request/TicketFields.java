@@ -0,0 +1,118 @@
+package se.fastighet.core.dto.request;
+
+import se.fastighet.core.exception.InvalidRequestException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Vilka delar av ett ärende som ska läsas och skickas, från {@code fields=} och {@code include=}.
+ * <ul>
+ *     <li>Utan någon av dem: allt utom {@code latestComment}, som tidigare.</li>
+ *     <li>{@code fields}: bara de angivna delarna. {@code id} kommer alltid med.</li>
+ *     <li>{@code include}: de angivna delarna utöver standardurvalet, eller utöver {@code fields}.</li>
+ * </ul>
+ * Delar som inte efterfrågas läses inte heller från databasen. Se docs/performance/sparse-fieldsets.md.
+ */
+public record TicketFields(Set<Field> fields) {
+
+    /**
+     * Namnet är JSON-egenskapen i {@link se.fastighet.core.dto.response.TicketResponse}.
+     * {@code association} är relationen på {@code Ticket} som måste läsas för delen.
+     */
+    public enum Field {
+        TITLE("title", null),
+        DESCRIPTION("description", null),
+        CATEGORY("category", "category"),
+        STATUS("status", null),
+        PRIORITY("priority", null),
+        REPORTER("reporter", "reporter"),
+        ASSIGNEE("assignee", "assignee"),
+        PROPERTY("property", "property"),
+        UNIT("unit", "unit"),
+        COMMENTS("comments", null),
+        LATEST_COMMENT("latestComment", null),
+        ATTACHMENTS("attachments", null),
+        CREATED_AT("createdAt", null),
+        UPDATED_AT("updatedAt", null),
+        RESOLVED_AT("resolvedAt", null);
+
+        private final String jsonName;
+        private final String association;
+
+        Field(String jsonName, String association) {
+            this.jsonName = jsonName;
+            this.association = association;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        static Field parse(String name) {
+            for (Field field : values()) {
+                if (field.jsonName.equalsIgnoreCase(name)) {
+                    return field;
+                }
+            }
+            throw new InvalidRequestException("Okänt fält: " + name + ". Giltiga fält: "
+                    + EnumSet.allOf(Field.class).stream().map(Field::getJsonName).collect(Collectors.joining(", ")));
+        }
+    }
+
+    public static final TicketFields DEFAULT = new TicketFields(EnumSet.complementOf(EnumSet.of(Field.LATEST_COMMENT)));
+
+    public TicketFields {
+        fields = Collections.unmodifiableSet(fields.isEmpty() ? EnumSet.noneOf(Field.class) : EnumSet.copyOf(fields));
+    }
+
+    public static TicketFields parse(Collection<String> fields, Collection<String> include) {
+        if (fields == null && include == null) {
+            return DEFAULT;
+        }
+        EnumSet<Field> selected = fields != null ? EnumSet.noneOf(Field.class) : EnumSet.copyOf(DEFAULT.fields);
+        addAll(selected, fields);
+        addAll(selected, include);
+        return new TicketFields(selected);
+    }
+
+    private static void addAll(EnumSet<Field> selected, Collection<String> names) {
+        if (names == null) {
+            return;
+        }
+        names.stream()
+                .map(String::trim)
+                .filter(name -> !name.isEmpty() && !name.equals("id"))
+                .forEach(name -> selected.add(Field.parse(name)));
+    }
+
+    public boolean has(Field field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * Om JSON-egenskapen ska skrivas. Egenskaper som inte är ett fält, som {@code id}, skrivs alltid.
+     */
+    public boolean includes(String jsonName) {
+        for (Field field : Field.values()) {
+            if (field.jsonName.equals(jsonName)) {
+                return fields.contains(field);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Relationerna som ska hämtas tillsammans med ärendet.
+     */
+    public List<String> associations() {
+        return fields.stream()
+                .filter(field -> field.association != null)
+                .map(field -> field.association)
+                .toList();
+    }
+}
@@ -0,0 +1,24 @@
+package se.fastighet.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecordingResponse {
+
+    private long id;
+    private String name;
+    private String state;
+    private Instant startTime;
+    private Instant stopTime;
+    private Duration duration;
+    private long size;
+}
@@ -0,0 +1,35 @@
+package se.fastighet.core.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import se.fastighet.core.entity.Ticket;
+
+import java.util.UUID;
+
+/**
+ * En rad i lösningstidsrapporten. Bara de dimensioner som rapporten grupperas på är satta.
+ * Tiderna är i dagar och räknas ur histogram, så de avviker högst cirka 9 % från exakta värden.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResolutionReportRow {
+
+    private Integer year;
+    private String month;
+    private UUID propertyId;
+    private String propertyName;
+    private Long categoryId;
+    private String categoryName;
+    private Ticket.Priority priority;
+    private long createdCount;
+    private long resolvedCount;
+    private Double meanDaysToResolve;
+    private Double medianDaysToResolve;
+    private Double p90DaysToResolve;
+}
@@ -0,0 +1,23 @@
+package se.fastighet.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupRebuildResponse {
+
+    private UUID propertyId;
+    private LocalDate from;
+    private LocalDate to;
+    private long tickets;
+    private int rows;
+    private long durationMillis;
+}
@@ -0,0 +1,20 @@
+package se.fastighet.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardAssignmentResponse {
+
+    private UUID propertyId;
+    private String shardId;
+    private String targetShard;
+    private String state;
+}
@@ -0,0 +1,26 @@
+package se.fastighet.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardMoveResponse {
+
+    private UUID propertyId;
+    private String sourceShard;
+    private String targetShard;
+    private String phase;
+    private Map<String, Long> copiedRows; // Kopierade rader per tabell, inklusive deltan
+    private Instant queuedAt;
+    private Instant finishedAt;
+    private String error;
+}
@@ -0,0 +1,27 @@
+package se.fastighet.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowQueryResponse {
+
+    private long id;
+    private Instant timestamp;
+    private long elapsedMillis;
+    private String sql;
+    private int parameterCount;
+    private int batchSize;
+    private boolean success;
+    private String caller;
+    private String traceId;
+    private String plan;
+    private String planError;
+}
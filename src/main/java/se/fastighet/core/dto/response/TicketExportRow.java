@@ -0,0 +1,49 @@
+package se.fastighet.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketSnapshot;
+
+import java.time.LocalDateTime;
+
+/**
+ * En rad i ärendeexporten. Skapas direkt i JPQL-frågan, så att exporten aldrig laddar entiteter.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketExportRow {
+
+    private Long id;
+    private String title;
+    private Ticket.Status status;
+    private Ticket.Priority priority;
+    private String categoryName;
+    private String unitNumber;
+    private String reporterName;
+    private String assigneeName;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime resolvedAt;
+    private long commentCount;
+    private boolean archived;
+    private String description;
+
+    /**
+     * Rad för ett arkiverat ärende, där det mesta ligger i ögonblicksbilden.
+     */
+    public TicketExportRow(Long id, Ticket.Status status, LocalDateTime createdAt, LocalDateTime resolvedAt,
+                           TicketSnapshot snapshot) {
+        this(id, snapshot.getTitle(), status, snapshot.getPriority(), snapshot.getCategoryName(),
+                snapshot.getUnitNumber(),
+                snapshot.getReporter() != null ? snapshot.getReporter().name() : null,
+                snapshot.getAssignee() != null ? snapshot.getAssignee().name() : null,
+                createdAt, snapshot.getUpdatedAt(), resolvedAt,
+                snapshot.getComments() != null ? snapshot.getComments().size() : 0,
+                true, snapshot.getDescription());
+    }
+}
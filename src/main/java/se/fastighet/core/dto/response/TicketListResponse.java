@@ -25,7 +25,7 @@ public class TicketListResponse {
     private String assigneeName;
     private String propertyName;
     private String unitNumber;
-    private int commentCount;
+    private long commentCount;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
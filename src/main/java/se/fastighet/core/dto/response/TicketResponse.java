@@ -1,21 +1,31 @@
 package se.fastighet.core.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import se.fastighet.core.dto.request.TicketFields;
 import se.fastighet.core.entity.Ticket;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Ett ärende. Med {@code fields=}/{@code include=} skrivs bara de efterfrågade delarna
+ * ({@link #fields}, filtret {@value #FIELDS_FILTER} i JsonFilters).
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonFilter(TicketResponse.FIELDS_FILTER)
 public class TicketResponse {
 
+    public static final String FIELDS_FILTER = "ticketFields";
+
     private Long id;
     private String title;
     private String description;
@@ -27,11 +37,15 @@ public class TicketResponse {
     private PropertySummary property;
     private UnitSummary unit;
     private List<CommentResponse> comments;
+    private CommentResponse latestComment; // Bara med fields/include=latestComment
     private List<AttachmentResponse> attachments;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private LocalDateTime resolvedAt;
 
+    @JsonIgnore
+    private TicketFields fields; // null = alla delar
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -94,5 +108,8 @@ public class TicketResponse {
         private String contentType;
         private Long fileSize;
         private LocalDateTime uploadedAt;
+        private String url;
+        private String thumbnailUrl; // null tills förhandsvisningen är klar
+        private String previewUrl;
     }
 }
@@ -0,0 +1,22 @@
+package se.fastighet.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatusResponse {
+
+    private UUID id;
+    private String fileName;
+    private long totalSize;
+    private long committedOffset;
+    private LocalDateTime expiresAt;
+}
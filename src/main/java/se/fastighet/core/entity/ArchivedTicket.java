@@ -0,0 +1,72 @@
+package se.fastighet.core.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Ett löst eller stängt ärende som flyttats ur {@code tickets} av arkiveringen, med
+ * kommentarer och historik i {@link #snapshot}. Id:t är ärendets ursprungliga id, så
+ * uppslagningar per id hittar ärendet även efter arkiveringen. Kolumnerna utanför
+ * snapshoten är de som behörighetskontrollen och shardflytten behöver.
+ */
+@Entity
+@Table(name = "ticket_archive",
+        indexes = @Index(name = "idx_ticket_archive_property_created", columnList = "property_id, created_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedTicket implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Column(name = "property_id", nullable = false)
+    private UUID propertyId;
+
+    @Column(name = "reporter_id", nullable = false)
+    private UUID reporterId;
+
+    @Column(name = "assignee_id")
+    private UUID assigneeId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Ticket.Status status;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(nullable = false)
+    private TicketSnapshot snapshot;
+
+    // Id:t sätts av arkiveringen, så save() ska göra INSERT utan att först läsa raden
+    @Transient
+    @Builder.Default
+    private boolean persisted = false;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,38 @@
+package se.fastighet.core.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Innehållsadresserad fil. Samma innehåll lagras en gång oavsett hur många
+ * bilagor som pekar på det; referenceCount håller reda på antalet bilagor.
+ */
+@Entity
+@Table(name = "attachment_blobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentBlob {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String hash; // SHA-256, hex
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(name = "reference_count", nullable = false)
+    private int referenceCount;
+
+    @Column(name = "last_referenced_at", nullable = false)
+    private LocalDateTime lastReferencedAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,46 @@
+package se.fastighet.core.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Vilken shard en fastighets ärenden ligger på. Finns bara på hemsharden och läses via
+ * {@code ShardDirectory}; entiteten finns för att schemat ska skapas tillsammans med övriga tabeller.
+ */
+@Entity
+@Table(name = "shard_directory")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShardAssignment {
+
+    @Id
+    @Column(name = "property_id")
+    private UUID propertyId;
+
+    @Column(name = "shard_id", nullable = false, length = 64)
+    private String shardId;
+
+    @Column(name = "target_shard", length = 64)
+    private String targetShard; // Satt medan fastigheten flyttas
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private State state;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum State {
+        ACTIVE,     // Läsningar och skrivningar går till shard_id
+        MOVING      // Läsningar går till shard_id, skrivningar avvisas tills flytten är klar
+    }
+}
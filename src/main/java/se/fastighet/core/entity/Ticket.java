@@ -2,6 +2,7 @@ package se.fastighet.core.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -11,7 +12,13 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "tickets")
+// Samma index som V2__query_indexes.sql, utom de partiella som bara finns i migreringen
+@Table(name = "tickets", indexes = {
+        @Index(name = "idx_tickets_reporter_created", columnList = "reporter_id, created_at DESC"),
+        @Index(name = "idx_tickets_property_created", columnList = "property_id, created_at DESC"),
+        @Index(name = "idx_tickets_property_status_created", columnList = "property_id, status, created_at DESC"),
+        @Index(name = "idx_tickets_status_created", columnList = "status, created_at DESC")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -61,15 +68,18 @@ public class Ticket {
 
     @OneToMany(mappedBy = "ticket", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("createdAt ASC")
+    @BatchSize(size = 50) // Flera ärenden, t.ex. en arkiveringsomgång, laddar kommentarerna i en fråga
     @Builder.Default
     private List<TicketComment> comments = new ArrayList<>();
 
     @OneToMany(mappedBy = "ticket", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     @Builder.Default
     private List<TicketAttachment> attachments = new ArrayList<>();
 
     @OneToMany(mappedBy = "ticket", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("changedAt DESC")
+    @BatchSize(size = 50)
     @Builder.Default
     private List<TicketHistory> history = new ArrayList<>();
 
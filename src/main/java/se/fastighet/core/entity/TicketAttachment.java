@@ -7,7 +7,10 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "ticket_attachments")
+@Table(name = "ticket_attachments", indexes = {
+        @Index(name = "idx_ticket_attachments_ticket", columnList = "ticket_id"),
+        @Index(name = "idx_ticket_attachments_content_hash", columnList = "content_hash")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -35,7 +38,22 @@ public class TicketAttachment {
     @Column(name = "file_size")
     private Long fileSize;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // Pekar på AttachmentBlob; null för bilagor från före dedupliceringen
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "preview_status")
+    @Builder.Default
+    private PreviewStatus previewStatus = PreviewStatus.NONE;
+
     @CreationTimestamp
     @Column(name = "uploaded_at", updatable = false)
     private LocalDateTime uploadedAt;
+
+    public enum PreviewStatus {
+        NONE,       // Inte en bild, ingen förhandsvisning
+        PENDING,    // Väntar på att genereras
+        READY,      // Miniatyr och förhandsvisning finns
+        FAILED      // Kunde inte genereras
+    }
 }
@@ -8,7 +8,7 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "ticket_comments")
+@Table(name = "ticket_comments", indexes = @Index(name = "idx_ticket_comments_ticket_created", columnList = "ticket_id, created_at"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -7,7 +7,7 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "ticket_history")
+@Table(name = "ticket_history", indexes = @Index(name = "idx_ticket_history_ticket_changed", columnList = "ticket_id, changed_at DESC"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -51,6 +51,7 @@ public class TicketHistory {
         ASSIGNED,
         UNASSIGNED,
         COMMENT_ADDED,
-        ATTACHMENT_ADDED
+        ATTACHMENT_ADDED,
+        ATTACHMENT_REMOVED
     }
 }
@@ -0,0 +1,28 @@
+package se.fastighet.core.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Vilken fastighet ett ärende tillhör, så att ett ärende-id kan routas utan att fråga
+ * varje shard. Finns bara på hemsharden. Ett ärende byter aldrig fastighet, så raden ändras
+ * inte när fastigheten flyttas.
+ */
+@Entity
+@Table(name = "ticket_directory")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TicketLocation {
+
+    @Id
+    @Column(name = "ticket_id")
+    private Long ticketId;
+
+    @Column(name = "property_id", nullable = false)
+    private UUID propertyId;
+}
@@ -0,0 +1,86 @@
+package se.fastighet.core.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Förberäknade ärendesiffror per dag, fastighet, kategori och prioritet. Skapade ärenden
+ * räknas på skapandedagen och lösta på lösningsdagen. Lösningstiderna sparas som summa och
+ * som histogram ({@code ResolutionHistogram}), så att rader kan slås ihop till valfri period
+ * och median och percentiler ändå kan räknas fram. Se docs/performance/reporting-rollups.md.
+ * <p>
+ * Id:t härleds ur nyckeln ({@link #idFor}), så samma dag och kombination får samma id på alla
+ * instanser och shards.
+ */
+@Entity
+@Table(name = "ticket_rollups",
+        indexes = @Index(name = "idx_ticket_rollups_property_day", columnList = "property_id, day"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TicketRollup implements Persistable<UUID> {
+
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(name = "property_id", nullable = false)
+    private UUID propertyId;
+
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Ticket.Priority priority;
+
+    @Column(name = "created_count", nullable = false)
+    private long createdCount;
+
+    @Column(name = "resolved_count", nullable = false)
+    private long resolvedCount;
+
+    // Summan av lösningstiderna i minuter, för medelvärdet
+    @Column(name = "resolution_minutes", nullable = false)
+    private long resolutionMinutes;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "resolution_histogram", nullable = false)
+    private long[] resolutionHistogram;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Id:t sätts från nyckeln, så save() ska göra INSERT utan att först läsa raden
+    @Transient
+    @Builder.Default
+    private boolean persisted = false;
+
+    public static UUID idFor(LocalDate day, UUID propertyId, Long categoryId, Ticket.Priority priority) {
+        String key = day + "|" + propertyId + "|" + categoryId + "|" + priority;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,48 @@
+package se.fastighet.core.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Innehållet i ett arkiverat ärende, lagrat som JSON i {@link ArchivedTicket}. Namn och
+ * adresser är de som gällde när ärendet arkiverades.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketSnapshot {
+
+    private String title;
+    private String description;
+    private Ticket.Priority priority;
+    private Long categoryId;
+    private String categoryName;
+    private String categoryIcon;
+    private Person reporter;
+    private Person assignee;
+    private String propertyName;
+    private String propertyAddress;
+    private UUID unitId;
+    private String unitNumber;
+    private Integer unitFloor;
+    private LocalDateTime updatedAt;
+    private List<Comment> comments;
+    private List<HistoryEntry> history;
+
+    public record Person(UUID id, String name, String email) {
+    }
+
+    public record Comment(Long id, Person author, String content, boolean internal, LocalDateTime createdAt) {
+    }
+
+    public record HistoryEntry(Long id, Person changedBy, TicketHistory.ChangeType changeType, String oldValue,
+                               String newValue, String description, LocalDateTime changedAt) {
+    }
+}
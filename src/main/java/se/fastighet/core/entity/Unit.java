@@ -2,6 +2,8 @@ package se.fastighet.core.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
@@ -10,12 +12,13 @@ import java.util.Set;
 import java.util.UUID;
 
 @Entity
-@Table(name = "units")
+@Table(name = "units", indexes = @Index(name = "idx_units_property_number", columnList = "property_id, unit_number"))
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "unit")
 public class Unit {
 
     @Id
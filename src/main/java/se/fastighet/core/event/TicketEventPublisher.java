@@ -2,28 +2,51 @@ package se.fastighet.core.event;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Service;
+import se.fastighet.core.diagnostics.jfr.TicketEventPublishEvent;
 import se.fastighet.core.entity.Ticket;
 import se.fastighet.core.entity.TicketComment;
 import se.fastighet.core.entity.User;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class TicketEventPublisher {
 
     private final JmsTemplate jmsTemplate;
     private final ObjectMapper objectMapper;
+    private final Semaphore sendPermits;
+    private final Duration sendPermitTimeout;
+    private final MeterRegistry meterRegistry;
 
     @Value("${jms.queue.ticket-events}")
     private String ticketEventsQueue;
 
+    public TicketEventPublisher(
+            JmsTemplate jmsTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${jms.publisher.max-concurrent-sends:16}") int maxConcurrentSends,
+            @Value("${jms.publisher.permit-timeout:PT5S}") Duration sendPermitTimeout) {
+        this.jmsTemplate = jmsTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        // Med virtuella trådar finns ingen trådpool som begränsar antalet samtidiga sändningar,
+        // så utan gräns skulle varje request öppna en egen JMS-session mot brokern
+        this.sendPermits = new Semaphore(maxConcurrentSends, true);
+        this.sendPermitTimeout = sendPermitTimeout;
+    }
+
     public void publishTicketCreated(Ticket ticket) {
         TicketEvent event = TicketEvent.builder()
                 .eventType(TicketEvent.EventType.TICKET_CREATED)
@@ -141,12 +164,55 @@ public class TicketEventPublisher {
     }
 
     private void sendEvent(TicketEvent event) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        TicketEventPublishEvent jfrEvent = new TicketEventPublishEvent();
+        jfrEvent.begin();
+        String outcome = "failure";
+        String json = null;
         try {
-            String json = objectMapper.writeValueAsString(event);
-            jmsTemplate.convertAndSend(ticketEventsQueue, json);
+            json = doSend(event);
+            outcome = "success";
+        } finally {
+            jfrEvent.end();
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.eventType = event.getEventType().name();
+                jfrEvent.ticketId = event.getTicketId() != null ? event.getTicketId() : 0;
+                jfrEvent.payloadBytes = json != null ? json.getBytes(StandardCharsets.UTF_8).length : 0;
+                jfrEvent.success = json != null;
+                jfrEvent.commit();
+            }
+            sample.stop(Timer.builder("tickets.events.publish")
+                    .description("Tid för att publicera en ärendehändelse, inklusive väntan på sändplats")
+                    .tag("type", event.getEventType().name())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private String doSend(TicketEvent event) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize ticket event", e);
             throw new RuntimeException("Failed to publish ticket event", e);
         }
+
+        try {
+            if (!sendPermits.tryAcquire(sendPermitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Timed out waiting to publish ticket event");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while publishing ticket event", e);
+        }
+
+        try {
+            jmsTemplate.convertAndSend(ticketEventsQueue, json);
+        } finally {
+            sendPermits.release();
+        }
+        return json;
     }
 }
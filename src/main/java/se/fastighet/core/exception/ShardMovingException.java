@@ -0,0 +1,23 @@
+package se.fastighet.core.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+/**
+ * Fastigheten flyttas mellan shards och tar tillfälligt inte emot skrivningar.
+ * Klienten kan försöka igen efter {@link #getRetryAfter()}.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+@Getter
+public class ShardMovingException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ShardMovingException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,21 @@
+package se.fastighet.core.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Klienten skickade en del från fel position. Svaret innehåller den offset
+ * servern har bekräftat så att klienten kan fortsätta därifrån.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+@Getter
+public class UploadOffsetConflictException extends RuntimeException {
+
+    private final long committedOffset;
+
+    public UploadOffsetConflictException(String message, long committedOffset) {
+        super(message);
+        this.committedOffset = committedOffset;
+    }
+}
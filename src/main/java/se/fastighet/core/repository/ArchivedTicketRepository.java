@@ -0,0 +1,44 @@
+package se.fastighet.core.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import se.fastighet.core.dto.response.TicketExportRow;
+import se.fastighet.core.entity.ArchivedTicket;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Repository
+public interface ArchivedTicketRepository extends JpaRepository<ArchivedTicket, Long> {
+
+    // Export: samma ordning som TicketRepository.streamForExport, så att de kan flätas ihop
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new se.fastighet.core.dto.response.TicketExportRow(a.id, a.status, a.createdAt, a.resolvedAt, " +
+           "a.snapshot) FROM ArchivedTicket a " +
+           "WHERE a.propertyId = :propertyId AND a.createdAt >= :from AND a.createdAt < :to " +
+           "ORDER BY a.createdAt, a.id")
+    Stream<TicketExportRow> streamForExport(@Param("propertyId") UUID propertyId,
+                                            @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to);
+
+    // Omräkning av rollupparna; prioritet och kategori ligger i ögonblicksbilden
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a.createdAt, a.resolvedAt, a.status, a.snapshot FROM ArchivedTicket a " +
+           "WHERE a.propertyId = :propertyId AND ((a.createdAt >= :from AND a.createdAt < :to) " +
+           "OR (a.resolvedAt >= :from AND a.resolvedAt < :to))")
+    Stream<Object[]> streamForRollup(@Param("propertyId") UUID propertyId,
+                                     @Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to);
+}
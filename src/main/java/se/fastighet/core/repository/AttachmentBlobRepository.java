@@ -0,0 +1,41 @@
+package se.fastighet.core.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import se.fastighet.core.entity.AttachmentBlob;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, String> {
+
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.lastReferencedAt = :now WHERE b.hash = :hash")
+    int touch(@Param("hash") String hash, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.referenceCount = b.referenceCount + 1, b.lastReferencedAt = :now " +
+           "WHERE b.hash = :hash")
+    int incrementReferences(@Param("hash") String hash, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE AttachmentBlob b SET b.referenceCount = b.referenceCount - 1, b.lastReferencedAt = :now " +
+           "WHERE b.hash = :hash AND b.referenceCount > 0")
+    int decrementReferences(@Param("hash") String hash, @Param("now") LocalDateTime now);
+
+    // Kandidater för skräpsamling: oreferade och inte rörda under karenstiden
+    @Query("SELECT b.hash FROM AttachmentBlob b WHERE b.referenceCount = 0 AND b.lastReferencedAt < :threshold")
+    List<String> findUnreferencedBefore(@Param("threshold") LocalDateTime threshold, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM AttachmentBlob b WHERE b.hash = :hash")
+    Optional<AttachmentBlob> findByHashForUpdate(@Param("hash") String hash);
+}
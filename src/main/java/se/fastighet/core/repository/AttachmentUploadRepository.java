@@ -0,0 +1,37 @@
+package se.fastighet.core.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import se.fastighet.core.entity.AttachmentUpload;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface AttachmentUploadRepository extends JpaRepository<AttachmentUpload, UUID> {
+
+    Optional<AttachmentUpload> findByIdAndTicketId(UUID id, Long ticketId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM AttachmentUpload u WHERE u.id = :id AND u.ticket.id = :ticketId")
+    Optional<AttachmentUpload> findByIdAndTicketIdForUpdate(@Param("id") UUID id, @Param("ticketId") Long ticketId);
+
+    List<AttachmentUpload> findByExpiresAtBefore(LocalDateTime threshold);
+
+    // Flyttar fram offset endast om ingen annan hunnit före
+    @Transactional
+    @Modifying
+    @Query("UPDATE AttachmentUpload u SET u.committedOffset = :newOffset " +
+           "WHERE u.id = :id AND u.committedOffset = :expectedOffset")
+    int advanceOffset(@Param("id") UUID id,
+                      @Param("expectedOffset") long expectedOffset,
+                      @Param("newOffset") long newOffset);
+}
@@ -0,0 +1,34 @@
+package se.fastighet.core.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import se.fastighet.core.entity.TicketAttachment;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TicketAttachmentRepository extends JpaRepository<TicketAttachment, Long> {
+
+    Optional<TicketAttachment> findByIdAndTicketId(Long id, Long ticketId);
+
+    long countByContentHash(String contentHash);
+
+    @Query("SELECT DISTINCT a.contentHash FROM TicketAttachment a WHERE a.previewStatus = :status AND a.contentHash IS NOT NULL")
+    List<String> findContentHashesByPreviewStatus(@Param("status") TicketAttachment.PreviewStatus status,
+                                                  Pageable pageable);
+
+    // Förhandsvisningar delas av alla bilagor med samma innehåll
+    @Transactional
+    @Modifying
+    @Query("UPDATE TicketAttachment a SET a.previewStatus = :newStatus " +
+           "WHERE a.contentHash = :contentHash AND a.previewStatus = :currentStatus")
+    int updatePreviewStatus(@Param("contentHash") String contentHash,
+                            @Param("currentStatus") TicketAttachment.PreviewStatus currentStatus,
+                            @Param("newStatus") TicketAttachment.PreviewStatus newStatus);
+}
@@ -0,0 +1,20 @@
+package se.fastighet.core.repository;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import se.fastighet.core.entity.TicketComment;
+
+import java.util.Optional;
+
+@Repository
+public interface TicketCommentRepository extends JpaRepository<TicketComment, Long> {
+
+    // Senaste kommentaren utan att läsa alla, via idx_ticket_comments_ticket_created
+    @EntityGraph(attributePaths = {"author"})
+    Optional<TicketComment> findFirstByTicketIdOrderByCreatedAtDescIdDesc(Long ticketId);
+
+    // Samma för boende, som inte ser interna kommentarer
+    @EntityGraph(attributePaths = {"author"})
+    Optional<TicketComment> findFirstByTicketIdAndInternalFalseOrderByCreatedAtDescIdDesc(Long ticketId);
+}
@@ -1,35 +1,65 @@
 package se.fastighet.core.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import se.fastighet.core.dto.response.TicketExportRow;
+import se.fastighet.core.dto.response.TicketListResponse;
 import se.fastighet.core.entity.Property;
 import se.fastighet.core.entity.Ticket;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface TicketRepository extends JpaRepository<Ticket, Long>, JpaSpecificationExecutor<Ticket> {
 
+    // Hitta ärende med relationerna som detaljvyn behöver
+    @EntityGraph(attributePaths = {"category", "reporter", "assignee", "property", "unit"})
+    @Query("SELECT t FROM Ticket t WHERE t.id = :id")
+    Optional<Ticket> findWithDetailsById(@Param("id") Long id);
+
+    // Listvyerna: en rad per ärende med antalet kommentarer som delfråga, utan att kommentarerna läses
+    String LIST_SELECT = "SELECT new se.fastighet.core.dto.response.TicketListResponse(t.id, t.title, " +
+            "c.name, c.icon, t.status, t.priority, r.name, a.name, p.name, u.unitNumber, " +
+            "(SELECT COUNT(cm) FROM TicketComment cm WHERE cm.ticket = t), t.createdAt, t.updatedAt) " +
+            "FROM Ticket t JOIN t.reporter r JOIN t.property p " +
+            "LEFT JOIN t.category c LEFT JOIN t.assignee a LEFT JOIN t.unit u ";
+
     // Hitta ärenden för en specifik rapportör
-    Page<Ticket> findByReporterId(UUID reporterId, Pageable pageable);
+    @Query(value = LIST_SELECT + "WHERE t.reporter.id = :reporterId",
+           countQuery = "SELECT COUNT(t) FROM Ticket t WHERE t.reporter.id = :reporterId")
+    Page<TicketListResponse> findListByReporterId(@Param("reporterId") UUID reporterId, Pageable pageable);
 
     // Hitta ärenden tilldelade en specifik tekniker
-    Page<Ticket> findByAssigneeId(UUID assigneeId, Pageable pageable);
+    @Query(value = LIST_SELECT + "WHERE t.assignee.id = :assigneeId",
+           countQuery = "SELECT COUNT(t) FROM Ticket t WHERE t.assignee.id = :assigneeId")
+    Page<TicketListResponse> findListByAssigneeId(@Param("assigneeId") UUID assigneeId, Pageable pageable);
 
     // Hitta ärenden för en fastighet
-    Page<Ticket> findByPropertyId(UUID propertyId, Pageable pageable);
+    @Query(value = LIST_SELECT + "WHERE t.property.id = :propertyId",
+           countQuery = "SELECT COUNT(t) FROM Ticket t WHERE t.property.id = :propertyId")
+    Page<TicketListResponse> findListByPropertyId(@Param("propertyId") UUID propertyId, Pageable pageable);
 
     // Hitta ärenden efter status
+    @EntityGraph(attributePaths = {"category", "reporter", "assignee", "property", "unit"})
     Page<Ticket> findByStatus(Ticket.Status status, Pageable pageable);
 
     // Hitta ärenden för en fastighet med specifik status
+    @EntityGraph(attributePaths = {"category", "reporter", "assignee", "property", "unit"})
     Page<Ticket> findByPropertyIdAndStatus(UUID propertyId, Ticket.Status status, Pageable pageable);
 
     // Hitta ej tilldelade ärenden
@@ -40,6 +70,14 @@ public interface TicketRepository extends JpaRepository<Ticket, Long>, JpaSpecif
     @Query("SELECT t FROM Ticket t WHERE t.status NOT IN ('RESOLVED', 'CLOSED') AND t.createdAt < :threshold")
     List<Ticket> findOldUnresolvedTickets(@Param("threshold") LocalDateTime threshold);
 
+    // Statistik: Antal öppna ärenden per prioritet, för mätvärden
+    @Query("SELECT t.priority, COUNT(t) FROM Ticket t WHERE t.status NOT IN ('RESOLVED', 'CLOSED') GROUP BY t.priority")
+    List<Object[]> countOpenByPriority();
+
+    // Statistik: Antal ärenden per status, för mätvärden
+    @Query("SELECT t.status, COUNT(t) FROM Ticket t GROUP BY t.status")
+    List<Object[]> countByStatus();
+
     // Statistik: Antal ärenden per status för en fastighet
     @Query("SELECT t.status, COUNT(t) FROM Ticket t WHERE t.property.id = :propertyId GROUP BY t.status")
     List<Object[]> countByStatusForProperty(@Param("propertyId") UUID propertyId);
@@ -58,4 +96,56 @@ public interface TicketRepository extends JpaRepository<Ticket, Long>, JpaSpecif
 
     @Query("SELECT DISTINCT t.property FROM Ticket t WHERE t.assignee.id = :assigneeId")
     List<Property> findDistinctPropertiesByAssigneeId(@Param("assigneeId") UUID assigneeId);
+
+    // Export: en rad per ärende i skapad-ordning, läst med markör och utan entiteter
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new se.fastighet.core.dto.response.TicketExportRow(t.id, t.title, t.status, t.priority, " +
+           "c.name, u.unitNumber, r.name, a.name, t.createdAt, t.updatedAt, t.resolvedAt, " +
+           "(SELECT COUNT(cm) FROM TicketComment cm WHERE cm.ticket = t), FALSE, t.description) " +
+           "FROM Ticket t JOIN t.reporter r LEFT JOIN t.category c LEFT JOIN t.unit u LEFT JOIN t.assignee a " +
+           "WHERE t.property.id = :propertyId AND t.createdAt >= :from AND t.createdAt < :to " +
+           "ORDER BY t.createdAt, t.id")
+    Stream<TicketExportRow> streamForExport(@Param("propertyId") UUID propertyId,
+                                            @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to);
+
+    // Omräkning av rollupparna: ärenden som skapats eller lösts i perioden
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t.createdAt, t.resolvedAt, t.status, t.priority, c.id FROM Ticket t LEFT JOIN t.category c " +
+           "WHERE t.property.id = :propertyId AND ((t.createdAt >= :from AND t.createdAt < :to) " +
+           "OR (t.resolvedAt >= :from AND t.resolvedAt < :to))")
+    Stream<Object[]> streamForRollup(@Param("propertyId") UUID propertyId,
+                                     @Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to);
+
+    // Arkivering: lösta och stängda ärenden utan bilagor eller pågående uppladdningar. Raderna
+    // låses till omgångens commit. FOR UPDATE krockar även med nyckellåset som en ny kommentar,
+    // bilaga eller historikrad tar på ärendet, så sådana ärenden hoppas över till nästa körning.
+    @Query(value = "SELECT t.id FROM tickets t WHERE t.status IN ('RESOLVED', 'CLOSED') " +
+           "AND COALESCE(t.resolved_at, t.updated_at) < :threshold " +
+           "AND NOT EXISTS (SELECT 1 FROM ticket_attachments a WHERE a.ticket_id = t.id) " +
+           "AND NOT EXISTS (SELECT 1 FROM attachment_uploads u WHERE u.ticket_id = t.id) " +
+           "ORDER BY t.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockArchivableIds(@Param("threshold") LocalDateTime threshold, @Param("limit") int limit);
+
+    @EntityGraph(attributePaths = {"category", "reporter", "assignee", "property", "unit"})
+    List<Ticket> findByIdIn(Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM TicketComment c WHERE c.ticket.id IN :ticketIds")
+    int deleteCommentsByTicketIds(@Param("ticketIds") Collection<Long> ticketIds);
+
+    @Modifying
+    @Query("DELETE FROM TicketHistory h WHERE h.ticket.id IN :ticketIds")
+    int deleteHistoryByTicketIds(@Param("ticketIds") Collection<Long> ticketIds);
+
+    @Modifying
+    @Query("DELETE FROM Ticket t WHERE t.id IN :ids")
+    int deleteAllByIds(@Param("ids") Collection<Long> ids);
 }
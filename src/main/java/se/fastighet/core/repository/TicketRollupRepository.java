@@ -0,0 +1,37 @@
+package se.fastighet.core.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import se.fastighet.core.entity.TicketRollup;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TicketRollupRepository extends JpaRepository<TicketRollup, UUID> {
+
+    // Raderna låses i id-ordning, så att två instanser som skriver samma rader inte låser varandra
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM TicketRollup r WHERE r.id IN :ids ORDER BY r.id")
+    List<TicketRollup> findAllForUpdate(@Param("ids") Collection<UUID> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM TicketRollup r WHERE r.propertyId = :propertyId AND r.day BETWEEN :from AND :to " +
+           "ORDER BY r.id")
+    List<TicketRollup> findForRebuild(@Param("propertyId") UUID propertyId,
+                                      @Param("from") LocalDate from,
+                                      @Param("to") LocalDate to);
+
+    // Rapporter: tomma rader (efter en omräkning) behövs inte
+    @Query("SELECT r FROM TicketRollup r WHERE r.propertyId IN :propertyIds AND r.day BETWEEN :from AND :to " +
+           "AND (r.createdCount <> 0 OR r.resolvedCount <> 0)")
+    List<TicketRollup> findForReport(@Param("propertyIds") Collection<UUID> propertyIds,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to);
+}
@@ -1,6 +1,9 @@
 package se.fastighet.core.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import se.fastighet.core.entity.Unit;
 
@@ -10,6 +13,7 @@ import java.util.UUID;
 @Repository
 public interface UnitRepository extends JpaRepository<Unit, UUID> {
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Unit> findByPropertyId(UUID propertyId);
 
     java.util.Optional<Unit> findByPropertyIdAndUnitNumber(UUID propertyId, String unitNumber);
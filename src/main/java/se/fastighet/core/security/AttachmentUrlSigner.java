@@ -0,0 +1,99 @@
+package se.fastighet.core.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Skapar och verifierar kortlivade, HMAC-signerade länkar till bilagor.
+ * <p>
+ * Länken pekar på innehållsadressen (hash) och bär med sig allt som behövs för att
+ * servera filen, så verifieringen kräver varken databas eller inloggning. Utgångstiden
+ * avrundas uppåt till hela intervall så att samma bilaga får samma länk under ett
+ * intervall och kan cachas av en proxy.
+ */
+@Component
+public class AttachmentUrlSigner {
+
+    public static final String PATH_PREFIX = "/api/files/";
+    public static final String ORIGINAL = "original";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Mac prototype;
+    private final long ttlSeconds;
+    private final long bucketSeconds;
+    private final Clock clock;
+
+    public AttachmentUrlSigner(
+            @Value("${attachments.signing.secret}") String secret,
+            @Value("${attachments.signing.ttl:PT15M}") Duration ttl,
+            @Value("${attachments.signing.bucket:PT5M}") Duration bucket) {
+        this(secret, ttl, bucket, Clock.systemUTC());
+    }
+
+    AttachmentUrlSigner(String secret, Duration ttl, Duration bucket, Clock clock) {
+        try {
+            this.prototype = Mac.getInstance(ALGORITHM);
+            this.prototype.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize attachment URL signer", e);
+        }
+        this.ttlSeconds = ttl.toSeconds();
+        this.bucketSeconds = Math.max(1, bucket.toSeconds());
+        this.clock = clock;
+    }
+
+    public String sign(String hash, String variant, String contentType, String fileName) {
+        long now = clock.instant().getEpochSecond();
+        long expires = ((now + ttlSeconds + bucketSeconds - 1) / bucketSeconds) * bucketSeconds;
+
+        // URLEncoder kodar även '+', annars blir t.ex. image/svg+xml ett mellanslag på serversidan
+        return PATH_PREFIX + hash + "/" + variant
+                + "?exp=" + expires
+                + "&type=" + encode(contentType != null ? contentType : "")
+                + "&name=" + encode(fileName)
+                + "&sig=" + signature(hash, variant, expires, contentType, fileName);
+    }
+
+    /**
+     * Kontrollerar endast signatur och utgångstid.
+     */
+    public boolean verify(String hash, String variant, long expires, String contentType, String fileName,
+                          String signature) {
+        if (signature == null || expires < clock.instant().getEpochSecond()) {
+            return false;
+        }
+        byte[] expected = signature(hash, variant, expires, contentType, fileName).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public long secondsUntil(long expires) {
+        return Math.max(0, expires - clock.instant().getEpochSecond());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private String signature(String hash, String variant, long expires, String contentType, String fileName) {
+        String payload = hash + "\n" + variant + "\n" + expires + "\n"
+                + (contentType != null ? contentType : "") + "\n" + fileName;
+        try {
+            Mac mac = (Mac) prototype.clone();
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HMAC implementation cannot be cloned", e);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package se.fastighet.core.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -29,6 +31,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -43,9 +46,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         String token = authHeader.substring(7);
+        Timer.Sample sample = Timer.start(meterRegistry);
 
         if (!jwtService.isTokenValid(token)) {
             log.debug("Invalid JWT token");
+            record(sample, "invalid_token");
             sendUnauthorizedResponse(response, "Ogiltig eller utgången token");
             return;
         }
@@ -56,6 +61,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             User user = userRepository.findById(userId).orElse(null);
             if (user == null) {
                 log.warn("User not found for JWT token, userId: {}", userId);
+                record(sample, "user_not_found");
                 sendUnauthorizedResponse(response, "Användare hittades inte");
                 return;
             }
@@ -74,13 +80,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         } catch (Exception e) {
             log.warn("JWT authentication failed: {}", e.getMessage());
+            record(sample, "error");
             sendUnauthorizedResponse(response, "Ogiltig eller utgången token");
             return;
         }
 
+        // Mäter bara autentiseringen, inte resten av requesten
+        record(sample, "authenticated");
         filterChain.doFilter(request, response);
     }
 
+    private void record(Timer.Sample sample, String outcome) {
+        sample.stop(Timer.builder("auth.jwt.filter")
+                .description("Tid för JWT-validering och användaruppslagning")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
     private void sendUnauthorizedResponse(HttpServletResponse response, String message) throws IOException {
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
         response.setContentType(MediaType.APPLICATION_JSON_VALUE);
@@ -96,6 +113,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return path.startsWith("/api/health") ||
                path.startsWith("/api/auth/login") ||
                path.startsWith("/api/auth/token") ||
+               path.startsWith("/api/files/") ||
                path.startsWith("/auth/login") ||
                path.startsWith("/auth/token") ||
                path.startsWith("/h2-console") ||
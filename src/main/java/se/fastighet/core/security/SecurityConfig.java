@@ -1,6 +1,8 @@
 package se.fastighet.core.security;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -37,9 +39,15 @@ public class SecurityConfig {
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Asynkrona svar (exporten) skickas tillbaka efter att requesten redan godkänts,
+                        // och JWT-filtret körs inte igen för den dispatchen
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Publika endpoints
                         .requestMatchers("/api/health").permitAll()
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).permitAll() // Egen port, exponeras bara internt
                         .requestMatchers("/api/auth/**").permitAll()
+                        .requestMatchers("/api/files/**").permitAll() // Signerade länkar, verifieras i SignedFileController
                         .requestMatchers("/auth/**").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/api-docs/**", "/swagger-ui.html").permitAll()
@@ -4,49 +4,64 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import se.fastighet.core.entity.Ticket;
 import se.fastighet.core.entity.User;
+import se.fastighet.core.repository.ArchivedTicketRepository;
 import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.sharding.ShardKey;
 
 import java.util.UUID;
 
 /**
  * Används för säkerhetskontroller på metodnivå med @PreAuthorize.
  * Exempel: @PreAuthorize("@ticketSecurity.canView(#ticketId)")
+ * <p>
+ * Kontrollerna körs i en egen läsande transaktion, så att ärendet med sharding läses från rätt shard.
  */
 @Component("ticketSecurity")
+@Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class TicketSecurity {
 
     private final TicketRepository ticketRepository;
+    private final ArchivedTicketRepository archivedTicketRepository;
 
     /**
      * Kontrollerar om användaren kan se ärendet.
      * - Admin och styrelsemedlemmar kan se alla ärenden i sina fastigheter
      * - Tekniker kan se ärenden tilldelade till dem
      * - Boende kan bara se sina egna ärenden
+     * Samma regler gäller arkiverade ärenden.
      */
-    public boolean canView(Long ticketId) {
+    public boolean canView(@ShardKey(ShardKey.Type.TICKET) Long ticketId) {
         UserPrincipal principal = getCurrentUser();
         if (principal == null) return false;
 
         User user = principal.getUser();
 
+        Ticket ticket = ticketRepository.findById(ticketId).orElse(null);
+        if (ticket == null) {
+            return archivedTicketRepository.findById(ticketId)
+                    .map(archived -> canView(user, archived.getPropertyId(), archived.getReporterId(),
+                            archived.getAssigneeId()))
+                    .orElse(false);
+        }
+
+        return canView(user, ticket.getProperty().getId(), ticket.getReporter().getId(),
+                ticket.getAssignee() != null ? ticket.getAssignee().getId() : null);
+    }
+
+    private boolean canView(User user, UUID propertyId, UUID reporterId, UUID assigneeId) {
         // Admin kan se ärenden för sina fastigheter
         if (user.getRole() == User.Role.ADMIN) {
-            Ticket ticket = ticketRepository.findById(ticketId).orElse(null);
-            if (ticket == null) return false;
-            return isAdminForProperty(user, ticket.getProperty().getId());
+            return isAdminForProperty(user, propertyId);
         }
 
-        Ticket ticket = ticketRepository.findById(ticketId).orElse(null);
-        if (ticket == null) return false;
-
         return switch (user.getRole()) {
-            case BOARD_MEMBER -> isUserInProperty(user, ticket.getProperty().getId());
-            case TECHNICIAN -> ticket.getAssignee() != null &&
-                    ticket.getAssignee().getId().equals(user.getId());
-            case RESIDENT -> ticket.getReporter().getId().equals(user.getId());
+            case BOARD_MEMBER -> isUserInProperty(user, propertyId);
+            case TECHNICIAN -> user.getId().equals(assigneeId);
+            case RESIDENT -> user.getId().equals(reporterId);
             default -> false;
         };
     }
@@ -54,7 +69,7 @@ public class TicketSecurity {
     /**
      * Kontrollerar om användaren kan uppdatera ärendet.
      */
-    public boolean canUpdate(Long ticketId) {
+    public boolean canUpdate(@ShardKey(ShardKey.Type.TICKET) Long ticketId) {
         UserPrincipal principal = getCurrentUser();
         if (principal == null) return false;
 
@@ -82,7 +97,7 @@ public class TicketSecurity {
     /**
      * Kontrollerar om användaren är tilldelad ärendet.
      */
-    public boolean isAssignedTo(Long ticketId) {
+    public boolean isAssignedTo(@ShardKey(ShardKey.Type.TICKET) Long ticketId) {
         UserPrincipal principal = getCurrentUser();
         if (principal == null) return false;
 
@@ -95,7 +110,7 @@ public class TicketSecurity {
     /**
      * Kontrollerar om användaren kan kommentera på ärendet.
      */
-    public boolean canComment(Long ticketId) {
+    public boolean canComment(@ShardKey(ShardKey.Type.TICKET) Long ticketId) {
         // Samma logik som canView för nu
         return canView(ticketId);
     }
@@ -103,7 +118,7 @@ public class TicketSecurity {
     /**
      * Kontrollerar om användaren kan tilldela ärendet.
      */
-    public boolean canAssign(Long ticketId) {
+    public boolean canAssign(@ShardKey(ShardKey.Type.TICKET) Long ticketId) {
         UserPrincipal principal = getCurrentUser();
         if (principal == null) return false;
 
@@ -125,6 +140,23 @@ public class TicketSecurity {
         return isUserInProperty(user, ticket.getProperty().getId());
     }
 
+    /**
+     * Kontrollerar om användaren kan se alla ärenden i en fastighet, t.ex. för export.
+     * - Admin för fastigheten
+     * - Styrelsemedlemmar som bor i fastigheten
+     */
+    public boolean canViewProperty(UUID propertyId) {
+        UserPrincipal principal = getCurrentUser();
+        if (principal == null) return false;
+
+        User user = principal.getUser();
+        return switch (user.getRole()) {
+            case ADMIN -> isAdminForProperty(user, propertyId);
+            case BOARD_MEMBER -> isUserInProperty(user, propertyId);
+            default -> false;
+        };
+    }
+
     private boolean isUserInProperty(User user, UUID propertyId) {
         return user.getUnits().stream()
                 .anyMatch(unit -> unit.getProperty().getId().equals(propertyId));
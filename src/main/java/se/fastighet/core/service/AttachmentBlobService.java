@@ -0,0 +1,207 @@
+package se.fastighet.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.fastighet.core.entity.AttachmentBlob;
+import se.fastighet.core.repository.AttachmentBlobRepository;
+import se.fastighet.core.repository.TicketAttachmentRepository;
+import se.fastighet.core.sharding.AllShards;
+import se.fastighet.core.sharding.ShardContext;
+import se.fastighet.core.sharding.ShardSet;
+import se.fastighet.core.storage.AttachmentStorage;
+import se.fastighet.core.storage.StoredFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Referensräknar innehållsadresserade filer och städar bort dem som ingen bilaga längre pekar på.
+ * <p>
+ * Blob-raden skapas i en egen transaktion innan filen flyttas på plats, och räknaren ökas
+ * i anroparens transaktion. Rullas anroparen tillbaka ligger raden kvar med räknare 0 och
+ * samlas upp efter karenstiden. Skräpsamlingen låser raden och tar bort filen innan raden
+ * tas bort, så en samtidig uppladdning av samma innehåll väntar in den och lägger tillbaka filen.
+ * <p>
+ * Med sharding har varje shard egna blob-rader men filerna delas. En fil tas bara bort om
+ * ingen annan shard har en rad för innehållet.
+ */
+@Service
+@Slf4j
+public class AttachmentBlobService {
+
+    private final AttachmentBlobRepository blobRepository;
+    private final TicketAttachmentRepository attachmentRepository;
+    private final AttachmentStorage attachmentStorage;
+    private final TransactionTemplate newTransaction;
+    private final ObjectProvider<ShardSet> shardSet;
+    private final Duration gracePeriod;
+    private final int batchSize;
+
+    public AttachmentBlobService(
+            AttachmentBlobRepository blobRepository,
+            TicketAttachmentRepository attachmentRepository,
+            AttachmentStorage attachmentStorage,
+            PlatformTransactionManager transactionManager,
+            ObjectProvider<ShardSet> shardSet,
+            @Value("${attachments.gc.grace-period:PT1H}") Duration gracePeriod,
+            @Value("${attachments.gc.batch-size:100}") int batchSize) {
+        this.blobRepository = blobRepository;
+        this.attachmentRepository = attachmentRepository;
+        this.attachmentStorage = attachmentStorage;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.shardSet = shardSet;
+        this.gracePeriod = gracePeriod;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Lagrar innehållet och tar en referens till det i den pågående transaktionen.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public StoredFile store(InputStream content) throws IOException {
+        return storeTempBlob(attachmentStorage.writeTemp(content), true);
+    }
+
+    /**
+     * Som {@link #store(InputStream)} men för en fil som redan ligger på disk. Filen flyttas
+     * till sin innehållsadress; vid fel ligger den kvar så att anroparen kan försöka igen.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public StoredFile storeFile(Path file) throws IOException {
+        return storeTempBlob(attachmentStorage.hashFile(file), false);
+    }
+
+    private StoredFile storeTempBlob(AttachmentStorage.TempBlob tempBlob, boolean discardOnFailure) throws IOException {
+        boolean stored = false;
+        try {
+            boolean existed = ensureBlobRow(tempBlob.hash(), tempBlob.size());
+            String relativePath = attachmentStorage.placeBlob(tempBlob);
+            stored = true;
+
+            if (blobRepository.incrementReferences(tempBlob.hash(), LocalDateTime.now()) != 1) {
+                throw new IllegalStateException("Blob row disappeared for " + tempBlob.hash());
+            }
+
+            if (existed) {
+                log.debug("Deduplicated upload of {} ({} bytes)", tempBlob.hash(), tempBlob.size());
+            }
+            return new StoredFile(relativePath, tempBlob.size(), tempBlob.hash(), existed);
+        } finally {
+            if (!stored && discardOnFailure) {
+                Files.deleteIfExists(tempBlob.file());
+            }
+        }
+    }
+
+    /**
+     * Släpper en referens i den pågående transaktionen. Filen tas bort av skräpsamlingen.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String hash) {
+        if (blobRepository.decrementReferences(hash, LocalDateTime.now()) == 0) {
+            log.warn("Released blob {} without outstanding references", hash);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${attachments.gc.interval:PT10M}",
+            initialDelayString = "${attachments.gc.interval:PT10M}")
+    @AllShards
+    public void collectGarbage() {
+        LocalDateTime threshold = LocalDateTime.now().minus(gracePeriod);
+        List<String> candidates = blobRepository.findUnreferencedBefore(threshold, PageRequest.of(0, batchSize));
+
+        int removed = 0;
+        for (String hash : candidates) {
+            if (collect(hash, threshold)) {
+                removed++;
+            }
+        }
+
+        int staleTempFiles = attachmentStorage.deleteStaleTempFiles(Instant.now().minus(gracePeriod));
+
+        if (removed > 0 || staleTempFiles > 0) {
+            log.info("Attachment GC removed {} blobs and {} stale temp files", removed, staleTempFiles);
+        }
+    }
+
+    private boolean ensureBlobRow(String hash, long size) {
+        try {
+            return Boolean.TRUE.equals(newTransaction.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                if (blobRepository.touch(hash, now) > 0) {
+                    return true;
+                }
+                blobRepository.saveAndFlush(AttachmentBlob.builder()
+                        .hash(hash)
+                        .size(size)
+                        .referenceCount(0)
+                        .lastReferencedAt(now)
+                        .build());
+                return false;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // En samtidig uppladdning av samma innehåll skapade raden först
+            newTransaction.executeWithoutResult(status -> blobRepository.touch(hash, LocalDateTime.now()));
+            return true;
+        }
+    }
+
+    private boolean collect(String hash, LocalDateTime threshold) {
+        return Boolean.TRUE.equals(newTransaction.execute(status -> {
+            AttachmentBlob blob = blobRepository.findByHashForUpdate(hash).orElse(null);
+            if (blob == null || blob.getReferenceCount() > 0 || !blob.getLastReferencedAt().isBefore(threshold)) {
+                return false;
+            }
+
+            long references = attachmentRepository.countByContentHash(hash);
+            if (references > 0) {
+                log.warn("Repairing reference count for blob {}: 0 -> {}", hash, references);
+                blob.setReferenceCount((int) references);
+                return false;
+            }
+
+            if (!existsOnOtherShard(hash)) {
+                attachmentStorage.deleteBlob(hash);
+            }
+            blobRepository.delete(blob);
+            return true;
+        }));
+    }
+
+    private boolean existsOnOtherShard(String hash) {
+        ShardSet shards = shardSet.getIfAvailable();
+        if (shards == null) {
+            return false;
+        }
+        String current = ShardContext.current() != null ? ShardContext.current() : shards.home();
+        for (String shardId : shards.ids()) {
+            if (shardId.equals(current)) {
+                continue;
+            }
+            Long rows = new JdbcTemplate(shards.dataSource(shardId)).queryForObject(
+                    "SELECT COUNT(*) FROM attachment_blobs WHERE content_hash = ?", Long.class, hash);
+            if (rows != null && rows > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,174 @@
+package se.fastighet.core.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import se.fastighet.core.entity.TicketAttachment;
+import se.fastighet.core.repository.TicketAttachmentRepository;
+import se.fastighet.core.sharding.AllShards;
+import se.fastighet.core.sharding.ShardContext;
+import se.fastighet.core.storage.AttachmentStorage;
+import se.fastighet.core.storage.ThumbnailGenerator;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Genererar förhandsvisningar av bildbilagor i en begränsad bakgrundspool.
+ * <p>
+ * Kön har fast kapacitet. När den är full avvisas nya jobb utan att uppladdningen
+ * blockeras; bilagan ligger kvar som PENDING i databasen och plockas upp av
+ * {@link #requeuePending()} när det finns plats igen.
+ * <p>
+ * Med sharding körs jobbet mot den shard som köade det; samma innehåll kan då köas en gång per shard.
+ */
+@Service
+@Slf4j
+public class AttachmentPreviewService {
+
+    private final TicketAttachmentRepository attachmentRepository;
+    private final AttachmentStorage attachmentStorage;
+    private final ThumbnailGenerator thumbnailGenerator;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> queuedHashes = ConcurrentHashMap.newKeySet();
+
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter rejectedCounter;
+
+    public AttachmentPreviewService(
+            TicketAttachmentRepository attachmentRepository,
+            AttachmentStorage attachmentStorage,
+            ThumbnailGenerator thumbnailGenerator,
+            MeterRegistry meterRegistry,
+            @Value("${attachments.previews.workers:2}") int workers,
+            @Value("${attachments.previews.queue-capacity:100}") int queueCapacity) {
+        this.attachmentRepository = attachmentRepository;
+        this.attachmentStorage = attachmentStorage;
+        this.thumbnailGenerator = thumbnailGenerator;
+
+        // Bildavkodning är CPU- och minnestung, så poolen är liten och kön begränsad.
+        // Plattformstrådar även med virtuella trådar påslaget; arbetet blockerar inte på I/O.
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("attachment-preview-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("attachments.previews.queue.depth", executor, e -> e.getQueue().size())
+                .description("Antal förhandsvisningar som väntar i kön")
+                .register(meterRegistry);
+        Gauge.builder("attachments.previews.queue.remaining", executor, e -> e.getQueue().remainingCapacity())
+                .register(meterRegistry);
+        Gauge.builder("attachments.previews.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.successTimer = Timer.builder("attachments.previews.duration")
+                .tag("outcome", "success")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failureTimer = Timer.builder("attachments.previews.duration")
+                .tag("outcome", "failure")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("attachments.previews.rejected")
+                .description("Jobb som avvisades för att kön var full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Avgör förhandsvisningsstatus för en ny bilaga och köar generering när transaktionen committats.
+     */
+    public TicketAttachment.PreviewStatus initialStatus(String contentType, String contentHash) {
+        if (contentHash == null || !ThumbnailGenerator.isSupported(contentType)) {
+            return TicketAttachment.PreviewStatus.NONE;
+        }
+        if (attachmentStorage.hasPreviews(contentHash)) {
+            return TicketAttachment.PreviewStatus.READY;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(contentHash);
+                }
+            });
+        } else {
+            enqueue(contentHash);
+        }
+        return TicketAttachment.PreviewStatus.PENDING;
+    }
+
+    @Scheduled(fixedDelayString = "${attachments.previews.requeue-interval:PT30S}")
+    @AllShards
+    public void requeuePending() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+
+        List<String> pending = attachmentRepository.findContentHashesByPreviewStatus(
+                TicketAttachment.PreviewStatus.PENDING, PageRequest.of(0, capacity));
+        pending.forEach(this::enqueue);
+    }
+
+    private void enqueue(String contentHash) {
+        String shardId = ShardContext.current();
+        String key = shardId == null ? contentHash : shardId + "/" + contentHash;
+        if (!queuedHashes.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try (ShardContext.Scope scope = ShardContext.open(shardId)) {
+                    generate(contentHash);
+                } finally {
+                    queuedHashes.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedHashes.remove(key);
+            rejectedCounter.increment();
+            log.debug("Preview queue full, deferring {}", contentHash);
+        }
+    }
+
+    private void generate(String contentHash) {
+        long start = System.nanoTime();
+        try {
+            if (!attachmentStorage.hasPreviews(contentHash)) {
+                thumbnailGenerator.generate(contentHash);
+            }
+            attachmentRepository.updatePreviewStatus(contentHash,
+                    TicketAttachment.PreviewStatus.PENDING, TicketAttachment.PreviewStatus.READY);
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("Failed to generate previews for {}: {}", contentHash, e.getMessage());
+            attachmentRepository.updatePreviewStatus(contentHash,
+                    TicketAttachment.PreviewStatus.PENDING, TicketAttachment.PreviewStatus.FAILED);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
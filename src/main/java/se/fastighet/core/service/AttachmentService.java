@@ -0,0 +1,218 @@
+package se.fastighet.core.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketAttachment;
+import se.fastighet.core.entity.TicketHistory;
+import se.fastighet.core.exception.InvalidRequestException;
+import se.fastighet.core.exception.ResourceNotFoundException;
+import se.fastighet.core.repository.TicketAttachmentRepository;
+import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.security.AttachmentUrlSigner;
+import se.fastighet.core.security.UserPrincipal;
+import se.fastighet.core.sharding.ShardKey;
+import se.fastighet.core.storage.AttachmentStorage;
+import se.fastighet.core.storage.InlineContentTypes;
+import se.fastighet.core.storage.PreviewVariant;
+import se.fastighet.core.storage.StoredFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class AttachmentService {
+
+    private static final String DEFAULT_FILE_NAME = "bilaga";
+
+    private final TicketRepository ticketRepository;
+    private final TicketAttachmentRepository attachmentRepository;
+    private final AttachmentStorage attachmentStorage;
+    private final AttachmentBlobService blobService;
+    private final AttachmentPreviewService previewService;
+    private final AttachmentUrlSigner urlSigner;
+    private final ObjectProvider<TicketReadCoalescer> readCoalescer; // Beror i sin tur på TicketService
+
+    public TicketResponse.AttachmentResponse addAttachment(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                                           MultipartFile file, UserPrincipal principal) {
+        if (file.isEmpty()) {
+            throw new InvalidRequestException("Filen är tom");
+        }
+
+        Ticket ticket = ticketRepository.findById(ticketId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ärende hittades inte"));
+
+        StoredFile storedFile;
+        try {
+            storedFile = blobService.store(file.getInputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store attachment for ticket " + ticketId, e);
+        }
+
+        return attach(ticket, storedFile, file.getOriginalFilename(), file.getContentType(), principal);
+    }
+
+    /**
+     * Skapar en bilaga av en fil som redan ligger på disk, t.ex. en färdig uppladdning i delar.
+     */
+    public TicketResponse.AttachmentResponse addUploadedFile(Ticket ticket, Path file, String fileName,
+                                                             String contentType, UserPrincipal principal) {
+        StoredFile storedFile;
+        try {
+            storedFile = blobService.storeFile(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store uploaded file for ticket " + ticket.getId(), e);
+        }
+
+        return attach(ticket, storedFile, fileName, contentType, principal);
+    }
+
+    private TicketResponse.AttachmentResponse attach(Ticket ticket, StoredFile storedFile, String originalFileName,
+                                                     String declaredContentType, UserPrincipal principal) {
+        String fileName = sanitizeFileName(originalFileName);
+        String contentType = verifyContentType(storedFile, declaredContentType);
+
+        TicketAttachment attachment = TicketAttachment.builder()
+                .fileName(fileName)
+                .filePath(storedFile.relativePath())
+                .contentType(contentType)
+                .fileSize(storedFile.size())
+                .contentHash(storedFile.contentHash())
+                .previewStatus(previewService.initialStatus(contentType, storedFile.contentHash()))
+                .build();
+        ticket.addAttachment(attachment);
+
+        // Lägg till historik
+        TicketHistory history = TicketHistory.builder()
+                .changeType(TicketHistory.ChangeType.ATTACHMENT_ADDED)
+                .newValue(fileName)
+                .changedBy(principal.getUser())
+                .description("Bilaga tillagd")
+                .build();
+        ticket.addHistoryEntry(history);
+
+        // Sparas direkt för att få id; historiken följer med ärendet vid flush
+        attachment = attachmentRepository.save(attachment);
+        readCoalescer.ifAvailable(coalescer -> coalescer.invalidateAfterCommit(ticket.getId(),
+                ticket.getProperty().getId()));
+
+        log.info("Attachment {} ({} bytes, deduplicated: {}) added to ticket {} by {}",
+                attachment.getId(), storedFile.size(), storedFile.deduplicated(), ticket.getId(), principal.getEmail());
+        return mapToResponse(attachment);
+    }
+
+    public void removeAttachment(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                 Long attachmentId, UserPrincipal principal) {
+        TicketAttachment attachment = attachmentRepository.findByIdAndTicketId(attachmentId, ticketId)
+                .orElseThrow(() -> new ResourceNotFoundException("Bilaga hittades inte"));
+        Ticket ticket = attachment.getTicket();
+
+        ticket.getAttachments().remove(attachment);
+
+        if (attachment.getContentHash() != null) {
+            blobService.release(attachment.getContentHash());
+        } else {
+            deleteFileAfterCommit(attachment.getFilePath());
+        }
+
+        TicketHistory history = TicketHistory.builder()
+                .changeType(TicketHistory.ChangeType.ATTACHMENT_REMOVED)
+                .oldValue(attachment.getFileName())
+                .changedBy(principal.getUser())
+                .description("Bilaga borttagen")
+                .build();
+        ticket.addHistoryEntry(history);
+
+        ticketRepository.save(ticket);
+        readCoalescer.ifAvailable(coalescer -> coalescer.invalidateAfterCommit(ticketId,
+                ticket.getProperty().getId()));
+
+        log.info("Attachment {} removed from ticket {} by {}", attachmentId, ticketId, principal.getEmail());
+    }
+
+    @Transactional(readOnly = true)
+    public TicketAttachment getAttachment(@ShardKey(ShardKey.Type.TICKET) Long ticketId, Long attachmentId) {
+        return attachmentRepository.findByIdAndTicketId(attachmentId, ticketId)
+                .orElseThrow(() -> new ResourceNotFoundException("Bilaga hittades inte"));
+    }
+
+    public Path resolveFile(TicketAttachment attachment) {
+        return attachmentStorage.resolve(attachment.getFilePath());
+    }
+
+    public Path resolvePreview(TicketAttachment attachment, PreviewVariant variant) {
+        if (attachment.getPreviewStatus() != TicketAttachment.PreviewStatus.READY) {
+            throw new ResourceNotFoundException("Förhandsvisning saknas");
+        }
+        return attachmentStorage.resolve(attachmentStorage.previewPath(attachment.getContentHash(), variant));
+    }
+
+    // Bilagor från före dedupliceringen har en egen fil som kan tas bort direkt
+    private void deleteFileAfterCommit(String relativePath) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                attachmentStorage.delete(relativePath);
+            }
+        });
+    }
+
+    /**
+     * Klientens typ styr om bilagan visas direkt i webbläsaren, så den kontrolleras mot innehållet.
+     */
+    private String verifyContentType(StoredFile storedFile, String declaredContentType) {
+        try {
+            Path file = attachmentStorage.resolve(storedFile.relativePath());
+            return InlineContentTypes.verify(declaredContentType, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read stored attachment " + storedFile.relativePath(), e);
+        }
+    }
+
+    private String sanitizeFileName(String originalFileName) {
+        String fileName = StringUtils.getFilename(StringUtils.cleanPath(
+                originalFileName != null ? originalFileName : ""));
+        return StringUtils.hasText(fileName) ? fileName : DEFAULT_FILE_NAME;
+    }
+
+    public TicketResponse.AttachmentResponse mapToResponse(TicketAttachment attachment) {
+        TicketResponse.AttachmentResponse.AttachmentResponseBuilder builder = TicketResponse.AttachmentResponse.builder()
+                .id(attachment.getId())
+                .fileName(attachment.getFileName())
+                .contentType(attachment.getContentType())
+                .fileSize(attachment.getFileSize())
+                .uploadedAt(attachment.getUploadedAt());
+
+        boolean previewReady = attachment.getPreviewStatus() == TicketAttachment.PreviewStatus.READY;
+        String hash = attachment.getContentHash();
+
+        if (hash == null) {
+            // Bilagor från före dedupliceringen kan bara hämtas med inloggning
+            builder.url("/api/tickets/" + attachment.getTicket().getId() + "/attachments/" + attachment.getId());
+            return builder.build();
+        }
+
+        // Signerade länkar kan hämtas utan JWT och cachas av en proxy
+        builder.url(urlSigner.sign(hash, AttachmentUrlSigner.ORIGINAL,
+                attachment.getContentType(), attachment.getFileName()));
+        if (previewReady) {
+            builder.thumbnailUrl(urlSigner.sign(hash, PreviewVariant.THUMBNAIL.getPathName(),
+                    null, attachment.getFileName()));
+            builder.previewUrl(urlSigner.sign(hash, PreviewVariant.PREVIEW.getPathName(),
+                    null, attachment.getFileName()));
+        }
+        return builder.build();
+    }
+}
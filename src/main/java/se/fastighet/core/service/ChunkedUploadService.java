@@ -0,0 +1,292 @@
+package se.fastighet.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+import se.fastighet.core.dto.request.CreateUploadRequest;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.dto.response.UploadStatusResponse;
+import se.fastighet.core.entity.AttachmentUpload;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.exception.InvalidRequestException;
+import se.fastighet.core.exception.ResourceNotFoundException;
+import se.fastighet.core.exception.UnauthorizedException;
+import se.fastighet.core.exception.UploadOffsetConflictException;
+import se.fastighet.core.repository.AttachmentUploadRepository;
+import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.security.UserPrincipal;
+import se.fastighet.core.sharding.AllShards;
+import se.fastighet.core.sharding.ShardKey;
+import se.fastighet.core.storage.AttachmentStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Återupptagbara uppladdningar i delar för filer som är för stora för multipart.
+ * <p>
+ * Varje del skrivs direkt till en temporär fil på sin offset med en fast buffert, så
+ * minnesåtgången är oberoende av filstorleken. Delen verifieras mot klientens SHA-256
+ * innan offset flyttas fram; en avbruten del kastas och klienten fortsätter från
+ * senast bekräftade offset. Ingen databasanslutning hålls medan delen läses från nätet.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CHECKSUM_ALGORITHM = "sha256";
+
+    private final AttachmentUploadRepository uploadRepository;
+    private final TicketRepository ticketRepository;
+    private final AttachmentService attachmentService;
+    private final AttachmentStorage attachmentStorage;
+    private final long maxUploadSize;
+    private final long maxChunkSize;
+    private final Duration uploadTtl;
+
+    public ChunkedUploadService(
+            AttachmentUploadRepository uploadRepository,
+            TicketRepository ticketRepository,
+            AttachmentService attachmentService,
+            AttachmentStorage attachmentStorage,
+            @Value("${attachments.uploads.max-size:2GB}") DataSize maxUploadSize,
+            @Value("${attachments.uploads.max-chunk-size:16MB}") DataSize maxChunkSize,
+            @Value("${attachments.uploads.ttl:PT24H}") Duration uploadTtl) {
+        this.uploadRepository = uploadRepository;
+        this.ticketRepository = ticketRepository;
+        this.attachmentService = attachmentService;
+        this.attachmentStorage = attachmentStorage;
+        this.maxUploadSize = maxUploadSize.toBytes();
+        this.maxChunkSize = maxChunkSize.toBytes();
+        this.uploadTtl = uploadTtl;
+    }
+
+    @Transactional
+    public UploadStatusResponse createUpload(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                             CreateUploadRequest request, UserPrincipal principal) {
+        if (request.getTotalSize() > maxUploadSize) {
+            throw new InvalidRequestException("Filen är för stor");
+        }
+
+        Ticket ticket = ticketRepository.findById(ticketId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ärende hittades inte"));
+
+        AttachmentUpload upload = uploadRepository.save(AttachmentUpload.builder()
+                .ticket(ticket)
+                .createdBy(principal.getUser())
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .totalSize(request.getTotalSize())
+                .committedOffset(0)
+                .expiresAt(LocalDateTime.now().plus(uploadTtl))
+                .build());
+
+        log.info("Chunked upload {} ({} bytes) started for ticket {} by {}",
+                upload.getId(), upload.getTotalSize(), ticketId, principal.getEmail());
+        return mapToResponse(upload);
+    }
+
+    @Transactional(readOnly = true)
+    public UploadStatusResponse getStatus(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                          UUID uploadId, UserPrincipal principal) {
+        return mapToResponse(findUpload(ticketId, uploadId, principal));
+    }
+
+    /**
+     * Skriver en del på angiven offset och returnerar den nya bekräftade offseten.
+     */
+    public long appendChunk(@ShardKey(ShardKey.Type.TICKET) Long ticketId, UUID uploadId, long offset,
+                            String checksumHeader, InputStream body, UserPrincipal principal) {
+        AttachmentUpload upload = findUpload(ticketId, uploadId, principal);
+        if (offset != upload.getCommittedOffset()) {
+            throw new UploadOffsetConflictException("Fel position för uppladdningen", upload.getCommittedOffset());
+        }
+
+        byte[] expectedDigest = parseChecksum(checksumHeader);
+        long maxLength = Math.min(maxChunkSize, upload.getTotalSize() - offset);
+        Path partFile = attachmentStorage.partialUploadPath(uploadId);
+
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = tryLock(channel, upload);
+            try {
+                MessageDigest digest = sha256();
+                long written;
+                try {
+                    written = writeChunk(channel, offset, body, maxLength, digest);
+                } catch (IOException | RuntimeException e) {
+                    channel.truncate(offset);
+                    throw e;
+                }
+
+                if (!MessageDigest.isEqual(expectedDigest, digest.digest())) {
+                    channel.truncate(offset);
+                    throw new InvalidRequestException("Kontrollsumman stämmer inte för delen");
+                }
+
+                channel.force(false);
+
+                long newOffset = offset + written;
+                if (uploadRepository.advanceOffset(uploadId, offset, newOffset) != 1) {
+                    throw new UploadOffsetConflictException("Uppladdningen ändrades samtidigt", offset);
+                }
+                return newOffset;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write chunk for upload " + uploadId, e);
+        }
+    }
+
+    /**
+     * Gör den färdiga filen till en bilaga i ett steg. Raden låses så att
+     * samtidiga anrop inte kan slutföra samma uppladdning två gånger.
+     */
+    @Transactional
+    public TicketResponse.AttachmentResponse complete(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                                      UUID uploadId, UserPrincipal principal) {
+        AttachmentUpload upload = uploadRepository.findByIdAndTicketIdForUpdate(uploadId, ticketId)
+                .orElseThrow(() -> new ResourceNotFoundException("Uppladdning hittades inte"));
+        verifyOwner(upload, principal);
+
+        if (upload.getCommittedOffset() != upload.getTotalSize()) {
+            throw new UploadOffsetConflictException("Uppladdningen är inte komplett", upload.getCommittedOffset());
+        }
+
+        TicketResponse.AttachmentResponse response = attachmentService.addUploadedFile(upload.getTicket(),
+                attachmentStorage.partialUploadPath(uploadId), upload.getFileName(), upload.getContentType(), principal);
+        uploadRepository.delete(upload);
+
+        log.info("Chunked upload {} completed as attachment {}", uploadId, response.getId());
+        return response;
+    }
+
+    @Transactional
+    public void cancel(@ShardKey(ShardKey.Type.TICKET) Long ticketId, UUID uploadId, UserPrincipal principal) {
+        AttachmentUpload upload = findUpload(ticketId, uploadId, principal);
+        uploadRepository.delete(upload);
+        deletePartFile(uploadId);
+    }
+
+    @Scheduled(fixedDelayString = "${attachments.uploads.cleanup-interval:PT1H}")
+    @Transactional
+    @AllShards
+    public void removeExpiredUploads() {
+        List<AttachmentUpload> expired = uploadRepository.findByExpiresAtBefore(LocalDateTime.now());
+        for (AttachmentUpload upload : expired) {
+            deletePartFile(upload.getId());
+            uploadRepository.delete(upload);
+        }
+        if (!expired.isEmpty()) {
+            log.info("Removed {} expired chunked uploads", expired.size());
+        }
+    }
+
+    private AttachmentUpload findUpload(Long ticketId, UUID uploadId, UserPrincipal principal) {
+        AttachmentUpload upload = uploadRepository.findByIdAndTicketId(uploadId, ticketId)
+                .orElseThrow(() -> new ResourceNotFoundException("Uppladdning hittades inte"));
+        verifyOwner(upload, principal);
+        return upload;
+    }
+
+    private void verifyOwner(AttachmentUpload upload, UserPrincipal principal) {
+        if (!upload.getCreatedBy().getId().equals(principal.getId())) {
+            throw new UnauthorizedException("Uppladdningen tillhör en annan användare");
+        }
+    }
+
+    private long writeChunk(FileChannel channel, long offset, InputStream body, long maxLength,
+                            MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] array = buffer.array();
+        long position = offset;
+        long written = 0;
+
+        int read;
+        while ((read = body.read(array)) != -1) {
+            if (written + read > maxLength) {
+                throw new InvalidRequestException("Delen är större än tillåtet");
+            }
+            digest.update(array, 0, read);
+            buffer.clear().limit(read);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            written += read;
+        }
+        return written;
+    }
+
+    private FileLock tryLock(FileChannel channel, AttachmentUpload upload) throws IOException {
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+        } catch (OverlappingFileLockException e) {
+            // En annan del för samma uppladdning skrivs just nu
+        }
+        throw new UploadOffsetConflictException("En annan del laddas upp samtidigt", upload.getCommittedOffset());
+    }
+
+    // Format: "sha256 <base64>"
+    private byte[] parseChecksum(String checksumHeader) {
+        if (checksumHeader == null) {
+            throw new InvalidRequestException("Upload-Checksum krävs");
+        }
+        String[] parts = checksumHeader.trim().split("\\s+");
+        if (parts.length != 2 || !CHECKSUM_ALGORITHM.equalsIgnoreCase(parts[0])) {
+            throw new InvalidRequestException("Upload-Checksum måste ha formatet 'sha256 <base64>'");
+        }
+        try {
+            return Base64.getDecoder().decode(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Upload-Checksum är inte giltig base64");
+        }
+    }
+
+    private void deletePartFile(UUID uploadId) {
+        try {
+            Files.deleteIfExists(attachmentStorage.partialUploadPath(uploadId));
+        } catch (IOException e) {
+            log.warn("Failed to delete partial upload {}: {}", uploadId, e.getMessage());
+        }
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private UploadStatusResponse mapToResponse(AttachmentUpload upload) {
+        return UploadStatusResponse.builder()
+                .id(upload.getId())
+                .fileName(upload.getFileName())
+                .totalSize(upload.getTotalSize())
+                .committedOffset(upload.getCommittedOffset())
+                .expiresAt(upload.getExpiresAt())
+                .build();
+    }
+}
@@ -7,6 +7,7 @@ import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import se.fastighet.core.diagnostics.jfr.JwtVerificationEvent;
 import se.fastighet.core.entity.User;
 
 import javax.crypto.SecretKey;
@@ -64,12 +65,21 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token) {
+        JwtVerificationEvent event = new JwtVerificationEvent();
+        event.begin();
         try {
             Claims claims = extractAllClaims(token);
-            return !isTokenExpired(claims);
+            event.valid = !isTokenExpired(claims);
+            if (!event.valid) {
+                event.failure = "expired";
+            }
+            return event.valid;
         } catch (JwtException | IllegalArgumentException e) {
             log.debug("JWT validation failed: {}", e.getMessage());
+            event.failure = e.getClass().getSimpleName();
             return false;
+        } finally {
+            event.commit();
         }
     }
 
@@ -0,0 +1,187 @@
+package se.fastighet.core.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import se.fastighet.core.dto.response.ResolutionReportRow;
+import se.fastighet.core.dto.response.RollupRebuildResponse;
+import se.fastighet.core.entity.Category;
+import se.fastighet.core.entity.Property;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketRollup;
+import se.fastighet.core.entity.User;
+import se.fastighet.core.exception.InvalidRequestException;
+import se.fastighet.core.exception.UnauthorizedException;
+import se.fastighet.core.repository.CategoryRepository;
+import se.fastighet.core.repository.PropertyRepository;
+import se.fastighet.core.repository.UserRepository;
+import se.fastighet.core.security.UserPrincipal;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Rapporter över ärendenas lösningstider, lästa ur dagsrollupparna i stället för ur
+ * ärendena. En rapport över flera år och många fastigheter läser några tusen rader.
+ * Se docs/performance/reporting-rollups.md.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReportService {
+
+    private static final double MINUTES_PER_DAY = 24 * 60;
+
+    private final TicketRollupService rollupService;
+    private final TicketRollupRecorder rollupRecorder;
+    private final PropertyRepository propertyRepository;
+    private final UserRepository userRepository;
+    private final CategoryRepository categoryRepository;
+
+    public enum Dimension {
+        YEAR, MONTH, PROPERTY, CATEGORY, PRIORITY
+    }
+
+    private record GroupKey(Integer year, YearMonth month, UUID propertyId, Long categoryId,
+                            Ticket.Priority priority) {
+    }
+
+    private static final Comparator<GroupKey> ORDER = Comparator
+            .comparing(GroupKey::year, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(GroupKey::month, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(key -> key.propertyId() != null ? key.propertyId().toString() : null,
+                    Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(GroupKey::categoryId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(GroupKey::priority, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /**
+     * Summan per grupp: lösta ärenden räknas på lösningsdagen, skapade på skapandedagen.
+     */
+    private static final class Totals {
+        long created;
+        long resolved;
+        long resolutionMinutes;
+        long[] histogram = new long[0];
+    }
+
+    /**
+     * Lösningstider för användarens fastigheter i perioden, grupperat på {@code groupBy}.
+     * Utan {@code propertyIds} tas alla fastigheter användaren har tillgång till med.
+     */
+    public List<ResolutionReportRow> getResolutionReport(Collection<UUID> propertyIds, LocalDate from, LocalDate to,
+                                                         Set<Dimension> groupBy, UserPrincipal principal) {
+        validatePeriod(from, to);
+        Set<UUID> properties = resolveProperties(propertyIds, principal.getUser());
+        if (properties.isEmpty()) {
+            return List.of();
+        }
+
+        // Under en shardflytt kan samma rad finnas på två shards; id:t är detsamma, så den
+        // senast uppdaterade behålls
+        Map<UUID, TicketRollup> rollups = rollupService.findRollups(properties, from, to).stream()
+                .collect(Collectors.toMap(TicketRollup::getId, rollup -> rollup,
+                        (a, b) -> a.getUpdatedAt().isAfter(b.getUpdatedAt()) ? a : b));
+
+        Map<GroupKey, Totals> groups = new TreeMap<>(ORDER);
+        for (TicketRollup rollup : rollups.values()) {
+            Totals totals = groups.computeIfAbsent(groupKey(rollup, groupBy), key -> new Totals());
+            totals.created += rollup.getCreatedCount();
+            totals.resolved += rollup.getResolvedCount();
+            totals.resolutionMinutes += rollup.getResolutionMinutes();
+            totals.histogram = ResolutionHistogram.add(totals.histogram, rollup.getResolutionHistogram());
+        }
+
+        Map<UUID, String> propertyNames = groupBy.contains(Dimension.PROPERTY)
+                ? propertyRepository.findAllById(properties).stream()
+                        .collect(Collectors.toMap(Property::getId, Property::getName))
+                : Map.of();
+        Map<Long, String> categoryNames = groupBy.contains(Dimension.CATEGORY)
+                ? categoryRepository.findAll().stream().collect(Collectors.toMap(Category::getId, Category::getName))
+                : Map.of();
+
+        List<ResolutionReportRow> rows = new ArrayList<>(groups.size());
+        groups.forEach((key, totals) -> rows.add(ResolutionReportRow.builder()
+                .year(key.year())
+                .month(key.month() != null ? key.month().toString() : null)
+                .propertyId(key.propertyId())
+                .propertyName(key.propertyId() != null ? propertyNames.get(key.propertyId()) : null)
+                .categoryId(key.categoryId())
+                .categoryName(key.categoryId() != null ? categoryNames.get(key.categoryId()) : null)
+                .priority(key.priority())
+                .createdCount(totals.created)
+                .resolvedCount(totals.resolved)
+                .meanDaysToResolve(totals.resolved > 0
+                        ? days((double) totals.resolutionMinutes / totals.resolved) : null)
+                .medianDaysToResolve(days(ResolutionHistogram.quantileMinutes(totals.histogram, 0.5)))
+                .p90DaysToResolve(days(ResolutionHistogram.quantileMinutes(totals.histogram, 0.9)))
+                .build()));
+        return rows;
+    }
+
+    /**
+     * Räknar om rollupparna för perioden, för en fastighet eller alla som admin förvaltar.
+     * Väntande ändringar skrivs först, så att de inte räknas två gånger.
+     */
+    public List<RollupRebuildResponse> rebuildRollups(UUID propertyId, LocalDate from, LocalDate to,
+                                                      UserPrincipal principal) {
+        validatePeriod(from, to);
+        Set<UUID> properties = resolveProperties(propertyId != null ? List.of(propertyId) : List.of(),
+                principal.getUser());
+
+        rollupRecorder.flush();
+        List<RollupRebuildResponse> results = new ArrayList<>(properties.size());
+        for (UUID property : properties) {
+            results.add(rollupService.rebuild(property, from, to));
+        }
+        return results;
+    }
+
+    private Set<UUID> resolveProperties(Collection<UUID> requested, User user) {
+        Set<UUID> accessible = switch (user.getRole()) {
+            case ADMIN -> propertyRepository.findByAdminsId(user.getId()).stream()
+                    .map(Property::getId)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            case BOARD_MEMBER -> userRepository.findByIdWithUnits(user.getId())
+                    .map(member -> member.getUnits().stream()
+                            .map(unit -> unit.getProperty().getId())
+                            .collect(Collectors.toCollection(LinkedHashSet::new)))
+                    .orElseGet(LinkedHashSet::new);
+            default -> Set.of();
+        };
+        if (requested == null || requested.isEmpty()) {
+            return accessible;
+        }
+        if (!accessible.containsAll(requested)) {
+            throw new UnauthorizedException("Du har inte behörighet för fastigheten");
+        }
+        return new LinkedHashSet<>(requested);
+    }
+
+    private static void validatePeriod(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidRequestException("from måste vara före eller lika med to");
+        }
+    }
+
+    private static GroupKey groupKey(TicketRollup rollup, Set<Dimension> groupBy) {
+        return new GroupKey(
+                groupBy.contains(Dimension.YEAR) ? rollup.getDay().getYear() : null,
+                groupBy.contains(Dimension.MONTH) ? YearMonth.from(rollup.getDay()) : null,
+                groupBy.contains(Dimension.PROPERTY) ? rollup.getPropertyId() : null,
+                groupBy.contains(Dimension.CATEGORY) ? rollup.getCategoryId() : null,
+                groupBy.contains(Dimension.PRIORITY) ? rollup.getPriority() : null);
+    }
+
+    private static Double days(Double minutes) {
+        return minutes != null ? Math.round(minutes / MINUTES_PER_DAY * 10) / 10.0 : null;
+    }
+}
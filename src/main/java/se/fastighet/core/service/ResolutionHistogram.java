@@ -0,0 +1,91 @@
+package se.fastighet.core.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Histogram över lösningstider med logaritmiska hinkar, fyra per fördubbling av tiden
+ * räknat i minuter. Hink 0 är under en minut, hink {@code i} täcker
+ * {@code [2^((i-1)/4), 2^(i/4))} minuter och den sista allt från två år och uppåt.
+ * <p>
+ * Två histogram slås ihop genom att hinkarna adderas, så en rapport över flera år är
+ * summan av dagsraderna. En percentil som läses ur histogrammet avviker högst cirka
+ * 9 % från det exakta värdet (hinkens geometriska mittpunkt).
+ */
+public final class ResolutionHistogram {
+
+    public static final int BUCKETS = 82;
+
+    private ResolutionHistogram() {
+    }
+
+    public static int bucketOf(Duration duration) {
+        long minutes = Math.max(0, duration.toMinutes());
+        if (minutes < 1) {
+            return 0;
+        }
+        int bucket = (int) Math.floor(4 * Math.log(minutes) / Math.log(2)) + 1;
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * Lägger {@code source} till {@code target}. Histogrammen sparas utan avslutande nollor,
+     * så de kan ha olika längd.
+     */
+    public static long[] add(long[] target, long[] source) {
+        if (source == null) {
+            return target;
+        }
+        long[] result = target == null || target.length < source.length
+                ? Arrays.copyOf(target == null ? new long[0] : target, source.length)
+                : target;
+        for (int i = 0; i < source.length; i++) {
+            result[i] += source[i];
+        }
+        return result;
+    }
+
+    /**
+     * Histogrammet utan avslutande tomma hinkar, som det sparas.
+     */
+    public static long[] trim(long[] histogram) {
+        int length = histogram.length;
+        while (length > 0 && histogram[length - 1] == 0) {
+            length--;
+        }
+        return length == histogram.length ? histogram : Arrays.copyOf(histogram, length);
+    }
+
+    /**
+     * Percentilen {@code quantile} (0–1) i minuter, eller {@code null} om histogrammet är tomt.
+     */
+    public static Double quantileMinutes(long[] histogram, double quantile) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total <= 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= rank) {
+                return midpoint(bucket);
+            }
+        }
+        return midpoint(histogram.length - 1);
+    }
+
+    private static double midpoint(int bucket) {
+        if (bucket == 0) {
+            return 0.5;
+        }
+        double lower = Math.pow(2, (bucket - 1) / 4.0);
+        if (bucket == BUCKETS - 1) {
+            return lower;
+        }
+        return Math.sqrt(lower * Math.pow(2, bucket / 4.0));
+    }
+}
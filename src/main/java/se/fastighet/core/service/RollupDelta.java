@@ -0,0 +1,91 @@
+package se.fastighet.core.service;
+
+import lombok.Getter;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketRollup;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Ändringen av en {@link TicketRollup}-rad som ännu inte skrivits. Värdena kan vara negativa,
+ * t.ex. när ett löst ärende öppnas igen eller byter kategori.
+ */
+@Getter
+public final class RollupDelta {
+
+    private final UUID id;
+    private final LocalDate day;
+    private final UUID propertyId;
+    private final Long categoryId;
+    private final Ticket.Priority priority;
+    private long created;
+    private long resolved;
+    private long resolutionMinutes;
+    private long[] histogram = new long[0];
+
+    public RollupDelta(LocalDate day, UUID propertyId, Long categoryId, Ticket.Priority priority) {
+        this.id = TicketRollup.idFor(day, propertyId, categoryId, priority);
+        this.day = day;
+        this.propertyId = propertyId;
+        this.categoryId = categoryId;
+        this.priority = priority;
+    }
+
+    void addCreated(int sign) {
+        created += sign;
+    }
+
+    void addResolved(int sign, LocalDateTime createdAt, LocalDateTime resolvedAt) {
+        Duration duration = Duration.between(createdAt, resolvedAt);
+        int bucket = ResolutionHistogram.bucketOf(duration);
+        if (histogram.length <= bucket) {
+            histogram = Arrays.copyOf(histogram, bucket + 1);
+        }
+        resolved += sign;
+        resolutionMinutes += sign * Math.max(0, duration.toMinutes());
+        histogram[bucket] += sign;
+    }
+
+    /**
+     * Lägger till {@code other} och returnerar den här ändringen, eller {@code null} om de tog
+     * ut varandra. Passar {@code ConcurrentHashMap.merge}.
+     */
+    RollupDelta merge(RollupDelta other) {
+        created += other.created;
+        resolved += other.resolved;
+        resolutionMinutes += other.resolutionMinutes;
+        histogram = ResolutionHistogram.add(histogram, other.histogram);
+        return isZero() ? null : this;
+    }
+
+    boolean isZero() {
+        return created == 0 && resolved == 0 && resolutionMinutes == 0
+                && Arrays.stream(histogram).allMatch(count -> count == 0);
+    }
+
+    void applyTo(TicketRollup rollup, LocalDateTime now) {
+        rollup.setCreatedCount(rollup.getCreatedCount() + created);
+        rollup.setResolvedCount(rollup.getResolvedCount() + resolved);
+        rollup.setResolutionMinutes(rollup.getResolutionMinutes() + resolutionMinutes);
+        // Ny array, så att Hibernate ser ändringen vid dirty checking
+        long[] current = rollup.getResolutionHistogram();
+        long[] updated = current != null ? current.clone() : new long[0];
+        rollup.setResolutionHistogram(ResolutionHistogram.trim(ResolutionHistogram.add(updated, histogram)));
+        rollup.setUpdatedAt(now);
+    }
+
+    TicketRollup newRollup() {
+        return TicketRollup.builder()
+                .id(id)
+                .day(day)
+                .propertyId(propertyId)
+                .categoryId(categoryId)
+                .priority(priority)
+                .resolutionHistogram(new long[0])
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package se.fastighet.core.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Slår ihop samtidiga anrop med samma nyckel till ett (single-flight). Den första tråden kör
+ * anropet och övriga väntar på samma resultat, eller samma undantag. Inget sparas efteråt:
+ * nästa anrop med nyckeln, när det första är klart, körs på nytt.
+ * <p>
+ * Resultatet delas mellan trådarna och får därför inte ändras av den som anropar.
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter shared;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = Counter.builder("coalescing.calls")
+                .description("Läsningar som slagits ihop (shared) eller körts (executed)")
+                .tag("name", name)
+                .tag("outcome", "executed")
+                .register(meterRegistry);
+        this.shared = Counter.builder("coalescing.calls")
+                .description("Läsningar som slagits ihop (shared) eller körts (executed)")
+                .tag("name", name)
+                .tag("outcome", "shared")
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.increment();
+            return await(existing);
+        }
+
+        executed.increment();
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Anrop som börjar efter detta kör på nytt i stället för att vänta på ett pågående anrop
+     * med en matchande nyckel. Används efter en skrivning, så att den som läser efter commit
+     * inte får ett resultat som lästes före.
+     */
+    public void forget(Predicate<K> matching) {
+        inFlight.keySet().removeIf(matching);
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
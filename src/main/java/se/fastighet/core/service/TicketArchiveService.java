@@ -0,0 +1,150 @@
+package se.fastighet.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.fastighet.core.entity.ArchivedTicket;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketSnapshot;
+import se.fastighet.core.entity.User;
+import se.fastighet.core.repository.ArchivedTicketRepository;
+import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.sharding.AllShards;
+import se.fastighet.core.sharding.ShardContext;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Flyttar lösta och stängda ärenden som är äldre än {@code archive.min-age} från
+ * {@code tickets}, {@code ticket_comments} och {@code ticket_history} till
+ * {@code ticket_archive}.
+ * <p>
+ * Arbetet görs i omgångar om {@code archive.chunk-size} ärenden, var och en i en egen
+ * transaktion, så att låsen hålls kort och en avbruten körning fortsätter där den slutade.
+ * Ärenden med bilagor eller pågående uppladdningar arkiveras inte, eftersom bilagorna
+ * refererar till blobbar med referensräkning. Se docs/performance/archival.md.
+ */
+@Service
+@Slf4j
+public class TicketArchiveService {
+
+    private final TicketRepository ticketRepository;
+    private final ArchivedTicketRepository archiveRepository;
+    private final TransactionTemplate transaction;
+    private final boolean enabled;
+    private final Duration minAge;
+    private final int chunkSize;
+    private final int maxPerRun;
+
+    public TicketArchiveService(
+            TicketRepository ticketRepository,
+            ArchivedTicketRepository archiveRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${archive.enabled:true}") boolean enabled,
+            @Value("${archive.min-age:P365D}") Duration minAge,
+            @Value("${archive.chunk-size:200}") int chunkSize,
+            @Value("${archive.max-per-run:20000}") int maxPerRun) {
+        this.ticketRepository = ticketRepository;
+        this.archiveRepository = archiveRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.minAge = minAge;
+        this.chunkSize = chunkSize;
+        this.maxPerRun = maxPerRun;
+    }
+
+    @Scheduled(cron = "${archive.cron:0 30 3 * * *}")
+    @AllShards
+    public void archiveClosedTickets() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime threshold = LocalDateTime.now().minus(minAge);
+        long start = System.nanoTime();
+        int archived = 0;
+        while (archived < maxPerRun) {
+            int chunk = Math.min(chunkSize, maxPerRun - archived);
+            Integer count = transaction.execute(status -> archiveChunk(threshold, chunk));
+            if (count == null || count == 0) {
+                break;
+            }
+            archived += count;
+        }
+
+        if (archived > 0) {
+            log.info("Archived {} tickets resolved before {}{} in {} ms", archived, threshold,
+                    ShardContext.current() != null ? " on shard " + ShardContext.current() : "",
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+    }
+
+    private int archiveChunk(LocalDateTime threshold, int limit) {
+        // Villkoren prövas och raderna låses i samma sats, så ögonblicksbilden och
+        // borttagningen nedan ser samma kommentarer och historik
+        List<Long> ids = ticketRepository.lockArchivableIds(threshold, limit);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ArchivedTicket> archived = ticketRepository.findByIdIn(ids).stream()
+                .map(ticket -> toArchived(ticket, now))
+                .toList();
+        archiveRepository.saveAll(archived);
+
+        // Barnen först; massborttagningen går förbi kaskaderna i Ticket
+        ticketRepository.deleteCommentsByTicketIds(ids);
+        ticketRepository.deleteHistoryByTicketIds(ids);
+        ticketRepository.deleteAllByIds(ids);
+        return ids.size();
+    }
+
+    private static ArchivedTicket toArchived(Ticket ticket, LocalDateTime now) {
+        TicketSnapshot snapshot = TicketSnapshot.builder()
+                .title(ticket.getTitle())
+                .description(ticket.getDescription())
+                .priority(ticket.getPriority())
+                .categoryId(ticket.getCategory() != null ? ticket.getCategory().getId() : null)
+                .categoryName(ticket.getCategory() != null ? ticket.getCategory().getName() : null)
+                .categoryIcon(ticket.getCategory() != null ? ticket.getCategory().getIcon() : null)
+                .reporter(person(ticket.getReporter()))
+                .assignee(person(ticket.getAssignee()))
+                .propertyName(ticket.getProperty().getName())
+                .propertyAddress(ticket.getProperty().getAddress())
+                .unitId(ticket.getUnit() != null ? ticket.getUnit().getId() : null)
+                .unitNumber(ticket.getUnit() != null ? ticket.getUnit().getUnitNumber() : null)
+                .unitFloor(ticket.getUnit() != null ? ticket.getUnit().getFloor() : null)
+                .updatedAt(ticket.getUpdatedAt())
+                .comments(ticket.getComments().stream()
+                        .map(c -> new TicketSnapshot.Comment(c.getId(), person(c.getAuthor()), c.getContent(),
+                                c.isInternal(), c.getCreatedAt()))
+                        .toList())
+                .history(ticket.getHistory().stream()
+                        .map(h -> new TicketSnapshot.HistoryEntry(h.getId(), person(h.getChangedBy()),
+                                h.getChangeType(), h.getOldValue(), h.getNewValue(), h.getDescription(),
+                                h.getChangedAt()))
+                        .toList())
+                .build();
+
+        return ArchivedTicket.builder()
+                .id(ticket.getId())
+                .propertyId(ticket.getProperty().getId())
+                .reporterId(ticket.getReporter().getId())
+                .assigneeId(ticket.getAssignee() != null ? ticket.getAssignee().getId() : null)
+                .status(ticket.getStatus())
+                .createdAt(ticket.getCreatedAt())
+                .resolvedAt(ticket.getResolvedAt())
+                .archivedAt(now)
+                .snapshot(snapshot)
+                .build();
+    }
+
+    private static TicketSnapshot.Person person(User user) {
+        return user != null ? new TicketSnapshot.Person(user.getId(), user.getName(), user.getEmail()) : null;
+    }
+}
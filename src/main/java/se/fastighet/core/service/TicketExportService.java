@@ -0,0 +1,277 @@
+package se.fastighet.core.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.fastighet.core.diagnostics.StatementBudget;
+import se.fastighet.core.dto.response.TicketExportRow;
+import se.fastighet.core.exception.InvalidRequestException;
+import se.fastighet.core.repository.ArchivedTicketRepository;
+import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.sharding.ShardKey;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Exporterar en fastighets ärenden som NDJSON eller CSV direkt till svaret.
+ * <p>
+ * Aktiva och arkiverade ärenden läses med var sin markör ({@code streamForExport}) och flätas
+ * ihop i skapad-ordning. Varje rad skrivs så fort den lästs, så minnet är detsamma oavsett hur
+ * många ärenden fastigheten har. Se docs/performance/ticket-export.md.
+ */
+@Service
+@Slf4j
+public class TicketExportService {
+
+    private static final DateTimeFormatter CSV_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private static final Comparator<TicketExportRow> BY_CREATED = Comparator
+            .comparing(TicketExportRow::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(TicketExportRow::getId);
+
+    private final TicketRepository ticketRepository;
+    private final ArchivedTicketRepository archivedTicketRepository;
+    private final ObjectWriter rowWriter;
+    private final ObjectMapper objectMapper;
+    private final int flushEvery;
+
+    public TicketExportService(
+            TicketRepository ticketRepository,
+            ArchivedTicketRepository archivedTicketRepository,
+            ObjectMapper objectMapper,
+            @Value("${export.flush-every:500}") int flushEvery) {
+        this.ticketRepository = ticketRepository;
+        this.archivedTicketRepository = archivedTicketRepository;
+        this.objectMapper = objectMapper;
+        // Varje rad får inte tömma bufferten till klienten, det görs var flushEvery:e rad
+        this.rowWriter = objectMapper.writerFor(TicketExportRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushEvery = flushEvery;
+    }
+
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRequestException("Okänt exportformat: " + value + " (ndjson eller csv)");
+            }
+        }
+    }
+
+    /**
+     * Halvöppet tidsintervall för {@code createdAt}. Datumen i anropet räknas inklusive.
+     */
+    public record Period(LocalDateTime from, LocalDateTime to) {
+
+        private static final LocalDateTime EARLIEST = LocalDateTime.of(1900, 1, 1, 0, 0);
+        private static final LocalDateTime LATEST = LocalDateTime.of(3000, 1, 1, 0, 0);
+
+        public static Period of(LocalDate from, LocalDate to) {
+            if (from != null && to != null && from.isAfter(to)) {
+                throw new InvalidRequestException("from måste vara före eller lika med to");
+            }
+            return new Period(from != null ? from.atStartOfDay() : EARLIEST,
+                    to != null ? to.plusDays(1).atStartOfDay() : LATEST);
+        }
+    }
+
+    /**
+     * Skriver fastighetens ärenden i perioden till {@code out}. Anropas från
+     * StreamingResponseBody, så transaktionen och markörerna hålls på den asynkrona tråden
+     * medan svaret skrivs.
+     *
+     * @return antal exporterade ärenden
+     */
+    @Transactional(readOnly = true)
+    @StatementBudget(2) // En markör mot tickets och en mot ticket_archive
+    public long export(@ShardKey(ShardKey.Type.PROPERTY) UUID propertyId, Period period, Format format,
+                       OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        try (Stream<TicketExportRow> active =
+                     ticketRepository.streamForExport(propertyId, period.from(), period.to());
+             Stream<TicketExportRow> archived =
+                     archivedTicketRepository.streamForExport(propertyId, period.from(), period.to())) {
+            RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out);
+            Iterator<TicketExportRow> activeRows = active.iterator();
+            Iterator<TicketExportRow> archivedRows = archived.iterator();
+            TicketExportRow nextActive = next(activeRows);
+            TicketExportRow nextArchived = next(archivedRows);
+
+            while (nextActive != null || nextArchived != null) {
+                boolean activeFirst = nextArchived == null
+                        || (nextActive != null && BY_CREATED.compare(nextActive, nextArchived) <= 0);
+                if (activeFirst) {
+                    writer.write(nextActive);
+                    nextActive = next(activeRows);
+                } else {
+                    writer.write(nextArchived);
+                    nextArchived = next(archivedRows);
+                }
+                if (++count % flushEvery == 0) {
+                    writer.flush();
+                }
+            }
+            writer.finish();
+        }
+
+        log.info("Exported {} tickets for property {} as {} in {} ms", count, propertyId, format,
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return count;
+    }
+
+    private static TicketExportRow next(Iterator<TicketExportRow> rows) {
+        return rows.hasNext() ? rows.next() : null;
+    }
+
+    private interface RowWriter {
+
+        void write(TicketExportRow row) throws IOException;
+
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * En JSON-rad per ärende. Generatorn stänger inte svaret, det gör servletcontainern.
+     */
+    private class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator json;
+        private boolean empty = true;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.json = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        @Override
+        public void write(TicketExportRow row) throws IOException {
+            rowWriter.writeValue(json, row);
+            empty = false;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            json.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!empty) {
+                json.writeRaw('\n');
+            }
+            json.close();
+        }
+    }
+
+    /**
+     * Semikolonseparerad CSV med BOM, som svenska Excel öppnar direkt.
+     */
+    private static class CsvRowWriter implements RowWriter {
+
+        private final Writer csv;
+
+        CsvRowWriter(OutputStream out) throws IOException {
+            this.csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            csv.write('\uFEFF');
+            csv.write("id;titel;status;prioritet;kategori;lägenhet;anmält av;tilldelad;skapad;uppdaterad;löst;"
+                    + "kommentarer;arkiverad;beskrivning\r\n");
+        }
+
+        @Override
+        public void write(TicketExportRow row) throws IOException {
+            csv.write(String.valueOf(row.getId()));
+            field(row.getTitle());
+            field(row.getStatus() != null ? row.getStatus().name() : null);
+            field(row.getPriority() != null ? row.getPriority().name() : null);
+            field(row.getCategoryName());
+            field(row.getUnitNumber());
+            field(row.getReporterName());
+            field(row.getAssigneeName());
+            field(time(row.getCreatedAt()));
+            field(time(row.getUpdatedAt()));
+            field(time(row.getResolvedAt()));
+            field(String.valueOf(row.getCommentCount()));
+            field(row.isArchived() ? "ja" : "nej");
+            field(row.getDescription());
+            csv.write("\r\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            csv.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            csv.flush();
+        }
+
+        private void field(String value) throws IOException {
+            csv.write(';');
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            // Text som börjar med =, +, - eller @ tolkas annars som formel i kalkylprogram
+            if ("=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(';') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                    || value.indexOf('\r') >= 0) {
+                csv.write('"');
+                csv.write(value.replace("\"", "\"\""));
+                csv.write('"');
+            } else {
+                csv.write(value);
+            }
+        }
+
+        private static String time(LocalDateTime value) {
+            return value != null ? CSV_TIME.format(value) : null;
+        }
+    }
+}
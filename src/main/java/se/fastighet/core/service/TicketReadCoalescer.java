@@ -0,0 +1,115 @@
+package se.fastighet.core.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import se.fastighet.core.datasource.ReadYourWritesTracker;
+import se.fastighet.core.dto.request.TicketFields;
+import se.fastighet.core.dto.response.TicketListResponse;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.security.UserPrincipal;
+
+import java.util.UUID;
+
+/**
+ * Slår ihop samtidiga identiska läsningar av ett ärende eller en sida av fastighetens
+ * ärendelista ({@link SingleFlight}). När ett ärende ändras hämtar många klienter det igen
+ * inom några millisekunder. De delar då på en fråga och ett mappat svar.
+ * <p>
+ * Anropen ligger utanför {@link TicketService}, så att den som väntar varken öppnar en
+ * transaktion eller tar en anslutning. Behörigheten kontrolleras per request i controllern
+ * innan anropet når hit. Se docs/performance/request-coalescing.md.
+ */
+@Service
+public class TicketReadCoalescer {
+
+    /**
+     * Det enda i svaret som beror på vem som läser: boende ser inte interna kommentarer.
+     */
+    enum ViewerClass {
+        RESIDENT, STAFF
+    }
+
+    /**
+     * {@code primary}: läsaren hålls på primären efter en egen skrivning och får inte dela
+     * svar med en läsning från en replik som kan ligga efter.
+     */
+    private record TicketKey(Long ticketId, TicketFields fields, ViewerClass viewer, boolean primary) {
+    }
+
+    private record PropertyPageKey(UUID propertyId, Pageable pageable, boolean primary) {
+    }
+
+    private final TicketService ticketService;
+    private final ObjectProvider<ReadYourWritesTracker> readYourWrites;
+    private final boolean enabled;
+    private final SingleFlight<TicketKey, TicketResponse> tickets;
+    private final SingleFlight<PropertyPageKey, Page<TicketListResponse>> propertyPages;
+
+    public TicketReadCoalescer(
+            TicketService ticketService,
+            ObjectProvider<ReadYourWritesTracker> readYourWrites,
+            MeterRegistry meterRegistry,
+            @Value("${coalescing.enabled:true}") boolean enabled) {
+        this.ticketService = ticketService;
+        this.readYourWrites = readYourWrites;
+        this.enabled = enabled;
+        this.tickets = new SingleFlight<>("ticket", meterRegistry);
+        this.propertyPages = new SingleFlight<>("property_tickets", meterRegistry);
+    }
+
+    public TicketResponse getTicket(Long ticketId, UserPrincipal principal, TicketFields fields) {
+        if (!enabled) {
+            return ticketService.getTicket(ticketId, principal, fields);
+        }
+        ViewerClass viewer = principal.isResident() ? ViewerClass.RESIDENT : ViewerClass.STAFF;
+        return tickets.execute(new TicketKey(ticketId, fields, viewer, isPinnedToPrimary()),
+                () -> ticketService.getTicket(ticketId, principal, fields));
+    }
+
+    /**
+     * Listan ser likadan ut för alla som får läsa den, så nyckeln saknar läsarklass.
+     */
+    public Page<TicketListResponse> getTicketsForProperty(UUID propertyId, Pageable pageable) {
+        if (!enabled) {
+            return ticketService.getTicketsForProperty(propertyId, pageable);
+        }
+        return propertyPages.execute(new PropertyPageKey(propertyId, pageable, isPinnedToPrimary()),
+                () -> ticketService.getTicketsForProperty(propertyId, pageable));
+    }
+
+    /**
+     * Efter commit väntar ingen ny läsning av ärendet eller fastighetens lista på en läsning
+     * som började före skrivningen. Utan transaktion gäller det direkt.
+     */
+    public void invalidateAfterCommit(Long ticketId, UUID propertyId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(ticketId, propertyId);
+                }
+            });
+        } else {
+            invalidate(ticketId, propertyId);
+        }
+    }
+
+    private void invalidate(Long ticketId, UUID propertyId) {
+        tickets.forget(key -> key.ticketId().equals(ticketId));
+        propertyPages.forget(key -> key.propertyId().equals(propertyId));
+    }
+
+    private boolean isPinnedToPrimary() {
+        ReadYourWritesTracker tracker = readYourWrites.getIfAvailable();
+        return tracker != null && tracker.isCurrentUserPinned();
+    }
+}
@@ -0,0 +1,171 @@
+package se.fastighet.core.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import se.fastighet.core.entity.Ticket;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samlar ändringar av dagsrollupparna i minnet och skriver dem på schema.
+ * <p>
+ * {@link TicketService} anger vad ett ärende bidrog med före och efter en ändring
+ * ({@link Contribution}). Skillnaden läggs till först när transaktionen har committats, så
+ * en rollback ändrar ingenting. Ändringar av samma rad slås ihop, och var
+ * {@code rollups.flush-interval} skrivs de i en transaktion per fastighet. Misslyckas
+ * skrivningen läggs ändringarna tillbaka till nästa gång. Se docs/performance/reporting-rollups.md.
+ */
+@Service
+@Slf4j
+public class TicketRollupRecorder {
+
+    private final TicketRollupService rollupService;
+    private final boolean enabled;
+    private final Map<UUID, RollupDelta> pending = new ConcurrentHashMap<>();
+
+    public TicketRollupRecorder(
+            TicketRollupService rollupService,
+            MeterRegistry meterRegistry,
+            @Value("${rollups.enabled:true}") boolean enabled) {
+        this.rollupService = rollupService;
+        this.enabled = enabled;
+        Gauge.builder("rollups.pending", pending, Map::size)
+                .description("Rollup-rader med ändringar som ännu inte skrivits")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Vad ett ärende räknas som i rollupparna: skapat på sin skapandedag och, om det är löst
+     * eller stängt med en lösningstid, löst på lösningsdagen.
+     */
+    public record Contribution(UUID propertyId, Long categoryId, Ticket.Priority priority,
+                               LocalDateTime createdAt, LocalDateTime resolvedAt) {
+
+        public static Contribution of(Ticket ticket) {
+            return of(ticket.getProperty().getId(), ticket.getCategory() != null ? ticket.getCategory().getId() : null,
+                    ticket.getPriority(), ticket.getStatus(), ticket.getCreatedAt(), ticket.getResolvedAt());
+        }
+
+        public static Contribution of(UUID propertyId, Long categoryId, Ticket.Priority priority,
+                                      Ticket.Status status, LocalDateTime createdAt, LocalDateTime resolvedAt) {
+            boolean resolved = status == Ticket.Status.RESOLVED || status == Ticket.Status.CLOSED;
+            return new Contribution(propertyId, categoryId, priority, createdAt, resolved ? resolvedAt : null);
+        }
+
+        /**
+         * Lägger bidraget, gånger {@code sign}, till de dagar i {@code [from, to]} det gäller.
+         * {@code null} som gräns betyder obegränsat.
+         */
+        void addTo(Map<UUID, RollupDelta> deltas, int sign, LocalDate from, LocalDate to) {
+            if (createdAt == null) {
+                return;
+            }
+            LocalDate createdDay = createdAt.toLocalDate();
+            if (within(createdDay, from, to)) {
+                delta(deltas, createdDay).addCreated(sign);
+            }
+            if (resolvedAt != null && within(resolvedAt.toLocalDate(), from, to)) {
+                delta(deltas, resolvedAt.toLocalDate()).addResolved(sign, createdAt, resolvedAt);
+            }
+        }
+
+        private RollupDelta delta(Map<UUID, RollupDelta> deltas, LocalDate day) {
+            RollupDelta delta = new RollupDelta(day, propertyId, categoryId, priority);
+            return deltas.computeIfAbsent(delta.getId(), id -> delta);
+        }
+
+        private static boolean within(LocalDate day, LocalDate from, LocalDate to) {
+            return (from == null || !day.isBefore(from)) && (to == null || !day.isAfter(to));
+        }
+    }
+
+    /**
+     * Registrerar att ett ärende gått från {@code before} till {@code after}. {@code null}
+     * betyder att ärendet inte fanns före respektive efter ändringen.
+     */
+    public void record(Contribution before, Contribution after) {
+        if (!enabled || Objects.equals(before, after)) {
+            return;
+        }
+        Map<UUID, RollupDelta> deltas = new HashMap<>();
+        if (before != null) {
+            before.addTo(deltas, -1, null, null);
+        }
+        if (after != null) {
+            after.addTo(deltas, 1, null, null);
+        }
+        deltas.values().removeIf(RollupDelta::isZero);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(deltas.values());
+                }
+            });
+        } else {
+            enqueue(deltas.values());
+        }
+    }
+
+    private void enqueue(Iterable<RollupDelta> deltas) {
+        deltas.forEach(delta -> pending.merge(delta.getId(), delta, RollupDelta::merge));
+    }
+
+    /**
+     * Skriver alla väntande ändringar. Körs på schema, vid avstängning och före en omräkning.
+     */
+    @Scheduled(fixedDelayString = "${rollups.flush-interval:PT10S}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // remove() tar raden atomärt; ändringar som kommer under tiden hamnar i en ny rad
+        Map<UUID, Map<UUID, RollupDelta>> byProperty = new LinkedHashMap<>();
+        for (UUID id : new ArrayList<>(pending.keySet())) {
+            RollupDelta delta = pending.remove(id);
+            if (delta != null) {
+                byProperty.computeIfAbsent(delta.getPropertyId(), property -> new HashMap<>()).put(id, delta);
+            }
+        }
+
+        int written = 0;
+        for (Map.Entry<UUID, Map<UUID, RollupDelta>> entry : byProperty.entrySet()) {
+            try {
+                rollupService.apply(entry.getKey(), entry.getValue());
+                written += entry.getValue().size();
+            } catch (Exception e) {
+                log.warn("Could not write {} rollup rows for property {}, retrying on next flush: {}",
+                        entry.getValue().size(), entry.getKey(), e.getMessage());
+                enqueue(entry.getValue().values());
+            }
+        }
+        log.debug("Flushed {} rollup rows for {} properties", written, byProperty.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            log.warn("{} rollup rows were not written before shutdown, rebuild the affected days", pending.size());
+        }
+    }
+}
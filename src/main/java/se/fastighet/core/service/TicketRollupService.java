@@ -0,0 +1,137 @@
+package se.fastighet.core.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.fastighet.core.diagnostics.StatementBudget;
+import se.fastighet.core.dto.response.RollupRebuildResponse;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketRollup;
+import se.fastighet.core.entity.TicketSnapshot;
+import se.fastighet.core.repository.ArchivedTicketRepository;
+import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.repository.TicketRollupRepository;
+import se.fastighet.core.sharding.AllShards;
+import se.fastighet.core.sharding.ShardKey;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Läser och skriver dagsrollupparna ({@link TicketRollup}). Raderna ligger på samma shard som
+ * fastighetens ärenden. Se docs/performance/reporting-rollups.md.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TicketRollupService {
+
+    private final TicketRollupRepository rollupRepository;
+    private final TicketRepository ticketRepository;
+    private final ArchivedTicketRepository archivedTicketRepository;
+
+    /**
+     * Lägger till ändringarna från {@link TicketRollupRecorder}. Raderna låses under tiden, så
+     * att flera instanser kan skriva samtidigt.
+     */
+    @Transactional
+    public void apply(@ShardKey(ShardKey.Type.PROPERTY) UUID propertyId, Map<UUID, RollupDelta> deltas) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<UUID, TicketRollup> rollups = new HashMap<>();
+        rollupRepository.findAllForUpdate(deltas.keySet()).forEach(rollup -> rollups.put(rollup.getId(), rollup));
+
+        List<TicketRollup> changed = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> {
+            TicketRollup rollup = rollups.computeIfAbsent(id, key -> delta.newRollup());
+            delta.applyTo(rollup, now);
+            changed.add(rollup);
+        });
+        rollupRepository.saveAll(changed);
+    }
+
+    /**
+     * Räknar om fastighetens rader för dagarna {@code from}–{@code to} från ärendena och arkivet.
+     * Rader utan ärenden nollställs i stället för att tas bort, så att en pågående shardflytt
+     * inte ser rader försvinna.
+     */
+    @Transactional
+    public RollupRebuildResponse rebuild(@ShardKey(ShardKey.Type.PROPERTY) UUID propertyId,
+                                         LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        LocalDateTime fromTime = from.atStartOfDay();
+        LocalDateTime toTime = to.plusDays(1).atStartOfDay();
+        Map<UUID, RollupDelta> totals = new HashMap<>();
+        long tickets = 0;
+
+        try (Stream<Object[]> rows = ticketRepository.streamForRollup(propertyId, fromTime, toTime)) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); tickets++) {
+                Object[] row = it.next();
+                TicketRollupRecorder.Contribution.of(propertyId, (Long) row[4], (Ticket.Priority) row[3],
+                                (Ticket.Status) row[2], (LocalDateTime) row[0], (LocalDateTime) row[1])
+                        .addTo(totals, 1, from, to);
+            }
+        }
+        try (Stream<Object[]> rows = archivedTicketRepository.streamForRollup(propertyId, fromTime, toTime)) {
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); tickets++) {
+                Object[] row = it.next();
+                TicketSnapshot snapshot = (TicketSnapshot) row[3];
+                TicketRollupRecorder.Contribution.of(propertyId, snapshot.getCategoryId(), snapshot.getPriority(),
+                                (Ticket.Status) row[2], (LocalDateTime) row[0], (LocalDateTime) row[1])
+                        .addTo(totals, 1, from, to);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<TicketRollup> rollups = new ArrayList<>();
+        for (TicketRollup rollup : rollupRepository.findForRebuild(propertyId, from, to)) {
+            rollup.setCreatedCount(0);
+            rollup.setResolvedCount(0);
+            rollup.setResolutionMinutes(0);
+            rollup.setResolutionHistogram(new long[0]);
+            rollup.setUpdatedAt(now);
+            RollupDelta total = totals.remove(rollup.getId());
+            if (total != null) {
+                total.applyTo(rollup, now);
+            }
+            rollups.add(rollup);
+        }
+        totals.values().forEach(total -> {
+            TicketRollup rollup = total.newRollup();
+            total.applyTo(rollup, now);
+            rollups.add(rollup);
+        });
+        rollupRepository.saveAll(rollups);
+
+        long millis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        log.info("Rebuilt {} rollup rows from {} tickets for property {} ({} to {}) in {} ms",
+                rollups.size(), tickets, propertyId, from, to, millis);
+        return RollupRebuildResponse.builder()
+                .propertyId(propertyId)
+                .from(from)
+                .to(to)
+                .tickets(tickets)
+                .rows(rollups.size())
+                .durationMillis(millis)
+                .build();
+    }
+
+    /**
+     * Raderna för fastigheterna i perioden, från alla shards.
+     */
+    @Transactional(readOnly = true)
+    @StatementBudget(1)
+    @AllShards
+    public List<TicketRollup> findRollups(Collection<UUID> propertyIds, LocalDate from, LocalDate to) {
+        return rollupRepository.findForReport(propertyIds, from, to);
+    }
+}
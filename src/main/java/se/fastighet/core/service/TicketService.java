@@ -2,23 +2,35 @@ package se.fastighet.core.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import se.fastighet.core.diagnostics.StatementBudget;
 import se.fastighet.core.dto.request.AddCommentRequest;
 import se.fastighet.core.dto.request.CreateTicketRequest;
+import se.fastighet.core.dto.request.TicketFields;
 import se.fastighet.core.dto.request.UpdateTicketRequest;
 import se.fastighet.core.dto.response.TicketListResponse;
 import se.fastighet.core.dto.response.TicketResponse;
 import se.fastighet.core.entity.*;
 import se.fastighet.core.event.TicketEventPublisher;
+import se.fastighet.core.exception.InvalidRequestException;
 import se.fastighet.core.exception.ResourceNotFoundException;
 import se.fastighet.core.exception.UnauthorizedException;
 import se.fastighet.core.repository.*;
 import se.fastighet.core.security.UserPrincipal;
+import se.fastighet.core.sharding.AllShards;
+import se.fastighet.core.sharding.ShardDirectory;
+import se.fastighet.core.sharding.ShardKey;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -28,13 +40,21 @@ import java.util.UUID;
 public class TicketService {
 
     private final TicketRepository ticketRepository;
+    private final TicketCommentRepository commentRepository;
     private final UserRepository userRepository;
     private final PropertyRepository propertyRepository;
     private final UnitRepository unitRepository;
     private final CategoryRepository categoryRepository;
     private final TicketEventPublisher eventPublisher;
-
-    public TicketResponse createTicket(CreateTicketRequest request, UserPrincipal principal) {
+    private final AttachmentService attachmentService;
+    private final ArchivedTicketRepository archivedTicketRepository;
+    private final ObjectProvider<ShardDirectory> shardDirectory;
+    private final TicketRollupRecorder rollupRecorder;
+    private final ObjectProvider<TicketReadCoalescer> readCoalescer; // Beror i sin tur på TicketService
+
+    public TicketResponse createTicket(
+            @ShardKey(value = ShardKey.Type.PROPERTY, property = "propertyId") CreateTicketRequest request,
+            UserPrincipal principal, TicketFields fields) {
         User reporter = principal.getUser();
 
         Property property = propertyRepository.findById(request.getPropertyId())
@@ -70,47 +90,103 @@ public class TicketService {
         ticket.addHistoryEntry(history);
 
         ticket = ticketRepository.save(ticket);
+        Long ticketId = ticket.getId();
+        shardDirectory.ifAvailable(directory -> directory.registerTicket(ticketId, property.getId()));
+        rollupRecorder.record(null, TicketRollupRecorder.Contribution.of(ticket));
+        invalidateReads(ticket);
 
         // Publicera event
         eventPublisher.publishTicketCreated(ticket);
 
         log.info("Ticket created: {} by user {}", ticket.getId(), reporter.getEmail());
-        return mapToResponse(ticket, principal);
+        return mapToResponse(ticket, principal, fields);
     }
 
     @Transactional(readOnly = true)
-    public TicketResponse getTicket(Long ticketId, UserPrincipal principal) {
-        Ticket ticket = ticketRepository.findById(ticketId)
-                .orElseThrow(() -> new ResourceNotFoundException("Ärende hittades inte"));
+    @StatementBudget(4) // Ärende med relationer, kommentarer, författare, bilagor
+    public TicketResponse getTicket(@ShardKey(ShardKey.Type.TICKET) Long ticketId, UserPrincipal principal,
+                                    TicketFields fields) {
+        Ticket ticket = findForResponse(ticketId, fields).orElse(null);
+        if (ticket == null) {
+            // Gamla stängda ärenden ligger i arkivet, se TicketArchiveService
+            return archivedTicketRepository.findById(ticketId)
+                    .map(archived -> mapArchivedToResponse(archived, principal, fields))
+                    .orElseThrow(() -> new ResourceNotFoundException("Ärende hittades inte"));
+        }
 
-        return mapToResponse(ticket, principal);
+        return mapToResponse(ticket, principal, fields);
+    }
+
+    /**
+     * Standardurvalet läser alla relationer som detaljvyn visar. Ett smalare urval läser bara
+     * de relationer som efterfrågats (fetch graph); övriga lämnas olästa.
+     */
+    private Optional<Ticket> findForResponse(Long ticketId, TicketFields fields) {
+        if (fields.equals(TicketFields.DEFAULT)) {
+            return ticketRepository.findWithDetailsById(ticketId);
+        }
+        Specification<Ticket> byId = (root, query, cb) -> cb.equal(root.get("id"), ticketId);
+        return ticketRepository.findBy(byId, query -> query.project(fields.associations()).first());
     }
 
     @Transactional(readOnly = true)
-    public Page<TicketListResponse> getTicketsForProperty(UUID propertyId, Pageable pageable) {
-        return ticketRepository.findByPropertyId(propertyId, pageable)
-                .map(this::mapToListResponse);
+    @StatementBudget(2) // Sida med antal kommentarer, antal ärenden
+    public Page<TicketListResponse> getTicketsForProperty(@ShardKey(ShardKey.Type.PROPERTY) UUID propertyId,
+                                                          Pageable pageable) {
+        return ticketRepository.findListByPropertyId(propertyId, pageable);
     }
 
     @Transactional(readOnly = true)
+    @StatementBudget(2)
+    @AllShards
     public Page<TicketListResponse> getMyTickets(UserPrincipal principal, Pageable pageable) {
-        return ticketRepository.findByReporterId(principal.getId(), pageable)
-                .map(this::mapToListResponse);
+        return ticketRepository.findListByReporterId(principal.getId(), pageable);
     }
 
     @Transactional(readOnly = true)
+    @StatementBudget(2)
+    @AllShards
     public Page<TicketListResponse> getAssignedTickets(UserPrincipal principal, Pageable pageable) {
-        return ticketRepository.findByAssigneeId(principal.getId(), pageable)
-                .map(this::mapToListResponse);
+        return ticketRepository.findListByAssigneeId(principal.getId(), pageable);
+    }
+
+    /**
+     * Antal öppna ärenden per prioritet, för mätvärden.
+     */
+    @Transactional(readOnly = true)
+    @AllShards
+    public Map<Ticket.Priority, Long> countOpenByPriority() {
+        return toCounts(ticketRepository.countOpenByPriority());
+    }
+
+    /**
+     * Antal ärenden per status, för mätvärden.
+     */
+    @Transactional(readOnly = true)
+    @AllShards
+    public Map<Ticket.Status, Long> countByStatus() {
+        return toCounts(ticketRepository.countByStatus());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> Map<E, Long> toCounts(List<Object[]> rows) {
+        Map<E, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put((E) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
     }
 
-    public TicketResponse updateTicket(Long ticketId, UpdateTicketRequest request, UserPrincipal principal) {
+    public TicketResponse updateTicket(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                       UpdateTicketRequest request, UserPrincipal principal,
+                                       TicketFields fields) {
         Ticket ticket = ticketRepository.findById(ticketId)
                 .orElseThrow(() -> new ResourceNotFoundException("Ärende hittades inte"));
 
         User user = principal.getUser();
         String oldStatus = ticket.getStatus().name();
         boolean statusChanged = false;
+        TicketRollupRecorder.Contribution rollupBefore = TicketRollupRecorder.Contribution.of(ticket);
 
         if (request.getTitle() != null) {
             ticket.setTitle(request.getTitle());
@@ -144,16 +220,19 @@ public class TicketService {
         }
 
         ticket = ticketRepository.save(ticket);
+        rollupRecorder.record(rollupBefore, TicketRollupRecorder.Contribution.of(ticket));
+        invalidateReads(ticket);
 
         if (statusChanged) {
             eventPublisher.publishStatusChanged(ticket, oldStatus, user);
         }
 
         log.info("Ticket updated: {} by user {}", ticketId, principal.getEmail());
-        return mapToResponse(ticket, principal);
+        return mapToResponse(ticket, principal, fields);
     }
 
-    public TicketResponse assignTicket(Long ticketId, UUID assigneeId, UserPrincipal principal) {
+    public TicketResponse assignTicket(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                       UUID assigneeId, UserPrincipal principal, TicketFields fields) {
         Ticket ticket = ticketRepository.findById(ticketId)
                 .orElseThrow(() -> new ResourceNotFoundException("Ärende hittades inte"));
 
@@ -190,11 +269,12 @@ public class TicketService {
                 null, assignee.getName());
 
         ticket = ticketRepository.save(ticket);
+        invalidateReads(ticket);
 
         eventPublisher.publishTicketAssigned(ticket, principal.getUser());
 
         log.info("Ticket {} assigned to {} by {}", ticketId, assignee.getEmail(), principal.getEmail());
-        return mapToResponse(ticket, principal);
+        return mapToResponse(ticket, principal, fields);
     }
 
     private boolean isAdminForProperty(User user, UUID propertyId) {
@@ -202,9 +282,12 @@ public class TicketService {
                 .anyMatch(property -> property.getId().equals(propertyId));
     }
 
-    public TicketResponse addComment(Long ticketId, AddCommentRequest request, UserPrincipal principal) {
-        Ticket ticket = ticketRepository.findById(ticketId)
-                .orElseThrow(() -> new ResourceNotFoundException("Ärende hittades inte"));
+    public TicketResponse addComment(@ShardKey(ShardKey.Type.TICKET) Long ticketId,
+                                     AddCommentRequest request, UserPrincipal principal, TicketFields fields) {
+        Ticket ticket = ticketRepository.findById(ticketId).orElseThrow(() ->
+                archivedTicketRepository.existsById(ticketId)
+                        ? new InvalidRequestException("Ärendet är arkiverat och kan inte kommenteras")
+                        : new ResourceNotFoundException("Ärende hittades inte"));
 
         // Endast styrelse/admin/tekniker kan skapa interna kommentarer
         if (request.isInternal() && principal.isResident()) {
@@ -223,11 +306,21 @@ public class TicketService {
                 null, "Kommentar tillagd");
 
         ticket = ticketRepository.save(ticket);
+        invalidateReads(ticket);
 
         eventPublisher.publishCommentAdded(ticket, comment);
 
         log.info("Comment added to ticket {} by {}", ticketId, principal.getEmail());
-        return mapToResponse(ticket, principal);
+        return mapToResponse(ticket, principal, fields);
+    }
+
+    /**
+     * Nya läsningar efter commit ska inte dela svar med en läsning som började före ändringen.
+     */
+    private void invalidateReads(Ticket ticket) {
+        Long ticketId = ticket.getId();
+        UUID propertyId = ticket.getProperty().getId();
+        readCoalescer.ifAvailable(coalescer -> coalescer.invalidateAfterCommit(ticketId, propertyId));
     }
 
     private void addHistory(Ticket ticket, User changedBy, TicketHistory.ChangeType changeType,
@@ -241,9 +334,18 @@ public class TicketService {
         ticket.addHistoryEntry(history);
     }
 
-    private TicketResponse mapToResponse(Ticket ticket, UserPrincipal principal) {
+    TicketResponse mapToResponse(Ticket ticket, UserPrincipal principal) {
+        return mapToResponse(ticket, principal, TicketFields.DEFAULT);
+    }
+
+    /**
+     * Mappar bara de delar som finns i {@code fields}. Relationer utanför urvalet rörs inte och
+     * läses därför inte heller in.
+     */
+    TicketResponse mapToResponse(Ticket ticket, UserPrincipal principal, TicketFields fields) {
         TicketResponse.TicketResponseBuilder builder = TicketResponse.builder()
                 .id(ticket.getId())
+                .fields(fields)
                 .title(ticket.getTitle())
                 .description(ticket.getDescription())
                 .status(ticket.getStatus())
@@ -253,23 +355,17 @@ public class TicketService {
                 .resolvedAt(ticket.getResolvedAt());
 
         // Reporter
-        builder.reporter(TicketResponse.UserSummary.builder()
-                .id(ticket.getReporter().getId())
-                .name(ticket.getReporter().getName())
-                .email(ticket.getReporter().getEmail())
-                .build());
+        if (fields.has(TicketFields.Field.REPORTER)) {
+            builder.reporter(toUserSummary(ticket.getReporter()));
+        }
 
         // Assignee
-        if (ticket.getAssignee() != null) {
-            builder.assignee(TicketResponse.UserSummary.builder()
-                    .id(ticket.getAssignee().getId())
-                    .name(ticket.getAssignee().getName())
-                    .email(ticket.getAssignee().getEmail())
-                    .build());
+        if (fields.has(TicketFields.Field.ASSIGNEE) && ticket.getAssignee() != null) {
+            builder.assignee(toUserSummary(ticket.getAssignee()));
         }
 
         // Category
-        if (ticket.getCategory() != null) {
+        if (fields.has(TicketFields.Field.CATEGORY) && ticket.getCategory() != null) {
             builder.category(TicketResponse.CategoryResponse.builder()
                     .id(ticket.getCategory().getId())
                     .name(ticket.getCategory().getName())
@@ -278,14 +374,16 @@ public class TicketService {
         }
 
         // Property
-        builder.property(TicketResponse.PropertySummary.builder()
-                .id(ticket.getProperty().getId())
-                .name(ticket.getProperty().getName())
-                .address(ticket.getProperty().getAddress())
-                .build());
+        if (fields.has(TicketFields.Field.PROPERTY)) {
+            builder.property(TicketResponse.PropertySummary.builder()
+                    .id(ticket.getProperty().getId())
+                    .name(ticket.getProperty().getName())
+                    .address(ticket.getProperty().getAddress())
+                    .build());
+        }
 
         // Unit
-        if (ticket.getUnit() != null) {
+        if (fields.has(TicketFields.Field.UNIT) && ticket.getUnit() != null) {
             builder.unit(TicketResponse.UnitSummary.builder()
                     .id(ticket.getUnit().getId())
                     .unitNumber(ticket.getUnit().getUnitNumber())
@@ -294,50 +392,121 @@ public class TicketService {
         }
 
         // Comments - filtrera bort interna kommentarer för boende
-        builder.comments(ticket.getComments().stream()
-                .filter(c -> !c.isInternal() || !principal.isResident())
-                .map(c -> TicketResponse.CommentResponse.builder()
-                        .id(c.getId())
-                        .content(c.getContent())
-                        .internal(c.isInternal())
-                        .createdAt(c.getCreatedAt())
-                        .author(TicketResponse.UserSummary.builder()
-                                .id(c.getAuthor().getId())
-                                .name(c.getAuthor().getName())
-                                .email(c.getAuthor().getEmail())
-                                .build())
-                        .build())
-                .toList());
+        List<TicketResponse.CommentResponse> comments = null;
+        if (fields.has(TicketFields.Field.COMMENTS)) {
+            comments = ticket.getComments().stream()
+                    .filter(c -> !c.isInternal() || !principal.isResident())
+                    .map(this::toCommentResponse)
+                    .toList();
+            builder.comments(comments);
+        }
+
+        // Senaste kommentaren: ur listan om den redan är läst, annars en egen fråga
+        if (fields.has(TicketFields.Field.LATEST_COMMENT)) {
+            if (comments != null) {
+                builder.latestComment(comments.isEmpty() ? null : comments.get(comments.size() - 1));
+            } else {
+                Long ticketId = ticket.getId();
+                Optional<TicketComment> latest = principal.isResident()
+                        ? commentRepository.findFirstByTicketIdAndInternalFalseOrderByCreatedAtDescIdDesc(ticketId)
+                        : commentRepository.findFirstByTicketIdOrderByCreatedAtDescIdDesc(ticketId);
+                builder.latestComment(latest.map(this::toCommentResponse).orElse(null));
+            }
+        }
 
         // Attachments
-        builder.attachments(ticket.getAttachments().stream()
-                .map(a -> TicketResponse.AttachmentResponse.builder()
-                        .id(a.getId())
-                        .fileName(a.getFileName())
-                        .contentType(a.getContentType())
-                        .fileSize(a.getFileSize())
-                        .uploadedAt(a.getUploadedAt())
+        if (fields.has(TicketFields.Field.ATTACHMENTS)) {
+            builder.attachments(ticket.getAttachments().stream()
+                    .map(attachmentService::mapToResponse)
+                    .toList());
+        }
+
+        return builder.build();
+    }
+
+    private TicketResponse.CommentResponse toCommentResponse(TicketComment comment) {
+        return TicketResponse.CommentResponse.builder()
+                .id(comment.getId())
+                .content(comment.getContent())
+                .internal(comment.isInternal())
+                .createdAt(comment.getCreatedAt())
+                .author(toUserSummary(comment.getAuthor()))
+                .build();
+    }
+
+    private static TicketResponse.UserSummary toUserSummary(User user) {
+        return TicketResponse.UserSummary.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .build();
+    }
+
+    /**
+     * Arkivet har hela ärendet i ögonblicksbilden, så urvalet påverkar bara vad som skrivs.
+     */
+    TicketResponse mapArchivedToResponse(ArchivedTicket archived, UserPrincipal principal, TicketFields fields) {
+        TicketSnapshot snapshot = archived.getSnapshot();
+        TicketResponse.TicketResponseBuilder builder = TicketResponse.builder()
+                .id(archived.getId())
+                .fields(fields)
+                .title(snapshot.getTitle())
+                .description(snapshot.getDescription())
+                .status(archived.getStatus())
+                .priority(snapshot.getPriority())
+                .reporter(toUserSummary(snapshot.getReporter()))
+                .assignee(toUserSummary(snapshot.getAssignee()))
+                .property(TicketResponse.PropertySummary.builder()
+                        .id(archived.getPropertyId())
+                        .name(snapshot.getPropertyName())
+                        .address(snapshot.getPropertyAddress())
                         .build())
-                .toList());
+                .attachments(List.of()) // Ärenden med bilagor arkiveras inte
+                .createdAt(archived.getCreatedAt())
+                .updatedAt(snapshot.getUpdatedAt())
+                .resolvedAt(archived.getResolvedAt());
+
+        if (snapshot.getCategoryId() != null) {
+            builder.category(TicketResponse.CategoryResponse.builder()
+                    .id(snapshot.getCategoryId())
+                    .name(snapshot.getCategoryName())
+                    .icon(snapshot.getCategoryIcon())
+                    .build());
+        }
+
+        if (snapshot.getUnitId() != null) {
+            builder.unit(TicketResponse.UnitSummary.builder()
+                    .id(snapshot.getUnitId())
+                    .unitNumber(snapshot.getUnitNumber())
+                    .floor(snapshot.getUnitFloor())
+                    .build());
+        }
+
+        // Samma filtrering av interna kommentarer som för aktiva ärenden
+        List<TicketResponse.CommentResponse> comments = snapshot.getComments().stream()
+                .filter(c -> !c.internal() || !principal.isResident())
+                .map(c -> TicketResponse.CommentResponse.builder()
+                        .id(c.id())
+                        .content(c.content())
+                        .internal(c.internal())
+                        .createdAt(c.createdAt())
+                        .author(toUserSummary(c.author()))
+                        .build())
+                .toList();
+        builder.comments(comments);
+        builder.latestComment(comments.isEmpty() ? null : comments.get(comments.size() - 1));
 
         return builder.build();
     }
 
-    private TicketListResponse mapToListResponse(Ticket ticket) {
-        return TicketListResponse.builder()
-                .id(ticket.getId())
-                .title(ticket.getTitle())
-                .categoryName(ticket.getCategory() != null ? ticket.getCategory().getName() : null)
-                .categoryIcon(ticket.getCategory() != null ? ticket.getCategory().getIcon() : null)
-                .status(ticket.getStatus())
-                .priority(ticket.getPriority())
-                .reporterName(ticket.getReporter().getName())
-                .assigneeName(ticket.getAssignee() != null ? ticket.getAssignee().getName() : null)
-                .propertyName(ticket.getProperty().getName())
-                .unitNumber(ticket.getUnit() != null ? ticket.getUnit().getUnitNumber() : null)
-                .commentCount(ticket.getComments().size())
-                .createdAt(ticket.getCreatedAt())
-                .updatedAt(ticket.getUpdatedAt())
+    private static TicketResponse.UserSummary toUserSummary(TicketSnapshot.Person person) {
+        if (person == null) {
+            return null;
+        }
+        return TicketResponse.UserSummary.builder()
+                .id(person.id())
+                .name(person.name())
+                .email(person.email())
                 .build();
     }
 }
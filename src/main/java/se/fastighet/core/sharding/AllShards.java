@@ -0,0 +1,23 @@
+package se.fastighet.core.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Kör metoden en gång per shard och slår ihop resultaten (scatter-gather).
+ * <ul>
+ *     <li>{@code Page}: sidorna sorteras ihop enligt {@code Pageable}-parameterns sortering</li>
+ *     <li>{@code List}: listorna läggs efter varandra</li>
+ *     <li>{@code Map} med tal som värden och tal: summeras</li>
+ *     <li>{@code void}: körs bara på varje shard, t.ex. schemalagda jobb</li>
+ * </ul>
+ * Utan sharding påslaget körs metoden som vanligt.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AllShards {
+}
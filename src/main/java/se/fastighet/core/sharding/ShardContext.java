@@ -0,0 +1,44 @@
+package se.fastighet.core.sharding;
+
+/**
+ * Vilken shard den aktuella tråden arbetar mot. Sätts av {@link ShardRoutingAspect} innan
+ * transaktionen startar och läses av {@link ShardRoutingDataSource} när anslutningen hämtas.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Aktuell shard, eller {@code null} utanför en shardad operation (då används hemshardens data).
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    public static Scope open(String shardId) {
+        String previous = CURRENT.get();
+        CURRENT.set(shardId);
+        return new Scope(previous);
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final String previous;
+
+        private Scope(String previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package se.fastighet.core.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import se.fastighet.core.entity.ShardAssignment;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Katalogen över vilken shard varje fastighet ligger på, lagrad i hemsharden
+ * ({@code shard_directory} och {@code ticket_directory}).
+ * <p>
+ * Uppslagningar cachas i {@code sharding.directory.cache-ttl}. Andra instanser ser därför en
+ * flytt först efter den tiden, vilket {@link ShardRebalancer} väntar ut innan den kopierar
+ * den sista deltan. Ärende → fastighet ändras aldrig och cachas utan utgångstid.
+ */
+@Slf4j
+public class ShardDirectory {
+
+    private static final String SELECT_ASSIGNMENT =
+            "SELECT shard_id, target_shard, state FROM shard_directory WHERE property_id = ?";
+
+    private final JdbcTemplate home;
+    private final ShardSet shardSet;
+    private final Duration cacheTtl;
+    private final Map<UUID, Cached> assignments = new ConcurrentHashMap<>();
+    private final Map<Long, UUID> ticketProperties;
+
+    public ShardDirectory(ShardSet shardSet, Duration cacheTtl, int ticketCacheSize) {
+        this.home = new JdbcTemplate(shardSet.dataSource(shardSet.home()));
+        this.shardSet = shardSet;
+        this.cacheTtl = cacheTtl;
+        this.ticketProperties = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UUID> eldest) {
+                return size() > ticketCacheSize;
+            }
+        });
+    }
+
+    public record Assignment(UUID propertyId, String shardId, String targetShard, ShardAssignment.State state) {
+
+        public boolean isMoving() {
+            return state == ShardAssignment.State.MOVING;
+        }
+    }
+
+    private record Cached(Assignment assignment, long expiresAt) {
+    }
+
+    /**
+     * Fastighetens placering. En fastighet som inte finns i katalogen placeras första gången
+     * den används: på hemsharden om den redan har ärenden där (data från före shardingen),
+     * annars på den shard som fastighetens id hashar till.
+     */
+    public Assignment assignmentFor(UUID propertyId) {
+        Cached cached = assignments.get(propertyId);
+        if (cached != null && cached.expiresAt() > System.nanoTime()) {
+            return cached.assignment();
+        }
+
+        Assignment assignment = load(propertyId).orElseGet(() -> place(propertyId));
+        assignments.put(propertyId, new Cached(assignment, System.nanoTime() + cacheTtl.toNanos()));
+        return assignment;
+    }
+
+    /**
+     * Shard för ett ärende, eller {@code null} om ärendet inte finns på någon shard.
+     */
+    public Assignment assignmentForTicket(Long ticketId) {
+        UUID propertyId = ticketProperties.get(ticketId);
+        if (propertyId == null) {
+            propertyId = home.query("SELECT property_id FROM ticket_directory WHERE ticket_id = ?",
+                    (rs, rowNum) -> rs.getObject(1, UUID.class), ticketId).stream().findFirst()
+                    .orElseGet(() -> probe(ticketId));
+            if (propertyId == null) {
+                return null;
+            }
+            ticketProperties.put(ticketId, propertyId);
+        }
+        return assignmentFor(propertyId);
+    }
+
+    /**
+     * Registrerar ett nytt ärende när den pågående transaktionen har committats.
+     * Misslyckas registreringen hittas ärendet ändå genom att shardarna genomsöks.
+     */
+    public void registerTicket(Long ticketId, UUID propertyId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    insertTicket(ticketId, propertyId);
+                }
+            });
+        } else {
+            insertTicket(ticketId, propertyId);
+        }
+    }
+
+    public List<Assignment> moving() {
+        return home.query("SELECT property_id, shard_id, target_shard, state FROM shard_directory WHERE state = ?",
+                (rs, rowNum) -> new Assignment(rs.getObject(1, UUID.class), rs.getString(2), rs.getString(3),
+                        ShardAssignment.State.valueOf(rs.getString(4))),
+                ShardAssignment.State.MOVING.name());
+    }
+
+    /**
+     * Markerar fastigheten som under flytt. Returnerar {@code false} om den redan flyttas.
+     */
+    public boolean beginMove(UUID propertyId, String targetShard) {
+        assignmentFor(propertyId); // Se till att raden finns
+        int updated = home.update("UPDATE shard_directory SET state = ?, target_shard = ?, version = version + 1, "
+                        + "updated_at = ? WHERE property_id = ? AND state = ? AND shard_id <> ?",
+                ShardAssignment.State.MOVING.name(), targetShard, now(), propertyId,
+                ShardAssignment.State.ACTIVE.name(), targetShard);
+        invalidate(propertyId);
+        return updated == 1;
+    }
+
+    public void completeMove(UUID propertyId) {
+        home.update("UPDATE shard_directory SET shard_id = target_shard, target_shard = NULL, state = ?, "
+                        + "version = version + 1, updated_at = ? WHERE property_id = ? AND state = ?",
+                ShardAssignment.State.ACTIVE.name(), now(), propertyId, ShardAssignment.State.MOVING.name());
+        invalidate(propertyId);
+    }
+
+    public void abortMove(UUID propertyId) {
+        home.update("UPDATE shard_directory SET target_shard = NULL, state = ?, version = version + 1, "
+                        + "updated_at = ? WHERE property_id = ? AND state = ?",
+                ShardAssignment.State.ACTIVE.name(), now(), propertyId, ShardAssignment.State.MOVING.name());
+        invalidate(propertyId);
+    }
+
+    public void invalidate(UUID propertyId) {
+        assignments.remove(propertyId);
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    private Optional<Assignment> load(UUID propertyId) {
+        return home.query(SELECT_ASSIGNMENT,
+                (rs, rowNum) -> new Assignment(propertyId, rs.getString(1), rs.getString(2),
+                        ShardAssignment.State.valueOf(rs.getString(3))),
+                propertyId).stream().findFirst();
+    }
+
+    private Assignment place(UUID propertyId) {
+        if (!exists("SELECT CASE WHEN EXISTS (SELECT 1 FROM properties WHERE id = ?) THEN 1 ELSE 0 END", propertyId)) {
+            // Okänd fastighet: routas till hemsharden, där uppslagningen ger 404, men sparas inte
+            return new Assignment(propertyId, shardSet.home(), null, ShardAssignment.State.ACTIVE);
+        }
+        String shardId = hasTicketsOnHome(propertyId) ? shardSet.home() : hashPlacement(propertyId);
+        try {
+            home.update("INSERT INTO shard_directory (property_id, shard_id, state, version, updated_at) "
+                            + "VALUES (?, ?, ?, 0, ?)",
+                    propertyId, shardId, ShardAssignment.State.ACTIVE.name(), now());
+            log.info("Placed property {} on shard {}", propertyId, shardId);
+        } catch (DataIntegrityViolationException e) {
+            // En annan tråd eller instans placerade fastigheten först
+            return load(propertyId).orElseThrow(() -> e);
+        }
+        return new Assignment(propertyId, shardId, null, ShardAssignment.State.ACTIVE);
+    }
+
+    // Arkiverade ärenden räknas också, de ligger kvar på samma shard som fastighetens övriga data
+    private boolean hasTicketsOnHome(UUID propertyId) {
+        return exists("SELECT CASE WHEN EXISTS (SELECT 1 FROM tickets WHERE property_id = ?) "
+                + "OR EXISTS (SELECT 1 FROM ticket_archive WHERE property_id = ?) THEN 1 ELSE 0 END",
+                propertyId, propertyId);
+    }
+
+    private boolean exists(String sql, UUID... parameters) {
+        Integer exists = home.queryForObject(sql, Integer.class, (Object[]) parameters);
+        return exists != null && exists == 1;
+    }
+
+    private String hashPlacement(UUID propertyId) {
+        List<String> ids = shardSet.ids();
+        return ids.get(Math.floorMod(propertyId.hashCode(), ids.size()));
+    }
+
+    private UUID probe(Long ticketId) {
+        for (String shardId : shardSet.ids()) {
+            List<UUID> found = new JdbcTemplate(shardSet.dataSource(shardId)).query(
+                    "SELECT property_id FROM tickets WHERE id = ? "
+                            + "UNION ALL SELECT property_id FROM ticket_archive WHERE id = ?",
+                    (rs, rowNum) -> rs.getObject(1, UUID.class), ticketId, ticketId);
+            if (!found.isEmpty()) {
+                log.debug("Ticket {} missing from directory, found on shard {}", ticketId, shardId);
+                insertTicket(ticketId, found.get(0));
+                return found.get(0);
+            }
+        }
+        return null;
+    }
+
+    private void insertTicket(Long ticketId, UUID propertyId) {
+        try {
+            home.update("INSERT INTO ticket_directory (ticket_id, property_id) VALUES (?, ?)", ticketId, propertyId);
+        } catch (DataIntegrityViolationException e) {
+            // Redan registrerat
+        } catch (RuntimeException e) {
+            log.warn("Failed to register ticket {} in shard directory: {}", ticketId, e.getMessage());
+        }
+        ticketProperties.put(ticketId, propertyId);
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+}
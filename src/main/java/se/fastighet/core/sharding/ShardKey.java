@@ -0,0 +1,36 @@
+package se.fastighet.core.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Markerar parametern som avgör vilken shard anropet ska köras mot.
+ * <pre>{@code
+ * public TicketResponse getTicket(@ShardKey(ShardKey.Type.TICKET) Long ticketId, ...)
+ * public TicketResponse createTicket(@ShardKey(value = ShardKey.Type.PROPERTY, property = "propertyId")
+ *                                    CreateTicketRequest request, ...)
+ * }</pre>
+ * Utan sharding påslaget har annoteringen ingen effekt.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShardKey {
+
+    Type value();
+
+    /**
+     * Egenskap på parametern som innehåller nyckeln, om parametern inte är nyckeln själv.
+     */
+    String property() default "";
+
+    enum Type {
+        /** Fastighetens id (UUID). */
+        PROPERTY,
+        /** Ärendets id (Long); fastigheten slås upp i katalogen. */
+        TICKET
+    }
+}
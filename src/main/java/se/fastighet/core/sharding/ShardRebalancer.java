@@ -0,0 +1,333 @@
+package se.fastighet.core.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.fastighet.core.dto.response.ShardMoveResponse;
+import se.fastighet.core.exception.InvalidRequestException;
+import se.fastighet.core.exception.ResourceNotFoundException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Flyttar en fastighets ärenden till en annan shard medan tjänsten är i drift.
+ * <ol>
+ *     <li>Kopierar alla rader i omgångar, med läsningar och skrivningar igång mot källan</li>
+ *     <li>Markerar fastigheten som MOVING och väntar ut katalogcachen och pågående
+ *         transaktioner; därefter avvisas skrivningar med 503</li>
+ *     <li>Kopierar det som ändrats sedan starten och tar bort det som tagits bort</li>
+ *     <li>Jämför antalet rader, justerar blobbarnas referensräknare och pekar om katalogen</li>
+ *     <li>Tar bort raderna från källan när läsningar som redan routats dit hunnit bli klara</li>
+ * </ol>
+ * Misslyckas något före omläggningen återgår fastigheten till ACTIVE på källan och den
+ * halvfärdiga kopian ligger kvar på målet; en ny flytt skriver över den.
+ */
+@Slf4j
+public class ShardRebalancer implements DisposableBean {
+
+    private static final String BY_PROPERTY = "property_id = ?";
+    private static final String BY_TICKET = "ticket_id IN (SELECT id FROM tickets WHERE property_id = ?)";
+
+    /**
+     * Tabellerna i den ordning de kopieras; borttagning sker i omvänd ordning.
+     * {@code changedSince} är villkoret för deltan, {@code null} = kopiera om allt.
+     */
+    private static final List<Table> TABLES = List.of(
+            new Table("tickets", BY_PROPERTY, "(updated_at >= ? OR created_at >= ?)", false),
+            new Table("ticket_comments", BY_TICKET, "created_at >= ?", false),
+            new Table("ticket_history", BY_TICKET, "changed_at >= ?", false),
+            new Table("ticket_attachments", BY_TICKET, null, true),
+            new Table("attachment_uploads", BY_TICKET, null, true),
+            new Table("ticket_archive", BY_PROPERTY, "archived_at >= ?", false),
+            new Table("ticket_rollups", BY_PROPERTY, "updated_at >= ?", false)
+    );
+
+    private record Table(String name, String filter, String changedSince, boolean removable) {
+    }
+
+    private final ShardSet shardSet;
+    private final ShardDirectory directory;
+    private final int chunkSize;
+    private final Duration freezeGrace;
+    private final Duration cleanupDelay;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-rebalancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<UUID, Move> moves = new ConcurrentHashMap<>();
+
+    public ShardRebalancer(ShardSet shardSet, ShardDirectory directory, int chunkSize,
+                           Duration freezeGrace, Duration cleanupDelay) {
+        this.shardSet = shardSet;
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        this.freezeGrace = freezeGrace;
+        this.cleanupDelay = cleanupDelay;
+    }
+
+    public enum Phase {
+        QUEUED, COPYING, FROZEN, COPYING_DELTA, VERIFYING, SWITCHED, COMPLETED, FAILED
+    }
+
+    private static final class Move {
+        final UUID propertyId;
+        final String sourceShard;
+        final String targetShard;
+        final Instant queuedAt = Instant.now();
+        final Map<String, Long> copiedRows = new ConcurrentHashMap<>();
+        volatile Phase phase = Phase.QUEUED;
+        volatile Instant finishedAt;
+        volatile String error;
+
+        Move(UUID propertyId, String sourceShard, String targetShard) {
+            this.propertyId = propertyId;
+            this.sourceShard = sourceShard;
+            this.targetShard = targetShard;
+        }
+    }
+
+    /**
+     * Köar en flytt. Flyttar körs en i taget i bakgrunden.
+     */
+    public ShardMoveResponse startMove(UUID propertyId, String targetShard) {
+        if (!shardSet.contains(targetShard)) {
+            throw new InvalidRequestException("Okänd shard: " + targetShard);
+        }
+        ShardDirectory.Assignment assignment = directory.assignmentFor(propertyId);
+        if (assignment.shardId().equals(targetShard)) {
+            throw new InvalidRequestException("Fastigheten ligger redan på " + targetShard);
+        }
+
+        Move move = new Move(propertyId, assignment.shardId(), targetShard);
+        Move current = moves.compute(propertyId,
+                (id, existing) -> existing != null && existing.finishedAt == null ? existing : move);
+        if (current != move) {
+            throw new InvalidRequestException("Fastigheten flyttas redan");
+        }
+        executor.execute(() -> run(move));
+        return toResponse(move);
+    }
+
+    public ShardMoveResponse getStatus(UUID propertyId) {
+        Move move = moves.get(propertyId);
+        if (move == null) {
+            throw new ResourceNotFoundException("Ingen flytt av fastigheten har startats");
+        }
+        return toResponse(move);
+    }
+
+    private void run(Move move) {
+        JdbcTemplate source = new JdbcTemplate(shardSet.dataSource(move.sourceShard));
+        JdbcTemplate target = new JdbcTemplate(shardSet.dataSource(move.targetShard));
+        TransactionTemplate targetTransaction = new TransactionTemplate(
+                new DataSourceTransactionManager(shardSet.dataSource(move.targetShard)));
+        boolean frozen = false;
+        boolean switched = false;
+        try {
+            log.info("Moving property {} from shard {} to {}", move.propertyId, move.sourceShard, move.targetShard);
+            // Lite marginal mot klockskillnad mellan applikation och databas
+            Timestamp copyStart = Timestamp.valueOf(LocalDateTime.now().minusMinutes(1));
+
+            move.phase = Phase.COPYING;
+            for (Table table : TABLES) {
+                copy(move, table, null, source, target, targetTransaction, null);
+            }
+
+            if (!directory.beginMove(move.propertyId, move.targetShard)) {
+                throw new IllegalStateException("Property is already being moved");
+            }
+            frozen = true;
+            move.phase = Phase.FROZEN;
+            // Andra instanser ser MOVING först när deras katalogcache gått ut, och skrivningar
+            // som redan routats till källan ska hinna committa
+            TimeUnit.MILLISECONDS.sleep(freezeGrace.toMillis());
+
+            move.phase = Phase.COPYING_DELTA;
+            for (Table table : TABLES) {
+                if (table.changedSince() != null) {
+                    copy(move, table, table.changedSince(), source, target, targetTransaction, copyStart);
+                } else {
+                    copy(move, table, null, source, target, targetTransaction, null);
+                }
+                if (table.removable()) {
+                    deleteRemoved(table, move.propertyId, source, target);
+                }
+            }
+
+            move.phase = Phase.VERIFYING;
+            verify(move, source, target);
+            Set<String> hashes = contentHashes(target, move.propertyId);
+            targetTransaction.executeWithoutResult(status -> syncBlobReferences(hashes, source, target));
+
+            directory.completeMove(move.propertyId);
+            switched = true;
+            move.phase = Phase.SWITCHED;
+            log.info("Property {} now served from shard {}", move.propertyId, move.targetShard);
+
+            // Läsningar som routades till källan innan omläggningen ska hinna bli klara
+            TimeUnit.MILLISECONDS.sleep(cleanupDelay.toMillis());
+            new TransactionTemplate(new DataSourceTransactionManager(shardSet.dataSource(move.sourceShard)))
+                    .executeWithoutResult(status -> {
+                        for (int i = TABLES.size() - 1; i >= 0; i--) {
+                            Table table = TABLES.get(i);
+                            source.update("DELETE FROM " + table.name() + " WHERE " + table.filter(), move.propertyId);
+                        }
+                        syncBlobReferences(hashes, null, source);
+                    });
+            move.phase = Phase.COMPLETED;
+            log.info("Removed property {} from shard {}", move.propertyId, move.sourceShard);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            move.error = e.getMessage();
+            move.phase = Phase.FAILED;
+            if (frozen && !switched) {
+                directory.abortMove(move.propertyId);
+            }
+            log.error("Moving property {} to shard {} failed", move.propertyId, move.targetShard, e);
+        } finally {
+            move.finishedAt = Instant.now();
+        }
+    }
+
+    /**
+     * Kopierar tabellens rader för fastigheten i omgångar ordnade på id. Rader som redan finns
+     * på målet skrivs över.
+     */
+    private void copy(Move move, Table table, String changedSince, JdbcTemplate source, JdbcTemplate target,
+                      TransactionTemplate targetTransaction, Timestamp since) {
+        String where = table.filter() + (changedSince != null ? " AND " + changedSince : "");
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(move.propertyId);
+        if (changedSince != null) {
+            int placeholders = (int) changedSince.chars().filter(c -> c == '?').count();
+            for (int i = 0; i < placeholders; i++) {
+                parameters.add(since);
+            }
+        }
+
+        Object lastId = null;
+        while (true) {
+            List<Object> chunkParameters = new ArrayList<>(parameters);
+            String sql = "SELECT * FROM " + table.name() + " WHERE " + where;
+            if (lastId != null) {
+                sql += " AND id > ?";
+                chunkParameters.add(lastId);
+            }
+            sql += " ORDER BY id LIMIT " + chunkSize;
+
+            List<Map<String, Object>> rows = source.queryForList(sql, chunkParameters.toArray());
+            if (rows.isEmpty()) {
+                return;
+            }
+            targetTransaction.executeWithoutResult(status -> rows.forEach(row -> upsert(target, table.name(), row)));
+            move.copiedRows.merge(table.name(), (long) rows.size(), Long::sum);
+            lastId = rows.get(rows.size() - 1).get("id");
+            if (rows.size() < chunkSize) {
+                return;
+            }
+        }
+    }
+
+    private static void upsert(JdbcTemplate target, String table, Map<String, Object> row) {
+        List<String> columns = row.keySet().stream().filter(column -> !column.equalsIgnoreCase("id")).toList();
+        List<Object> values = new ArrayList<>();
+        columns.forEach(column -> values.add(row.get(column)));
+        values.add(row.get("id"));
+
+        String update = "UPDATE " + table + " SET "
+                + columns.stream().map(column -> column + " = ?").collect(Collectors.joining(", "))
+                + " WHERE id = ?";
+        if (target.update(update, values.toArray()) == 0) {
+            String insert = "INSERT INTO " + table + " (" + String.join(", ", row.keySet()) + ") VALUES ("
+                    + row.keySet().stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+            target.update(insert, row.values().toArray());
+        }
+    }
+
+    private static void deleteRemoved(Table table, UUID propertyId, JdbcTemplate source, JdbcTemplate target) {
+        String sql = "SELECT id FROM " + table.name() + " WHERE " + table.filter();
+        Set<Object> sourceIds = new HashSet<>(source.queryForList(sql, Object.class, propertyId));
+        for (Object id : target.queryForList(sql, Object.class, propertyId)) {
+            if (!sourceIds.contains(id)) {
+                target.update("DELETE FROM " + table.name() + " WHERE id = ?", id);
+            }
+        }
+    }
+
+    private static void verify(Move move, JdbcTemplate source, JdbcTemplate target) {
+        for (Table table : TABLES) {
+            String sql = "SELECT COUNT(*) FROM " + table.name() + " WHERE " + table.filter();
+            Long expected = source.queryForObject(sql, Long.class, move.propertyId);
+            Long actual = target.queryForObject(sql, Long.class, move.propertyId);
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException(table.name() + ": " + expected + " rows on source, "
+                        + actual + " on target");
+            }
+        }
+    }
+
+    private static Set<String> contentHashes(JdbcTemplate shard, UUID propertyId) {
+        return new HashSet<>(shard.queryForList("SELECT DISTINCT content_hash FROM ticket_attachments WHERE "
+                + BY_TICKET + " AND content_hash IS NOT NULL", String.class, propertyId));
+    }
+
+    /**
+     * Sätter referensräknaren för varje blob till antalet bilagor på sharden. Saknas raden
+     * skapas den utifrån källans rad.
+     */
+    private static void syncBlobReferences(Set<String> hashes, JdbcTemplate source, JdbcTemplate shard) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (String hash : hashes) {
+            int updated = shard.update("UPDATE attachment_blobs SET reference_count = "
+                            + "(SELECT COUNT(*) FROM ticket_attachments WHERE content_hash = ?), "
+                            + "last_referenced_at = ? WHERE content_hash = ?",
+                    hash, now, hash);
+            if (updated == 0 && source != null) {
+                Long size = source.queryForObject(
+                        "SELECT size FROM attachment_blobs WHERE content_hash = ?", Long.class, hash);
+                shard.update("INSERT INTO attachment_blobs (content_hash, size, reference_count, last_referenced_at, "
+                                + "created_at) VALUES (?, ?, (SELECT COUNT(*) FROM ticket_attachments "
+                                + "WHERE content_hash = ?), ?, ?)",
+                        hash, size, hash, now, now);
+            }
+        }
+    }
+
+    private static ShardMoveResponse toResponse(Move move) {
+        return ShardMoveResponse.builder()
+                .propertyId(move.propertyId)
+                .sourceShard(move.sourceShard)
+                .targetShard(move.targetShard)
+                .phase(move.phase.name())
+                .copiedRows(new LinkedHashMap<>(move.copiedRows))
+                .queuedAt(move.queuedAt)
+                .finishedAt(move.finishedAt)
+                .error(move.error)
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,293 @@
+package se.fastighet.core.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+import se.fastighet.core.exception.InvalidRequestException;
+import se.fastighet.core.exception.ShardMovingException;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sätter {@link ShardContext} för metoder med {@link ShardKey}-parametrar och kör
+ * {@link AllShards}-metoder mot varje shard.
+ * <p>
+ * Körs före transaktionsaspekten, så att anslutningen hämtas från rätt shard. Är shard redan
+ * satt (ett anrop inifrån en shardad metod) behålls den.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@Slf4j
+public class ShardRoutingAspect {
+
+    private final ShardSet shardSet;
+    private final ShardDirectory directory;
+    private final int maxScatterWindow;
+
+    public ShardRoutingAspect(ShardSet shardSet, ShardDirectory directory, int maxScatterWindow) {
+        this.shardSet = shardSet;
+        this.directory = directory;
+        this.maxScatterWindow = maxScatterWindow;
+    }
+
+    @Around("execution(* *(.., @se.fastighet.core.sharding.ShardKey (*), ..))")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (ShardContext.current() != null) {
+            return joinPoint.proceed();
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        ShardDirectory.Assignment assignment = resolve(method, joinPoint.getArgs());
+        if (assignment == null) {
+            // Okänt ärende: hemsharden ger samma "hittades inte" som utan sharding
+            return joinPoint.proceed();
+        }
+        if (assignment.isMoving() && !isReadOnly(method)) {
+            throw new ShardMovingException("Fastigheten flyttas just nu, försök igen om en stund",
+                    retryAfter());
+        }
+
+        try (ShardContext.Scope scope = ShardContext.open(assignment.shardId())) {
+            return joinPoint.proceed();
+        }
+    }
+
+    @Around("@annotation(se.fastighet.core.sharding.AllShards)")
+    public Object scatter(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (ShardContext.current() != null) {
+            return joinPoint.proceed();
+        }
+
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Object[] args = joinPoint.getArgs();
+        Pageable pageable = pageableArgument(args);
+        Object[] shardArgs = args.clone();
+        if (pageable != null && pageable.isPaged()) {
+            // Varje shard måste leverera allt fram till och med den begärda sidan
+            long window = (long) (pageable.getPageNumber() + 1) * pageable.getPageSize();
+            if (window > maxScatterWindow) {
+                throw new InvalidRequestException("Sidan ligger för långt in i resultatet, max "
+                        + maxScatterWindow + " rader");
+            }
+            replacePageable(shardArgs, PageRequest.of(0, (int) window, pageable.getSort()));
+        }
+
+        List<Object> results = runOnAllShards(joinPoint, shardArgs);
+        return merge(signature.getReturnType(), results, pageable);
+    }
+
+    private ShardDirectory.Assignment resolve(Method method, Object[] args) {
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof ShardKey key) {
+                    Object value = args[i];
+                    if (value != null && !key.property().isEmpty()) {
+                        value = PropertyAccessorFactory.forBeanPropertyAccess(value).getPropertyValue(key.property());
+                    }
+                    if (value == null) {
+                        return null;
+                    }
+                    return switch (key.value()) {
+                        case PROPERTY -> directory.assignmentFor((UUID) value);
+                        case TICKET -> directory.assignmentForTicket((Long) value);
+                    };
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isReadOnly(Method method) {
+        Transactional transactional = AnnotatedElementUtils.findMergedAnnotation(method, Transactional.class);
+        if (transactional == null) {
+            transactional = AnnotatedElementUtils.findMergedAnnotation(method.getDeclaringClass(), Transactional.class);
+        }
+        return transactional != null && transactional.readOnly();
+    }
+
+    private Duration retryAfter() {
+        return directory.getCacheTtl().multipliedBy(2);
+    }
+
+    private List<Object> runOnAllShards(ProceedingJoinPoint joinPoint, Object[] args) throws Throwable {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        List<String> shardIds = shardSet.ids();
+        List<Future<Object>> futures = new ArrayList<>(shardIds.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String shardId : shardIds) {
+                futures.add(executor.submit(() -> {
+                    SecurityContextHolder.setContext(securityContext);
+                    try (ShardContext.Scope scope = ShardContext.open(shardId)) {
+                        // proceed(args) klonar anropet, så det är säkert att köra parallellt
+                        return joinPoint.proceed(args);
+                    } catch (Throwable e) {
+                        throw new ShardFailure(shardId, e);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+
+            List<Object> results = new ArrayList<>(futures.size());
+            for (Future<Object> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ShardFailure failure) {
+                        log.warn("{} failed on shard {}: {}", joinPoint.getSignature().toShortString(),
+                                failure.shardId, failure.getCause().toString());
+                        throw failure.getCause();
+                    }
+                    throw e.getCause();
+                }
+            }
+            return results;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object merge(Class<?> returnType, List<Object> results, Pageable pageable) {
+        if (returnType == void.class || returnType == Void.class) {
+            return null;
+        }
+        if (Page.class.isAssignableFrom(returnType)) {
+            return mergePages((List) results, pageable);
+        }
+        if (List.class.isAssignableFrom(returnType)) {
+            List<Object> merged = new ArrayList<>();
+            results.forEach(result -> merged.addAll((List<?>) result));
+            return merged;
+        }
+        if (Map.class.isAssignableFrom(returnType)) {
+            Map<Object, Object> merged = new LinkedHashMap<>();
+            for (Object result : results) {
+                ((Map<?, ?>) result).forEach((key, value) -> merged.merge(key, value, ShardRoutingAspect::sum));
+            }
+            return merged;
+        }
+        if (Number.class.isAssignableFrom(returnType) || returnType == int.class || returnType == long.class) {
+            long total = results.stream().mapToLong(result -> ((Number) result).longValue()).sum();
+            return returnType == int.class || returnType == Integer.class ? Math.toIntExact(total) : total;
+        }
+        throw new IllegalStateException("@AllShards does not support return type " + returnType.getName());
+    }
+
+    private static Page<Object> mergePages(List<Page<Object>> pages, Pageable pageable) {
+        List<Object> content = new ArrayList<>();
+        long total = 0;
+        for (Page<Object> page : pages) {
+            content.addAll(page.getContent());
+            total += page.getTotalElements();
+        }
+        if (pageable == null || pageable.isUnpaged()) {
+            return new PageImpl<>(content, Pageable.unpaged(), total);
+        }
+
+        content.sort(comparator(pageable.getSort()));
+        int from = (int) Math.min(pageable.getOffset(), content.size());
+        int to = Math.min(from + pageable.getPageSize(), content.size());
+        return new PageImpl<>(new ArrayList<>(content.subList(from, to)), pageable, total);
+    }
+
+    /**
+     * Jämför svarsobjekten på samma egenskaper som databasen sorterade på. Egenskaper som
+     * saknas i svaret påverkar inte ordningen mellan shards.
+     */
+    private static Comparator<Object> comparator(Sort sort) {
+        Comparator<Object> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Object> byProperty = (a, b) -> compare(
+                    value(a, order.getProperty()), value(b, order.getProperty()), order);
+            comparator = comparator.thenComparing(byProperty);
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b, Sort.Order order) {
+        if (a == null || b == null) {
+            if (a == b) {
+                return 0;
+            }
+            boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NULLS_FIRST;
+            return (a == null) == nullsFirst ? -1 : 1;
+        }
+        int result = ((Comparable) a).compareTo(b);
+        return order.isAscending() ? result : -result;
+    }
+
+    private static Object value(Object bean, String property) {
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(bean);
+        if (!wrapper.isReadableProperty(property)) {
+            return null;
+        }
+        Object value = wrapper.getPropertyValue(property);
+        return value instanceof Comparable<?> ? value : null;
+    }
+
+    private static Object sum(Object a, Object b) {
+        if (a instanceof Long || b instanceof Long) {
+            return ((Number) a).longValue() + ((Number) b).longValue();
+        }
+        if (a instanceof Integer && b instanceof Integer) {
+            return (Integer) a + (Integer) b;
+        }
+        throw new IllegalStateException("@AllShards cannot merge map values of type " + a.getClass().getName());
+    }
+
+    private static Pageable pageableArgument(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof Pageable pageable) {
+                return pageable;
+            }
+        }
+        return null;
+    }
+
+    private static void replacePageable(Object[] args, Pageable replacement) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Pageable) {
+                args[i] = replacement;
+            }
+        }
+    }
+
+    private static final class ShardFailure extends RuntimeException {
+
+        private final String shardId;
+
+        private ShardFailure(String shardId, Throwable cause) {
+            super(cause);
+            this.shardId = shardId;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package se.fastighet.core.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+
+/**
+ * Väljer shard utifrån {@link ShardContext}. Utan satt shard används hemsharden, vilket
+ * gäller autentisering, globala tabeller och Hibernates uppstart.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(ShardSet shardSet) {
+        setTargetDataSources(new HashMap<>(shardSet.dataSources()));
+        setDefaultTargetDataSource(shardSet.dataSource(shardSet.home()));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
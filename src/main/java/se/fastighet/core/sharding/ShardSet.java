@@ -0,0 +1,63 @@
+package se.fastighet.core.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shardarnas datakällor. Hemsharden är {@code spring.datasource} och innehåller också
+ * katalogen och de globala tabellerna (användare, fastigheter, lägenheter, kategorier).
+ */
+public class ShardSet implements DisposableBean {
+
+    private final String homeShard;
+    private final Map<String, DataSource> dataSources;
+
+    public ShardSet(String homeShard, Map<String, DataSource> dataSources) {
+        if (!dataSources.containsKey(homeShard)) {
+            throw new IllegalArgumentException("Home shard " + homeShard + " has no data source");
+        }
+        this.homeShard = homeShard;
+        this.dataSources = new LinkedHashMap<>(dataSources);
+    }
+
+    public String home() {
+        return homeShard;
+    }
+
+    public List<String> ids() {
+        return List.copyOf(dataSources.keySet());
+    }
+
+    public boolean contains(String shardId) {
+        return dataSources.containsKey(shardId);
+    }
+
+    public DataSource dataSource(String shardId) {
+        DataSource dataSource = dataSources.get(shardId);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown shard " + shardId);
+        }
+        return dataSource;
+    }
+
+    Map<String, DataSource> dataSources() {
+        return dataSources;
+    }
+
+    /**
+     * Hemshardens pool ägs av Spring; övriga skapades av {@link ShardingConfig}.
+     */
+    @Override
+    public void destroy() {
+        dataSources.forEach((id, dataSource) -> {
+            if (!id.equals(homeShard) && dataSource instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        });
+    }
+}
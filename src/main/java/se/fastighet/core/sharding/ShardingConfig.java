@@ -0,0 +1,120 @@
+package se.fastighet.core.sharding;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Delar upp ärendedata på flera databaser efter fastighet när {@code sharding.enabled=true}.
+ * Hemsharden är {@code spring.datasource}; övriga shards anges under {@code sharding.shards}
+ * och får hemshardens poolinställningar. Se docs/performance/sharding.md.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    public ShardingConfig(Environment environment) {
+        if (environment.getProperty("datasource.replicas.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("sharding.enabled and datasource.replicas.enabled cannot be combined");
+        }
+    }
+
+    /**
+     * En shard utöver hemsharden. Tomt användarnamn = samma som hemsharden.
+     */
+    public record ShardProperties(String url, String username, String password) {
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource homeDataSource(DataSourceProperties properties,
+                                           @Value("${sharding.home-shard:home}") String homeShard) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (!StringUtils.hasText(dataSource.getPoolName())) {
+            dataSource.setPoolName(homeShard);
+        }
+        return dataSource;
+    }
+
+    @Bean
+    public ShardSet shardSet(HikariDataSource homeDataSource, Environment environment, MeterRegistry meterRegistry,
+                             @Value("${sharding.home-shard:home}") String homeShard) {
+        Map<String, ShardProperties> configured = Binder.get(environment)
+                .bind("sharding.shards", Bindable.mapOf(String.class, ShardProperties.class))
+                .orElseGet(Map::of);
+
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        dataSources.put(homeShard, homeDataSource);
+        configured.forEach((id, shard) -> {
+            if (id.equals(homeShard)) {
+                throw new IllegalStateException("sharding.shards." + id + " clashes with the home shard");
+            }
+            HikariConfig config = new HikariConfig();
+            homeDataSource.copyStateTo(config);
+            config.setPoolName(id);
+            config.setJdbcUrl(shard.url());
+            if (config.getMetricRegistry() == null && config.getMetricsTrackerFactory() == null) {
+                config.setMetricRegistry(meterRegistry);
+            }
+            if (StringUtils.hasText(shard.username())) {
+                config.setUsername(shard.username());
+                config.setPassword(shard.password());
+            }
+            dataSources.put(id, new HikariDataSource(config));
+        });
+        return new ShardSet(homeShard, dataSources);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardSet shardSet) {
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shardSet);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    @Bean
+    public ShardDirectory shardDirectory(
+            ShardSet shardSet,
+            @Value("${sharding.directory.cache-ttl:PT5S}") Duration cacheTtl,
+            @Value("${sharding.directory.ticket-cache-size:100000}") int ticketCacheSize) {
+        return new ShardDirectory(shardSet, cacheTtl, ticketCacheSize);
+    }
+
+    @Bean
+    public ShardRoutingAspect shardRoutingAspect(
+            ShardSet shardSet,
+            ShardDirectory shardDirectory,
+            @Value("${sharding.scatter.max-window:1000}") int maxScatterWindow) {
+        return new ShardRoutingAspect(shardSet, shardDirectory, maxScatterWindow);
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(
+            ShardSet shardSet,
+            ShardDirectory shardDirectory,
+            @Value("${sharding.rebalance.chunk-size:500}") int chunkSize,
+            @Value("${sharding.rebalance.freeze-grace:PT15S}") Duration freezeGrace,
+            @Value("${sharding.rebalance.cleanup-delay:PT1M}") Duration cleanupDelay) {
+        if (freezeGrace.compareTo(shardDirectory.getCacheTtl()) <= 0) {
+            throw new IllegalStateException("sharding.rebalance.freeze-grace must exceed sharding.directory.cache-ttl");
+        }
+        return new ShardRebalancer(shardSet, shardDirectory, chunkSize, freezeGrace, cleanupDelay);
+    }
+}
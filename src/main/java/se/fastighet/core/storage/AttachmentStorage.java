@@ -0,0 +1,178 @@
+package se.fastighet.core.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Innehållsadresserad lagring av bilagor på disk.
+ * <p>
+ * Uppladdningar strömmas till en temporär fil medan SHA-256 beräknas, och flyttas
+ * sedan atomärt till {@code blobs/ab/cd/<hash>}. Finns innehållet redan kastas den
+ * temporära filen, så en dubblett kostar bara en läsning av strömmen.
+ * Referensräkningen i databasen sköts av {@link se.fastighet.core.service.AttachmentBlobService}.
+ */
+@Component
+@Slf4j
+public class AttachmentStorage {
+
+    private static final String BLOB_DIRECTORY = "blobs";
+
+    private final Path rootDirectory;
+    private final Path tempDirectory;
+    private final Path partialDirectory;
+
+    public AttachmentStorage(@Value("${attachments.storage-path}") String storagePath) throws IOException {
+        this.rootDirectory = Paths.get(storagePath).toAbsolutePath().normalize();
+        this.tempDirectory = rootDirectory.resolve("tmp");
+        this.partialDirectory = rootDirectory.resolve("partial");
+        Files.createDirectories(tempDirectory);
+        Files.createDirectories(partialDirectory);
+        log.info("Attachment storage initialized at {}", rootDirectory);
+    }
+
+    /**
+     * Strömmar innehållet till en temporär fil och beräknar dess hash på vägen.
+     */
+    public TempBlob writeTemp(InputStream content) throws IOException {
+        Path tempFile = Files.createTempFile(tempDirectory, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(content, digest)) {
+                size = Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new TempBlob(tempFile, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Beräknar hashen för en fil som redan ligger på disk, t.ex. en färdig uppladdning i delar.
+     */
+    public TempBlob hashFile(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return new TempBlob(file, HexFormat.of().formatHex(digest.digest()), Files.size(file));
+    }
+
+    /**
+     * Fil för en pågående uppladdning i delar. Ligger utanför tmp så att den inte städas bort
+     * av {@link #deleteStaleTempFiles}; livslängden styrs av uppladdningens utgångstid.
+     */
+    public Path partialUploadPath(UUID uploadId) {
+        return partialDirectory.resolve(uploadId + ".part");
+    }
+
+    /**
+     * Flyttar en temporär fil till sin innehållsadress. Returnerar den relativa sökvägen.
+     */
+    public String placeBlob(TempBlob tempBlob) throws IOException {
+        String relativePath = blobPath(tempBlob.hash());
+        Path target = resolve(relativePath);
+
+        if (Files.exists(target)) {
+            Files.deleteIfExists(tempBlob.file());
+            return relativePath;
+        }
+
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(tempBlob.file(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Samtidig uppladdning av samma innehåll hann före
+            Files.deleteIfExists(tempBlob.file());
+        }
+        return relativePath;
+    }
+
+    public String blobPath(String hash) {
+        return BLOB_DIRECTORY + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    public String previewPath(String hash, PreviewVariant variant) {
+        return blobPath(hash) + variant.fileSuffix();
+    }
+
+    public boolean hasPreviews(String hash) {
+        for (PreviewVariant variant : PreviewVariant.values()) {
+            if (!Files.exists(resolve(previewPath(hash, variant)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Path resolve(String relativePath) {
+        Path resolved = rootDirectory.resolve(relativePath).normalize();
+        if (!resolved.startsWith(rootDirectory)) {
+            throw new IllegalArgumentException("Ogiltig sökväg för bilaga: " + relativePath);
+        }
+        return resolved;
+    }
+
+    public void delete(String relativePath) {
+        try {
+            Files.deleteIfExists(resolve(relativePath));
+        } catch (IOException e) {
+            log.warn("Failed to delete attachment file {}: {}", relativePath, e.getMessage());
+        }
+    }
+
+    public void deleteBlob(String hash) {
+        for (PreviewVariant variant : PreviewVariant.values()) {
+            delete(previewPath(hash, variant));
+        }
+        delete(blobPath(hash));
+    }
+
+    /**
+     * Tar bort temporära filer från avbrutna uppladdningar.
+     */
+    public int deleteStaleTempFiles(Instant olderThan) {
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tempDirectory, "*.part")) {
+            for (Path file : files) {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.toInstant().isBefore(olderThan) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean temporary upload files: {}", e.getMessage());
+        }
+        return deleted;
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public record TempBlob(Path file, String hash, long size) {
+    }
+}
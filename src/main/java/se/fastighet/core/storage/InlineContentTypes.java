@@ -0,0 +1,114 @@
+package se.fastighet.core.storage;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.InvalidMimeTypeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Vilka filtyper som får visas direkt i webbläsaren. Typen kommer från den som laddade upp
+ * filen, och filerna serveras från API:ets origin. HTML, SVG och liknande skulle då köra
+ * skript hos den som öppnar bilagan. Allt utanför listan skickas som nedladdning med
+ * {@code application/octet-stream}.
+ * <p>
+ * Vid uppladdning kontrolleras dessutom att en tillåten typ stämmer med filens inledande
+ * bytes ({@link #verify}), så att en HTML-fil inte kan sparas som {@code image/png}.
+ */
+public final class InlineContentTypes {
+
+    private static final Set<String> INLINE = Set.of(
+            MediaType.IMAGE_JPEG_VALUE,
+            MediaType.IMAGE_PNG_VALUE,
+            MediaType.IMAGE_GIF_VALUE,
+            "image/webp",
+            MediaType.APPLICATION_PDF_VALUE,
+            "video/mp4",
+            "video/webm",
+            "video/quicktime");
+
+    private static final int HEADER_LENGTH = 12;
+
+    private InlineContentTypes() {
+    }
+
+    /**
+     * Typen som ska sparas för en uppladdad fil. En tillåten typ behålls bara om filens innehåll
+     * stämmer med den. Andra giltiga typer behålls som de är, eftersom de ändå aldrig visas
+     * direkt. Ogiltiga eller tomma typer blir {@code application/octet-stream}.
+     */
+    public static String verify(String declared, Path file) throws IOException {
+        String inlineType = inlineType(declared);
+        if (inlineType != null) {
+            return matchesContent(inlineType, readHeader(file))
+                    ? inlineType
+                    : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        if (declared == null || declared.isBlank()) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        try {
+            return MediaType.parseMediaType(declared).toString();
+        } catch (InvalidMimeTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+
+    /**
+     * @return typen utan parametrar om den får visas direkt, annars {@code null}
+     */
+    public static String inlineType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return null;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            String type = mediaType.getType() + "/" + mediaType.getSubtype();
+            return INLINE.contains(type) ? type : null;
+        } catch (InvalidMimeTypeException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readHeader(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in.readNBytes(HEADER_LENGTH);
+        }
+    }
+
+    private static boolean matchesContent(String type, byte[] header) {
+        return switch (type) {
+            case MediaType.IMAGE_JPEG_VALUE -> startsWith(header, 0, 0xFF, 0xD8, 0xFF);
+            case MediaType.IMAGE_PNG_VALUE -> startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+            case MediaType.IMAGE_GIF_VALUE -> startsWith(header, 0, "GIF87a") || startsWith(header, 0, "GIF89a");
+            case "image/webp" -> startsWith(header, 0, "RIFF") && startsWith(header, 8, "WEBP");
+            case MediaType.APPLICATION_PDF_VALUE -> startsWith(header, 0, "%PDF-");
+            case "video/mp4", "video/quicktime" -> startsWith(header, 4, "ftyp");
+            case "video/webm" -> startsWith(header, 0, 0x1A, 0x45, 0xDF, 0xA3);
+            default -> false;
+        };
+    }
+
+    private static boolean startsWith(byte[] header, int offset, String magic) {
+        byte[] bytes = magic.getBytes(StandardCharsets.US_ASCII);
+        return header.length >= offset + bytes.length
+                && Arrays.equals(header, offset, offset + bytes.length, bytes, 0, bytes.length);
+    }
+
+    private static boolean startsWith(byte[] header, int offset, int... magic) {
+        if (header.length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
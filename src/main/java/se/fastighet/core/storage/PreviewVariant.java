@@ -0,0 +1,40 @@
+package se.fastighet.core.storage;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Nedskalade varianter av bildbilagor. Lagras bredvid originalet och delas
+ * därför av alla bilagor med samma innehåll.
+ */
+public enum PreviewVariant {
+
+    THUMBNAIL("thumbnail", 256),   // Ärendelistor och gallerier
+    PREVIEW("preview", 1024);      // Detaljvy
+
+    private final String pathName;
+    private final int maxDimension;
+
+    PreviewVariant(String pathName, int maxDimension) {
+        this.pathName = pathName;
+        this.maxDimension = maxDimension;
+    }
+
+    public String getPathName() {
+        return pathName;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public String fileSuffix() {
+        return "." + pathName + ".jpg";
+    }
+
+    public static Optional<PreviewVariant> fromPathName(String pathName) {
+        return Arrays.stream(values())
+                .filter(variant -> variant.pathName.equalsIgnoreCase(pathName))
+                .findFirst();
+    }
+}
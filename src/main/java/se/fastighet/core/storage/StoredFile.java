@@ -0,0 +1,8 @@
+package se.fastighet.core.storage;
+
+/**
+ * Resultat av en lagrad fil. Sökvägen är relativ till lagringskatalogen.
+ * {@code deduplicated} är sant om innehållet redan fanns lagrat.
+ */
+public record StoredFile(String relativePath, long size, String contentHash, boolean deduplicated) {
+}
@@ -0,0 +1,200 @@
+-- Schemat som Hibernate tidigare skapade med ddl-auto. Databaser som redan har det
+-- baslinjeras på version 1 (spring.flyway.baseline-on-migrate) och får bara V2 och framåt.
+--
+-- agreements, invoices och news_posts mappas av entiteter utanför den här modulen. Deras
+-- kolumner följer hur DataInitializer fyller dem och ska hållas i takt med entiteterna.
+
+CREATE TABLE users (
+    id         uuid         NOT NULL,
+    email      varchar(255) NOT NULL,
+    name       varchar(255) NOT NULL,
+    phone      varchar(255),
+    role       varchar(255) NOT NULL
+        CHECK (role IN ('RESIDENT', 'BOARD_MEMBER', 'TECHNICIAN', 'ADMIN')),
+    password   varchar(255),
+    created_at timestamp(6),
+    updated_at timestamp(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE properties (
+    id                       uuid         NOT NULL,
+    name                     varchar(255) NOT NULL,
+    address                  varchar(255),
+    city                     varchar(255),
+    postal_code              varchar(255),
+    property_designation     varchar(255),
+    organization_number      varchar(255),
+    economic_plan_registered boolean,
+    contact_email            varchar(255),
+    contact_phone            varchar(255),
+    created_at               timestamp(6),
+    updated_at               timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE units (
+    id               uuid         NOT NULL,
+    unit_number      varchar(255) NOT NULL,
+    tax_unit_number  varchar(255),
+    rooms            integer,
+    floor            integer,
+    square_meters    float(53),
+    address          varchar(255),
+    acquisition_date date,
+    ownership_share  varchar(255),
+    monthly_fee      numeric(38, 2),
+    internet_fee     numeric(38, 2),
+    property_id      uuid         NOT NULL REFERENCES properties (id),
+    created_at       timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE categories (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY,
+    name        varchar(255) NOT NULL,
+    description varchar(255),
+    icon        varchar(255),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_categories_name UNIQUE (name)
+);
+
+CREATE TABLE user_units (
+    user_id uuid NOT NULL REFERENCES users (id),
+    unit_id uuid NOT NULL REFERENCES units (id),
+    PRIMARY KEY (user_id, unit_id)
+);
+
+CREATE TABLE property_admins (
+    property_id uuid NOT NULL REFERENCES properties (id),
+    user_id     uuid NOT NULL REFERENCES users (id),
+    PRIMARY KEY (property_id, user_id)
+);
+
+CREATE TABLE tickets (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY,
+    title       varchar(255) NOT NULL,
+    description text,
+    category_id bigint REFERENCES categories (id),
+    status      varchar(255) NOT NULL
+        CHECK (status IN ('NEW', 'IN_PROGRESS', 'WAITING', 'RESOLVED', 'CLOSED')),
+    priority    varchar(255) NOT NULL
+        CHECK (priority IN ('LOW', 'MEDIUM', 'HIGH', 'URGENT')),
+    reporter_id uuid         NOT NULL REFERENCES users (id),
+    assignee_id uuid REFERENCES users (id),
+    property_id uuid         NOT NULL REFERENCES properties (id),
+    unit_id     uuid REFERENCES units (id),
+    created_at  timestamp(6),
+    updated_at  timestamp(6),
+    resolved_at timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE ticket_comments (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY,
+    ticket_id   bigint  NOT NULL REFERENCES tickets (id),
+    author_id   uuid    NOT NULL REFERENCES users (id),
+    content     text    NOT NULL,
+    is_internal boolean NOT NULL,
+    created_at  timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE ticket_history (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY,
+    ticket_id   bigint       NOT NULL REFERENCES tickets (id),
+    changed_by  uuid REFERENCES users (id),
+    change_type varchar(255) NOT NULL
+        CHECK (change_type IN ('CREATED', 'STATUS_CHANGED', 'PRIORITY_CHANGED', 'ASSIGNED', 'UNASSIGNED',
+                               'COMMENT_ADDED', 'ATTACHMENT_ADDED', 'ATTACHMENT_REMOVED')),
+    old_value   varchar(255),
+    new_value   varchar(255),
+    description text,
+    changed_at  timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE attachment_blobs (
+    content_hash       varchar(64)  NOT NULL,
+    size               bigint       NOT NULL,
+    reference_count    integer      NOT NULL,
+    last_referenced_at timestamp(6) NOT NULL,
+    created_at         timestamp(6),
+    PRIMARY KEY (content_hash)
+);
+
+CREATE TABLE ticket_attachments (
+    id             bigint GENERATED BY DEFAULT AS IDENTITY,
+    ticket_id      bigint       NOT NULL REFERENCES tickets (id),
+    file_name      varchar(255) NOT NULL,
+    file_path      varchar(255) NOT NULL,
+    content_type   varchar(255),
+    file_size      bigint,
+    content_hash   varchar(64),
+    preview_status varchar(255)
+        CHECK (preview_status IN ('NONE', 'PENDING', 'READY', 'FAILED')),
+    uploaded_at    timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE attachment_uploads (
+    id               uuid         NOT NULL,
+    ticket_id        bigint       NOT NULL REFERENCES tickets (id),
+    created_by       uuid         NOT NULL REFERENCES users (id),
+    file_name        varchar(255) NOT NULL,
+    content_type     varchar(255),
+    total_size       bigint       NOT NULL,
+    committed_offset bigint       NOT NULL,
+    created_at       timestamp(6),
+    expires_at       timestamp(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE shard_directory (
+    property_id  uuid         NOT NULL,
+    shard_id     varchar(64)  NOT NULL,
+    target_shard varchar(64),
+    state        varchar(16)  NOT NULL CHECK (state IN ('ACTIVE', 'MOVING')),
+    version      bigint       NOT NULL,
+    updated_at   timestamp(6) NOT NULL,
+    PRIMARY KEY (property_id)
+);
+
+CREATE TABLE ticket_directory (
+    ticket_id   bigint NOT NULL,
+    property_id uuid   NOT NULL,
+    PRIMARY KEY (ticket_id)
+);
+
+CREATE TABLE agreements (
+    id             uuid         NOT NULL,
+    title          varchar(255),
+    object_name    varchar(255),
+    agreement_type varchar(255),
+    agreement_date date,
+    user_id        uuid         NOT NULL REFERENCES users (id),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE invoices (
+    id             uuid         NOT NULL,
+    period         varchar(255),
+    payment_method varchar(255),
+    due_date       date,
+    object_name    varchar(255),
+    amount         numeric(38, 2),
+    paid_date      date,
+    status         varchar(255) NOT NULL,
+    user_id        uuid         NOT NULL REFERENCES users (id),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE news_posts (
+    id         uuid         NOT NULL,
+    title      varchar(255) NOT NULL,
+    body       text,
+    author_id  uuid REFERENCES users (id),
+    created_at timestamp(6),
+    PRIMARY KEY (id)
+);
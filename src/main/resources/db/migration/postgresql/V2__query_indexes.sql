@@ -0,0 +1,96 @@
+-- Index efter repository-frågorna. Se docs/performance/schema-migrations.md för vilken fråga
+-- som använder vilket index.
+--
+-- CONCURRENTLY låser inte tabellen för skrivningar medan indexet byggs. Flyway kör då hela
+-- skriptet utanför transaktion. Avbryts ett bygge blir indexet kvar som INVALID och måste
+-- tas bort med DROP INDEX CONCURRENTLY innan migreringen körs igen.
+
+-- Listor sorteras på skapandetid, nyast först, i alla vyer (TicketController)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_reporter_created
+    ON tickets (reporter_id, created_at DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_assignee_created
+    ON tickets (assignee_id, created_at DESC)
+    WHERE assignee_id IS NOT NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_property_created
+    ON tickets (property_id, created_at DESC);
+
+-- findByPropertyIdAndStatus; countByStatusForProperty läser bara indexet
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_property_status_created
+    ON tickets (property_id, status, created_at DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_status_created
+    ON tickets (status, created_at DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_property_category
+    ON tickets (property_id, category_id)
+    WHERE category_id IS NOT NULL;
+
+-- Öppna ärenden är några procent av tabellen. Villkoret måste stå exakt som i frågorna
+-- (status NOT IN ('RESOLVED', 'CLOSED')) för att planeraren ska kunna använda indexen.
+
+-- findOldUnresolvedTickets; countOpenByPriority läser bara indexet
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_open_created
+    ON tickets (created_at) INCLUDE (priority)
+    WHERE status NOT IN ('RESOLVED', 'CLOSED');
+
+-- Öppna ärenden per fastighet, nyast först
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_open_property_created
+    ON tickets (property_id, created_at DESC)
+    WHERE status NOT IN ('RESOLVED', 'CLOSED');
+
+-- findUnassignedOpenTickets
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_open_unassigned
+    ON tickets (created_at)
+    WHERE assignee_id IS NULL AND status NOT IN ('RESOLVED', 'CLOSED');
+
+-- Kommentarer (@BatchSize) och historik läses per ärende i @OrderBy-ordning
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ticket_comments_ticket_created
+    ON ticket_comments (ticket_id, created_at);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ticket_history_ticket_changed
+    ON ticket_history (ticket_id, changed_at DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ticket_attachments_ticket
+    ON ticket_attachments (ticket_id);
+
+-- countByContentHash och updatePreviewStatus
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ticket_attachments_content_hash
+    ON ticket_attachments (content_hash);
+
+-- findContentHashesByPreviewStatus: bara PENDING är ovanlig nog att läsas via index
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ticket_attachments_preview_pending
+    ON ticket_attachments (content_hash)
+    WHERE preview_status = 'PENDING';
+
+-- findUnreferencedBefore
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_attachment_blobs_unreferenced
+    ON attachment_blobs (last_referenced_at)
+    WHERE reference_count = 0;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_attachment_uploads_ticket
+    ON attachment_uploads (ticket_id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_attachment_uploads_expires
+    ON attachment_uploads (expires_at);
+
+-- findByPropertyIdAndUnitNumber, och joinen från fastighet till boende i UserRepository
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_units_property_number
+    ON units (property_id, unit_number);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_units_unit
+    ON user_units (unit_id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_property_admins_user
+    ON property_admins (user_id);
+
+-- findByRole(TECHNICIAN) m.fl.; boende är de flesta och läses sekventiellt ändå
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_role
+    ON users (role);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_agreements_user_date
+    ON agreements (user_id, agreement_date DESC);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_invoices_user_status_due
+    ON invoices (user_id, status, due_date DESC);
@@ -0,0 +1,18 @@
+-- Arkiverade ärenden, se docs/performance/archival.md. id är ärendets ursprungliga id.
+CREATE TABLE ticket_archive (
+    id          bigint       NOT NULL,
+    property_id uuid         NOT NULL,
+    reporter_id uuid         NOT NULL,
+    assignee_id uuid,
+    status      varchar(255) NOT NULL
+        CHECK (status IN ('NEW', 'IN_PROGRESS', 'WAITING', 'RESOLVED', 'CLOSED')),
+    created_at  timestamp(6),
+    resolved_at timestamp(6),
+    archived_at timestamp(6) NOT NULL,
+    snapshot    jsonb        NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Shardflytten kopierar per fastighet
+CREATE INDEX idx_ticket_archive_property ON ticket_archive (property_id);
+
@@ -0,0 +1,7 @@
+-- Ärendeexporten läser arkivet per fastighet i skapad-ordning (ArchivedTicketRepository.streamForExport).
+-- Det nya indexet täcker också shardflyttens uppslagning per fastighet, så det gamla tas bort.
+-- CONCURRENTLY gör att Flyway kör skriptet utanför transaktion, se V2.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_ticket_archive_property_created
+    ON ticket_archive (property_id, created_at);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_ticket_archive_property;
@@ -0,0 +1,19 @@
+-- Dagsrollupparna för rapporterna, se docs/performance/reporting-rollups.md.
+-- id härleds ur (day, property_id, category_id, priority), se TicketRollup.idFor.
+CREATE TABLE ticket_rollups (
+    id                   uuid         NOT NULL,
+    day                  date         NOT NULL,
+    property_id          uuid         NOT NULL,
+    category_id          bigint,
+    priority             varchar(255) NOT NULL
+        CHECK (priority IN ('LOW', 'MEDIUM', 'HIGH', 'URGENT')),
+    created_count        bigint       NOT NULL,
+    resolved_count       bigint       NOT NULL,
+    resolution_minutes   bigint       NOT NULL,
+    resolution_histogram jsonb        NOT NULL,
+    updated_at           timestamp(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Rapporterna och omräkningen läser per fastighet och period; shardflytten per fastighet
+CREATE INDEX idx_ticket_rollups_property_day ON ticket_rollups (property_id, day);
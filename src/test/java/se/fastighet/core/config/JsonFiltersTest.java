@@ -0,0 +1,68 @@
+package se.fastighet.core.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import se.fastighet.core.dto.request.TicketFields;
+import se.fastighet.core.dto.response.TicketResponse;
+import se.fastighet.core.entity.Ticket;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Serialiserar med samma ObjectMapper-böna som MVC använder.
+ */
+class JsonFiltersTest {
+
+    private final ObjectMapper objectMapper = new JmsConfig().objectMapper();
+
+    @Test
+    void writesOnlyRequestedFields() throws Exception {
+        JsonNode json = write(TicketFields.parse(Set.of("title", "status"), null));
+
+        assertThat(json.has("id")).isTrue();
+        assertThat(json.get("title").asText()).isEqualTo("Läckande kran");
+        assertThat(json.get("status").asText()).isEqualTo("NEW");
+        assertThat(json.has("description")).isFalse();
+        assertThat(json.has("comments")).isFalse();
+        assertThat(json.has("latestComment")).isFalse();
+        assertThat(json.has("fields")).isFalse();
+    }
+
+    @Test
+    void includeAddsToDefaultSelection() throws Exception {
+        JsonNode json = write(TicketFields.parse(null, Set.of("latestComment")));
+
+        assertThat(json.has("description")).isTrue();
+        assertThat(json.has("comments")).isTrue();
+        assertThat(json.get("latestComment").get("content").asText()).isEqualTo("Rörmokare bokad");
+    }
+
+    @Test
+    void writesEverythingWithoutSelection() throws Exception {
+        JsonNode json = write(null);
+
+        assertThat(json.has("description")).isTrue();
+        assertThat(json.has("latestComment")).isTrue();
+    }
+
+    private JsonNode write(TicketFields fields) throws Exception {
+        TicketResponse.CommentResponse comment = TicketResponse.CommentResponse.builder()
+                .id(7L)
+                .content("Rörmokare bokad")
+                .build();
+        TicketResponse response = TicketResponse.builder()
+                .id(42L)
+                .title("Läckande kran")
+                .description("Droppar i köket")
+                .status(Ticket.Status.NEW)
+                .comments(List.of(comment))
+                .latestComment(comment)
+                .fields(fields)
+                .build();
+        return objectMapper.readTree(objectMapper.writeValueAsString(response));
+    }
+}
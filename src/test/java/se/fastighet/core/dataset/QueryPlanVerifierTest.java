@@ -0,0 +1,58 @@
+package se.fastighet.core.dataset;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Regressionstestet för indexen i db/migration. Genererar ett mindre dataset i Postgres och
+ * kontrollerar att ingen repository-fråga läser en stor tabell sekventiellt.
+ * <p>
+ * Kräver en Postgres-databas och körs bara när {@code PLAN_CHECK_DATASOURCE_URL} är satt, se
+ * docs/performance/schema-migrations.md.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.driver-class-name=org.postgresql.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.flyway.enabled=true",
+        "dataset.properties=60",
+        "dataset.tickets=200000",
+        "dataset.verify-plans.fail-on-seq-scan=true"
+})
+@ActiveProfiles("dataset")
+@EnabledIfEnvironmentVariable(named = "PLAN_CHECK_DATASOURCE_URL", matches = ".+")
+class QueryPlanVerifierTest {
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("PLAN_CHECK_DATASOURCE_URL"));
+        registry.add("spring.datasource.username", () -> env("PLAN_CHECK_DATASOURCE_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> env("PLAN_CHECK_DATASOURCE_PASSWORD", "postgres"));
+        registry.add("attachments.storage-path",
+                () -> Path.of(System.getProperty("java.io.tmpdir"), "plan-check-uploads").toString());
+    }
+
+    @Autowired
+    private QueryPlanVerifier verifier;
+
+    @Test
+    void repositoryQueriesAvoidSeqScansOnLargeTables() {
+        // Verifieraren har redan körts vid uppstart. Här körs den igen så att ett fel syns
+        // som ett misslyckat test och inte bara som en kontext som inte startar.
+        assertThatCode(verifier::run).doesNotThrowAnyException();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
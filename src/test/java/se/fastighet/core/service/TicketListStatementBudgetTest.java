@@ -0,0 +1,154 @@
+package se.fastighet.core.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import se.fastighet.core.diagnostics.StatementCounter;
+import se.fastighet.core.dto.response.TicketListResponse;
+import se.fastighet.core.entity.Property;
+import se.fastighet.core.entity.Ticket;
+import se.fastighet.core.entity.TicketComment;
+import se.fastighet.core.entity.User;
+import se.fastighet.core.repository.PropertyRepository;
+import se.fastighet.core.repository.TicketCommentRepository;
+import se.fastighet.core.repository.TicketRepository;
+import se.fastighet.core.repository.UserRepository;
+import se.fastighet.core.security.UserPrincipal;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Listvyerna får inte växa med antalet ärenden på sidan. Med 20 ärenden, två kommentarer per
+ * ärende, ska servicen klara sig på sidfrågan och antalsfrågan och controllern på en sats till
+ * för användaren i JWT-filtret, som i {@code @StatementBudget} på respektive metod.
+ */
+@SpringBootTest(properties = "app.seed.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TicketListStatementBudgetTest {
+
+    private static final int TICKETS = 20;
+    private static final Pageable NEWEST_FIRST = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private TicketService ticketService;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PropertyRepository propertyRepository;
+    @Autowired
+    private TicketRepository ticketRepository;
+    @Autowired
+    private TicketCommentRepository commentRepository;
+
+    private User resident;
+    private User technician;
+    private User boardMember;
+    private Property property;
+
+    @BeforeEach
+    void seed() {
+        // Unika användare och fastighet per test, så att testerna inte ser varandras ärenden
+        String suffix = UUID.randomUUID().toString();
+        resident = user("boende-" + suffix, User.Role.RESIDENT);
+        technician = user("tekniker-" + suffix, User.Role.TECHNICIAN);
+        boardMember = user("styrelse-" + suffix, User.Role.BOARD_MEMBER);
+        property = propertyRepository.save(Property.builder().name("BRF Budget " + suffix).build());
+
+        for (int i = 0; i < TICKETS; i++) {
+            Ticket ticket = ticketRepository.save(Ticket.builder()
+                    .title("Ärende " + i)
+                    .description("Beskrivning " + i)
+                    .reporter(resident)
+                    .assignee(technician)
+                    .property(property)
+                    .build());
+            for (int c = 0; c < 2; c++) {
+                commentRepository.save(TicketComment.builder()
+                        .ticket(ticket)
+                        .author(resident)
+                        .content("Kommentar " + c)
+                        .build());
+            }
+        }
+    }
+
+    @Test
+    void myTicketsServiceStaysWithinBudget() {
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            Page<TicketListResponse> page = ticketService.getMyTickets(new UserPrincipal(resident), NEWEST_FIRST);
+            scope.assertAtMost(2);
+            assertThat(page.getContent()).hasSize(TICKETS);
+        }
+    }
+
+    @Test
+    void assignedTicketsServiceStaysWithinBudget() {
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            Page<TicketListResponse> page = ticketService.getAssignedTickets(new UserPrincipal(technician),
+                    NEWEST_FIRST);
+            scope.assertAtMost(2);
+            assertThat(page.getContent()).hasSize(TICKETS);
+        }
+    }
+
+    @Test
+    void propertyTicketsServiceStaysWithinBudget() {
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            Page<TicketListResponse> page = ticketService.getTicketsForProperty(property.getId(), NEWEST_FIRST);
+            scope.assertAtMost(2);
+            assertThat(page.getContent()).hasSize(TICKETS);
+        }
+    }
+
+    @Test
+    void myTicketsEndpointStaysWithinBudget() throws Exception {
+        assertEndpointWithinBudget("/api/tickets/my", resident);
+    }
+
+    @Test
+    void assignedTicketsEndpointStaysWithinBudget() throws Exception {
+        assertEndpointWithinBudget("/api/tickets/assigned", technician);
+    }
+
+    @Test
+    void propertyTicketsEndpointStaysWithinBudget() throws Exception {
+        assertEndpointWithinBudget("/api/tickets/property/" + property.getId(), boardMember);
+    }
+
+    private void assertEndpointWithinBudget(String path, User user) throws Exception {
+        String token = jwtService.generateToken(user);
+        try (StatementCounter.Scope scope = StatementCounter.open()) {
+            mockMvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content.length()").value(TICKETS));
+            scope.assertAtMost(3);
+        }
+    }
+
+    private User user(String name, User.Role role) {
+        return userRepository.save(User.builder()
+                .email(name + "@budget.test")
+                .name(name)
+                .role(role)
+                .build());
+    }
+}